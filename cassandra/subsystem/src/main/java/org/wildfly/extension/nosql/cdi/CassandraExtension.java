@@ -17,10 +17,16 @@
 package org.wildfly.extension.nosql.cdi;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,15 +34,23 @@ import javax.enterprise.context.Dependent;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanAttributes;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.enterprise.inject.spi.InjectionTarget;
 import javax.enterprise.inject.spi.InjectionTargetFactory;
+import javax.enterprise.inject.spi.ProcessInjectionPoint;
+import javax.inject.Named;
 
 import org.jboss.as.server.CurrentServiceContainer;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraAsyncSession;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraBatchWriter;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraClientConnectionsService;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraStatementRegistry;
 import org.wildfly.extension.nosql.subsystem.cassandra.CassandraSubsystemService;
 import org.wildfly.nosql.common.ConnectionServiceAccess;
 import org.wildfly.nosql.common.SubsystemService;
@@ -56,10 +70,24 @@ public class CassandraExtension implements Extension {
 
     private final Class sessionClass;
     private final Class clusterClass;
+    private final Class preparedStatementClass;
+    // one PreparedStatement bean is registered per distinct @Named + @Cql qualifiers
+    private final Map<Set<Annotation>, CqlInjection> cqlInjections = new ConcurrentHashMap<>();
+    // one Session or CassandraAsyncSession bean is registered per distinct type + @Named + @Keyspace qualifiers
+    private final Map<List<Object>, KeyspaceInjection> keyspaceInjections = new ConcurrentHashMap<>();
+    // one MappingManager, Mapper or Accessor bean is registered per distinct type + @Named + @Keyspace qualifiers
+    private final Map<List<Object>, MappingInjection> mappingInjections = new ConcurrentHashMap<>();
+    // created with the classloader of the first object mapper injection point, as the object mapper is packaged in the deployment
+    private volatile CassandraMappingCache mappingCache;
 
     public CassandraExtension(Class clusterClass, Class sessionClass) {
         this.clusterClass = clusterClass;
         this.sessionClass = sessionClass;
+        try {
+            this.preparedStatementClass = sessionClass.getMethod("prepare", String.class).getReturnType();
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("could not setup PreparedStatement support for " + sessionClass.getName(), e);
+        }
     }
     /**
      */
@@ -79,6 +107,240 @@ public class CassandraExtension implements Extension {
          } else {
             log.log(Level.INFO, "Application contains a default Cluster Bean, automatic registration will be disabled");
         }
+        registerStatementBeans(abd, bm);
+        registerKeyspaceBeans(abd, bm);
+        registerAsyncSessionBeans(abd, bm);
+        registerProfileServiceBeans(abd, bm);
+        registerMappingBeans(abd, bm);
+    }
+
+    <T, X> void collectCqlInjectionPoints(@Observes ProcessInjectionPoint<T, X> pip) {
+        final InjectionPoint injectionPoint = pip.getInjectionPoint();
+        Cql cql = null;
+        String profile = null;
+        for (Annotation qualifier : injectionPoint.getQualifiers()) {
+            if (qualifier instanceof Cql) {
+                cql = (Cql) qualifier;
+            } else if (qualifier instanceof Named) {
+                profile = ((Named) qualifier).value();
+            }
+        }
+        if (cql == null) {
+            return;
+        }
+        if (!(injectionPoint.getType() instanceof Class) || !((Class) injectionPoint.getType()).isAssignableFrom(preparedStatementClass)) {
+            log.log(Level.WARNING, "Ignoring @Cql({0}) qualifier on injection point {1}, type is not PreparedStatement", new Object[]{cql.value(), injectionPoint});
+            return;
+        }
+        if (profile == null) {
+            log.log(Level.WARNING, "Ignoring @Cql({0}) qualifier on injection point {1}, @Named profile is not specified", new Object[]{cql.value(), injectionPoint});
+            return;
+        }
+        final Set<Annotation> qualifiers = new HashSet<>(injectionPoint.getQualifiers());
+        cqlInjections.putIfAbsent(qualifiers, new CqlInjection(profile, cql.value(), qualifiers));
+    }
+
+    <T, X> void collectKeyspaceInjectionPoints(@Observes ProcessInjectionPoint<T, X> pip) {
+        final InjectionPoint injectionPoint = pip.getInjectionPoint();
+        Keyspace keyspace = null;
+        String profile = null;
+        for (Annotation qualifier : injectionPoint.getQualifiers()) {
+            if (qualifier instanceof Keyspace) {
+                keyspace = (Keyspace) qualifier;
+            } else if (qualifier instanceof Named) {
+                profile = ((Named) qualifier).value();
+            }
+        }
+        if (keyspace == null || isMappingType(injectionPoint.getType())) {
+            return;
+        }
+        final Class type;
+        if (injectionPoint.getType() == CassandraAsyncSession.class) {
+            type = CassandraAsyncSession.class;
+        } else if (injectionPoint.getType() instanceof Class && ((Class) injectionPoint.getType()).isAssignableFrom(sessionClass)) {
+            type = sessionClass;
+        } else {
+            log.log(Level.WARNING, "Ignoring @Keyspace({0}) qualifier on injection point {1}, type is not Session or CassandraAsyncSession", new Object[]{keyspace.value(), injectionPoint});
+            return;
+        }
+        if (profile == null) {
+            log.log(Level.WARNING, "Ignoring @Keyspace({0}) qualifier on injection point {1}, @Named profile is not specified", new Object[]{keyspace.value(), injectionPoint});
+            return;
+        }
+        final Set<Annotation> qualifiers = new HashSet<>(injectionPoint.getQualifiers());
+        keyspaceInjections.putIfAbsent(Arrays.asList(type, qualifiers), new KeyspaceInjection(profile, keyspace.value(), type, qualifiers));
+    }
+
+    <T, X> void collectMappingInjectionPoints(@Observes ProcessInjectionPoint<T, X> pip) {
+        final InjectionPoint injectionPoint = pip.getInjectionPoint();
+        final Type type = injectionPoint.getType();
+        if (!isMappingType(type)) {
+            return;
+        }
+        Keyspace keyspace = null;
+        String profile = null;
+        for (Annotation qualifier : injectionPoint.getQualifiers()) {
+            if (qualifier instanceof Keyspace) {
+                keyspace = (Keyspace) qualifier;
+            } else if (qualifier instanceof Named) {
+                profile = ((Named) qualifier).value();
+            }
+        }
+        if (profile == null) {
+            log.log(Level.WARNING, "Ignoring object mapper injection point {0}, @Named profile is not specified", injectionPoint);
+            return;
+        }
+        final Class rawType = (Class) (type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type);
+        Class mappedClass = null;
+        boolean accessor = false;
+        if (rawType.getName().equals(CassandraMappingCache.MAPPERCLASS)) {
+            final Type entityType = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0] : null;
+            if (!(entityType instanceof Class)) {
+                log.log(Level.WARNING, "Ignoring Mapper injection point {0}, the mapped entity class is not specified", injectionPoint);
+                return;
+            }
+            mappedClass = (Class) entityType;
+        } else if (CassandraMappingCache.isAccessor(rawType)) {
+            mappedClass = rawType;
+            accessor = true;
+        }
+        if (mappingCache == null) {
+            synchronized (this) {
+                if (mappingCache == null) {
+                    mappingCache = new CassandraMappingCache(rawType.getClassLoader());
+                }
+            }
+        }
+        final Set<Annotation> qualifiers = new HashSet<>(injectionPoint.getQualifiers());
+        mappingInjections.putIfAbsent(Arrays.asList(type, qualifiers),
+                new MappingInjection(profile, keyspace != null ? keyspace.value() : null, type, rawType, mappedClass, accessor, qualifiers));
+    }
+
+    void prepareStatements(@Observes AfterDeploymentValidation adv) {
+        // prepare the injected statements when the deployment starts, instead of on the first request
+        final Collection<String> profiles = getService().profileNames();
+        for (CqlInjection cqlInjection : cqlInjections.values()) {
+            if (!profiles.contains(cqlInjection.profile)) {
+                continue;
+            }
+            try {
+                statementRegistry(cqlInjection.profile).prepare(cqlInjection.cql);
+            } catch (RuntimeException e) {
+                adv.addDeploymentProblem(e);
+            }
+        }
+    }
+
+    void createMappers(@Observes AfterDeploymentValidation adv) {
+        // create the injected mappers when the deployment starts, so the table metadata is read once per deployment
+        final Collection<String> profiles = getService().profileNames();
+        for (MappingInjection mappingInjection : mappingInjections.values()) {
+            if (!profiles.contains(mappingInjection.profile)) {
+                continue;
+            }
+            try {
+                mappingInjection.produce(mappingCache);
+            } catch (RuntimeException e) {
+                adv.addDeploymentProblem(e);
+            }
+        }
+    }
+
+    void clearMappingCache(@Observes BeforeShutdown beforeShutdown) {
+        if (mappingCache != null) {
+            mappingCache.clear();
+        }
+    }
+
+    private static boolean isMappingType(Type type) {
+        final Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+        if (!(rawType instanceof Class)) {
+            return false;
+        }
+        final String name = ((Class) rawType).getName();
+        return name.equals(CassandraMappingCache.MAPPINGMANAGERCLASS) ||
+                name.equals(CassandraMappingCache.MAPPERCLASS) ||
+                CassandraMappingCache.isAccessor((Class) rawType);
+    }
+
+    private void registerStatementBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        final Collection<String> profiles = getService().profileNames();
+        for (CqlInjection cqlInjection : cqlInjections.values()) {
+            if (!profiles.contains(cqlInjection.profile)) {
+                log.log(Level.WARNING, "Ignoring @Cql({0}), @Named({1}) does not reference known NoSQL profile name", new Object[]{cqlInjection.cql, cqlInjection.profile});
+                continue;
+            }
+            log.log(Level.INFO, "Registering PreparedStatement bean {0} for profile {1}", new Object[]{cqlInjection.cql, cqlInjection.profile});
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(preparedStatementClass, cqlInjection.qualifiers),
+                    preparedStatementClass, new StatementProducerFactory(cqlInjection)));
+        }
+    }
+
+    private void registerKeyspaceBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        final Collection<String> profiles = getService().profileNames();
+        for (KeyspaceInjection keyspaceInjection : keyspaceInjections.values()) {
+            if (!profiles.contains(keyspaceInjection.profile)) {
+                log.log(Level.WARNING, "Ignoring @Keyspace({0}), @Named({1}) does not reference known NoSQL profile name", new Object[]{keyspaceInjection.keyspace, keyspaceInjection.profile});
+                continue;
+            }
+            log.log(Level.INFO, "Registering {0} bean {1} for profile {2}", new Object[]{keyspaceInjection.type.getSimpleName(), keyspaceInjection.keyspace, keyspaceInjection.profile});
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(keyspaceInjection.type, keyspaceInjection.qualifiers),
+                    keyspaceInjection.type, new KeyspaceSessionProducerFactory(keyspaceInjection)));
+        }
+    }
+
+    private void registerAsyncSessionBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        for (String profile : getService().profileNames()) {
+            if (((CassandraClientConnectionsService) ConnectionServiceAccess.connection(profile)).getSession() == null) {
+                continue;
+            }
+            log.log(Level.INFO, "Registering CassandraAsyncSession bean for profile {0}", profile);
+            final Set<Annotation> qualifiers = new HashSet<>(Arrays.asList(new NamedLiteral(profile), AnyLiteral.INSTANCE));
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(CassandraAsyncSession.class, qualifiers),
+                    CassandraAsyncSession.class, new AsyncSessionProducerFactory(profile)));
+        }
+    }
+
+    private void registerProfileServiceBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        for (String profile : getService().profileNames()) {
+            final CassandraClientConnectionsService connection = (CassandraClientConnectionsService) ConnectionServiceAccess.connection(profile);
+            if (connection.getBatchWriter() != null) {
+                registerProfileServiceBean(abd, bm, profile, CassandraBatchWriter.class);
+            }
+        }
+    }
+
+    private void registerProfileServiceBean(AfterBeanDiscovery abd, BeanManager bm, String profile, Class serviceClass) {
+        log.log(Level.INFO, "Registering {0} bean for profile {1}", new Object[]{serviceClass.getSimpleName(), profile});
+        final Set<Annotation> qualifiers = new HashSet<>(Arrays.asList(new NamedLiteral(profile), AnyLiteral.INSTANCE));
+        abd.addBean(bm.createBean(
+                new InjectionPointBeanAttributes(serviceClass, qualifiers),
+                serviceClass, new ProfileServiceProducerFactory(profile, serviceClass)));
+    }
+
+    private void registerMappingBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        final Collection<String> profiles = getService().profileNames();
+        for (MappingInjection mappingInjection : mappingInjections.values()) {
+            if (!profiles.contains(mappingInjection.profile)) {
+                log.log(Level.WARNING, "Ignoring {0} injection, @Named({1}) does not reference known NoSQL profile name", new Object[]{mappingInjection.rawType.getSimpleName(), mappingInjection.profile});
+                continue;
+            }
+            log.log(Level.INFO, "Registering {0} bean for profile {1}", new Object[]{mappingInjection.type.getTypeName(), mappingInjection.profile});
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(mappingInjection.type, mappingInjection.qualifiers),
+                    mappingInjection.rawType, new MappingProducerFactory(mappingInjection, mappingCache)));
+        }
+    }
+
+    private static CassandraStatementRegistry statementRegistry(String profile) {
+        final CassandraStatementRegistry statementRegistry = ((CassandraClientConnectionsService) ConnectionServiceAccess.connection(profile)).getStatementRegistry();
+        if (statementRegistry == null) {
+            throw new IllegalStateException("Cassandra profile " + profile + " doesn't specify a database (keyspace) to prepare statements with");
+        }
+        return statementRegistry;
     }
 
     private SubsystemService getService() {
@@ -263,4 +525,325 @@ public class CassandraExtension implements Extension {
         }
     }
 
+    private static class CqlInjection {
+        private final String profile;
+        private final String cql;
+        private final Set<Annotation> qualifiers;
+
+        CqlInjection(String profile, String cql, Set<Annotation> qualifiers) {
+            this.profile = profile;
+            this.cql = cql;
+            this.qualifiers = qualifiers;
+        }
+    }
+
+    private static class KeyspaceInjection {
+        private final String profile;
+        private final String keyspace;
+        private final Class type;
+        private final Set<Annotation> qualifiers;
+
+        KeyspaceInjection(String profile, String keyspace, Class type, Set<Annotation> qualifiers) {
+            this.profile = profile;
+            this.keyspace = keyspace;
+            this.type = type;
+            this.qualifiers = qualifiers;
+        }
+    }
+
+    private static class MappingInjection {
+        private final String profile;
+        // null means the profile keyspace
+        private final String keyspace;
+        private final Type type;
+        private final Class rawType;
+        // entity or Accessor class, null for the MappingManager
+        private final Class mappedClass;
+        private final boolean accessor;
+        private final Set<Annotation> qualifiers;
+
+        MappingInjection(String profile, String keyspace, Type type, Class rawType, Class mappedClass, boolean accessor, Set<Annotation> qualifiers) {
+            this.profile = profile;
+            this.keyspace = keyspace;
+            this.type = type;
+            this.rawType = rawType;
+            this.mappedClass = mappedClass;
+            this.accessor = accessor;
+            this.qualifiers = qualifiers;
+        }
+
+        Object produce(CassandraMappingCache mappingCache) {
+            if (mappedClass == null) {
+                return mappingCache.mappingManager(profile, keyspace);
+            }
+            if (accessor) {
+                return mappingCache.accessor(profile, keyspace, mappedClass);
+            }
+            return mappingCache.mapper(profile, keyspace, mappedClass);
+        }
+    }
+
+    private static class InjectionPointBeanAttributes<T> implements BeanAttributes<T> {
+
+        private final Set<Type> types;
+        private final Set<Annotation> qualifiers;
+
+        InjectionPointBeanAttributes(Type type, Set<Annotation> qualifiers) {
+            this.types = new HashSet<>(Arrays.asList(type, Object.class));
+            this.qualifiers = qualifiers;
+        }
+
+        @Override
+        public String getName() {
+            return null;
+        }
+
+        @Override
+        public Set<Annotation> getQualifiers() {
+            return qualifiers;
+        }
+
+        @Override
+        public Class<? extends Annotation> getScope() {
+            // PreparedStatement + Session instances are thread safe and held by the profile service, a CassandraAsyncSession
+            // looks up the async-executor with the naming context of the injection.
+            // MappingManager/Mapper/Accessor instances are cached per deployment by the CassandraMappingCache, so they
+            // are application wide without needing a client proxy (Mapper is not proxyable)
+            return Dependent.class;
+        }
+
+        @Override
+        public Set<Class<? extends Annotation>> getStereotypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Type> getTypes() {
+            return types;
+        }
+
+        @Override
+        public boolean isAlternative() {
+            return false;
+        }
+    }
+
+    private static class StatementProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+
+        private final CqlInjection cqlInjection;
+
+        StatementProducerFactory(CqlInjection cqlInjection) {
+            this.cqlInjection = cqlInjection;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return (T) statementRegistry(cqlInjection.profile).prepare(cqlInjection.cql);
+                }
+
+                @Override
+                public void dispose(T statement) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class KeyspaceSessionProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+
+        private final KeyspaceInjection keyspaceInjection;
+
+        KeyspaceSessionProducerFactory(KeyspaceInjection keyspaceInjection) {
+            this.keyspaceInjection = keyspaceInjection;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    CassandraClientConnectionsService connection = (CassandraClientConnectionsService) ConnectionServiceAccess.connection(keyspaceInjection.profile);
+                    if (keyspaceInjection.type == CassandraAsyncSession.class) {
+                        return (T) connection.createAsyncSession(keyspaceInjection.keyspace);
+                    }
+                    return (T) connection.getSession(keyspaceInjection.keyspace);
+                }
+
+                @Override
+                public void dispose(T session) {
+                    // the keyspace Session is closed when the profile stops
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class AsyncSessionProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+
+        private final String profile;
+
+        AsyncSessionProducerFactory(String profile) {
+            this.profile = profile;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    CassandraClientConnectionsService connection = (CassandraClientConnectionsService) ConnectionServiceAccess.connection(profile);
+                    return (T) connection.createAsyncSession(null);
+                }
+
+                @Override
+                public void dispose(T asyncSession) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class MappingProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+
+        private final MappingInjection mappingInjection;
+        private final CassandraMappingCache mappingCache;
+
+        MappingProducerFactory(MappingInjection mappingInjection, CassandraMappingCache mappingCache) {
+            this.mappingInjection = mappingInjection;
+            this.mappingCache = mappingCache;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return (T) mappingInjection.produce(mappingCache);
+                }
+
+                @Override
+                public void dispose(T mapper) {
+                    // cached until the deployment is undeployed
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class ProfileServiceProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final String profile;
+        private final Class<T> serviceClass;
+
+        ProfileServiceProducerFactory(String profile, Class<T> serviceClass) {
+            this.profile = profile;
+            this.serviceClass = serviceClass;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return ConnectionServiceAccess.connection(profile).unwrap(serviceClass);
+                }
+
+                @Override
+                public void dispose(T service) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.wildfly.extension.nosql.driver.cassandra.CassandraClientConnectionsService;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * CassandraMappingCache holds the object mapper instances (<code>MappingManager</code>, <code>Mapper</code> and
+ * Accessor proxies) that are injected into a deployment, so that they are built once per deployment, instead of
+ * reading the table metadata and preparing the mapper statements again for each request.
+ *
+ * There is one MappingManager per profile Session (the profile keyspace or one of the profile keyspaces).
+ * The object mapper (cassandra-driver-mapping) is loaded with the classloader of the injection point type, so it
+ * can be packaged in the deployment.
+ */
+class CassandraMappingCache {
+
+    private static final String SESSIONCLASS = "com.datastax.driver.core.Session";
+    static final String MAPPINGMANAGERCLASS = "com.datastax.driver.mapping.MappingManager";
+    static final String MAPPERCLASS = "com.datastax.driver.mapping.Mapper";
+    static final String ACCESSORANNOTATION = "com.datastax.driver.mapping.annotations.Accessor";
+
+    // profile + keyspace to MappingManager
+    private final ConcurrentMap<List<String>, Object> mappingManagers = new ConcurrentHashMap<>();
+    // profile + keyspace + entity/accessor class to Mapper/Accessor
+    private final ConcurrentMap<List<Object>, Object> mappers = new ConcurrentHashMap<>();
+
+    private final MethodHandle mappingManagerCtor;
+    private final MethodHandle mapperMethod;
+    private final MethodHandle createAccessorMethod;
+
+    CassandraMappingCache(ClassLoader classLoader) {
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            final Class mappingManagerClass = classLoader.loadClass(MAPPINGMANAGERCLASS);
+            // public MappingManager(Session session)
+            Constructor ctor = null;
+            for (Constructor candidate : mappingManagerClass.getConstructors()) {
+                if (candidate.getParameterCount() == 1 && candidate.getParameterTypes()[0].getName().equals(SESSIONCLASS)) {
+                    ctor = candidate;
+                }
+            }
+            if (ctor == null) {
+                throw new NoSuchMethodException(MAPPINGMANAGERCLASS + "(" + SESSIONCLASS + ")");
+            }
+            mappingManagerCtor = lookup.unreflectConstructor(ctor);
+            mapperMethod = lookup.unreflect(mappingManagerClass.getMethod("mapper", Class.class));
+            createAccessorMethod = lookup.unreflect(mappingManagerClass.getMethod("createAccessor", Class.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("could not setup Cassandra object mapper support, is cassandra-driver-mapping visible to the deployment?", e);
+        }
+    }
+
+    static boolean isAccessor(Class type) {
+        if (!type.isInterface()) {
+            return false;
+        }
+        for (Annotation annotation : type.getAnnotations()) {
+            if (annotation.annotationType().getName().equals(ACCESSORANNOTATION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param keyspace is one of the profile keyspaces, null means the profile keyspace
+     */
+    Object /* MappingManager */ mappingManager(String profile, String keyspace) {
+        final List<String> key = Arrays.asList(profile, keyspace);
+        Object result = mappingManagers.get(key);
+        if (result == null) {
+            final CassandraClientConnectionsService connection = (CassandraClientConnectionsService) ConnectionServiceAccess.connection(profile);
+            final Object session = keyspace != null ? connection.getSession(keyspace) : connection.getSession();
+            if (session == null) {
+                throw new IllegalStateException("Cassandra profile " + profile + " doesn't specify a database (keyspace) to map objects with");
+            }
+            try {
+                result = mappingManagerCtor.invoke(session);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not create MappingManager for profile " + profile, throwable);
+            }
+            Object previous = mappingManagers.putIfAbsent(key, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    Object /* Mapper */ mapper(String profile, String keyspace, Class entityClass) {
+        return mapped(profile, keyspace, entityClass, mapperMethod);
+    }
+
+    Object accessor(String profile, String keyspace, Class accessorClass) {
+        return mapped(profile, keyspace, accessorClass, createAccessorMethod);
+    }
+
+    void clear() {
+        mappers.clear();
+        mappingManagers.clear();
+    }
+
+    private Object mapped(String profile, String keyspace, Class type, MethodHandle factory) {
+        final List<Object> key = Arrays.asList(profile, keyspace, type);
+        Object result = mappers.get(key);
+        if (result == null) {
+            try {
+                result = factory.invoke(mappingManager(profile, keyspace), type);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not map " + type.getName() + " for profile " + profile, throwable);
+            }
+            Object previous = mappers.putIfAbsent(key, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extension.nosql.driver.cassandra;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jboss.as.naming.context.NamespaceContextSelector;
+import org.jboss.security.SecurityContext;
+import org.jboss.security.SecurityContextAssociation;
+
+/**
+ * CassandraAsyncSession runs <code>Session.executeAsync</code> and returns a <code>CompletionStage</code>, instead of a
+ * Guava <code>ListenableFuture</code> that completes on the driver (Netty) I/O threads.
+ *
+ * Completions are run by the profile <code>async-executor</code> (by default the WildFly default ManagedExecutorService),
+ * with the thread context classloader, naming context and security context of the thread that executed the statement,
+ * so dependent stages can block, look up java:comp resources and call secured EJBs without stalling the event loop.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyCassandra") CassandraAsyncSession session;</code>
+ * <code>session.&lt;ResultSet&gt;executeAsync("SELECT balance FROM accounts WHERE name = ?", name).thenApply(rs -&gt; rs.one().getInt(0));</code>
+ */
+public class CassandraAsyncSession {
+
+    private final CassandraInteraction cassandraInteraction;
+    private final Object /* Session */ session;
+    private final Executor executor;
+
+    CassandraAsyncSession(CassandraInteraction cassandraInteraction, Object session, Executor executor) {
+        this.cassandraInteraction = cassandraInteraction;
+        this.session = session;
+        this.executor = executor;
+    }
+
+    /**
+     * @param cql is the CQL text, with optional bind markers
+     * @param values are the bind marker values
+     * @param <T> is ResultSet
+     * @return CompletionStage that completes with the ResultSet on the async executor
+     */
+    public <T> CompletionStage<T> executeAsync(String cql, Object... values) {
+        try {
+            return complete(cassandraInteraction.executeAsync(session, cql, values));
+        } catch (Throwable throwable) {
+            return failed(throwable);
+        }
+    }
+
+    /**
+     * @param statement is a Statement (e.g. a BoundStatement)
+     * @param <T> is ResultSet
+     * @return CompletionStage that completes with the ResultSet on the async executor
+     */
+    public <T> CompletionStage<T> executeAsync(Object /* Statement */ statement) {
+        try {
+            return complete(cassandraInteraction.executeAsync(session, statement));
+        } catch (Throwable throwable) {
+            return failed(throwable);
+        }
+    }
+
+    /**
+     * @return the Session that statements are executed with
+     */
+    public Object /* Session */ getSession() {
+        return session;
+    }
+
+    private <T> CompletionStage<T> complete(final Object /* ResultSetFuture */ future) throws Throwable {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final CallerContext callerContext = new CallerContext();
+        cassandraInteraction.addListener(future, () -> callerContext.run(() -> {
+            try {
+                result.complete((T) ((Future) future).get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        }), command -> {
+            // called on the driver I/O thread, so don't lose the completion if the executor is shut down
+            try {
+                executor.execute(command);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        // cancelling the stage cancels the request
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                ((Future) future).cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static <T> CompletionStage<T> failed(Throwable throwable) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(throwable);
+        return result;
+    }
+
+    /**
+     * The thread context of the caller, that is restored around the completion.
+     */
+    private static final class CallerContext {
+        private final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        private final NamespaceContextSelector namespaceContextSelector = NamespaceContextSelector.getCurrentSelector();
+        private final SecurityContext securityContext = SecurityContextAssociation.getSecurityContext();
+
+        void run(Runnable task) {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previousClassLoader = thread.getContextClassLoader();
+            final SecurityContext previousSecurityContext = SecurityContextAssociation.getSecurityContext();
+            thread.setContextClassLoader(classLoader);
+            if (namespaceContextSelector != null) {
+                NamespaceContextSelector.pushCurrentSelector(namespaceContextSelector);
+            }
+            SecurityContextAssociation.setSecurityContext(securityContext);
+            try {
+                task.run();
+            } finally {
+                SecurityContextAssociation.setSecurityContext(previousSecurityContext);
+                if (namespaceContextSelector != null) {
+                    NamespaceContextSelector.popCurrentSelector();
+                }
+                thread.setContextClassLoader(previousClassLoader);
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extension.nosql.driver.cassandra;
+
+import static org.wildfly.extension.nosql.driver.cassandra.CassandraLogger.ROOT_LOGGER;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.wildfly.nosql.common.MethodHandleBuilder;
+import org.wildfly.nosql.common.NoSQLConstants;
+
+/**
+ * CassandraBatchWriter coalesces single statement writes from many application threads into UNLOGGED
+ * <code>BatchStatement</code>s, that only contain statements for the same partition, so that each batch is
+ * applied by the replicas of one partition in one round trip, without the coordinator having to fan out.
+ *
+ * Statements are queued and flushed when <code>batch-size</code> statements are pending, or at least every
+ * <code>linger</code> milliseconds.  At most <code>max-in-flight</code> batches are executed at the same time, further
+ * statements stay queued until a batch completes.  At most <code>max-queued</code> statements are queued, further writes
+ * are rejected.  Each statement gets its own CompletionStage, that completes on the profile <code>async-executor</code>
+ * when the batch containing it completes.
+ *
+ * Statements are grouped by keyspace + routing key, statements without a routing key (e.g. simple statements
+ * without routing information) are executed on their own.  Unlogged batches are not atomic across partitions, and
+ * a failed batch fails all of its statements, so the statements should be idempotent.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyCassandra") CassandraBatchWriter writer;</code>
+ * <code>writer.write(insertEvent.bind(deviceId, timestamp, value)).thenRun(...);</code>
+ */
+public class CassandraBatchWriter {
+
+    private static final String STATEMENTCLASS = "com.datastax.driver.core.Statement";
+    private static final String BATCHSTATEMENTCLASS = "com.datastax.driver.core.BatchStatement";
+    private static final String BATCHTYPECLASS = "com.datastax.driver.core.BatchStatement$Type";
+    private static final String CONFIGURATIONCLASS = "com.datastax.driver.core.Configuration";
+    private static final String PROTOCOLOPTIONSCLASS = "com.datastax.driver.core.ProtocolOptions";
+    private static final String PROTOCOLVERSIONCLASS = "com.datastax.driver.core.ProtocolVersion";
+    private static final String CODECREGISTRYCLASS = "com.datastax.driver.core.CodecRegistry";
+
+    private final ConcurrentLinkedQueue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong failedStatements = new AtomicLong();
+
+    // write checks running again after queueing, stop fails the statements that were queued after the final flush
+    private volatile boolean running;
+
+    private final String description;
+    private final String asyncExecutorName;
+    private final int maxQueued;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final CassandraInteraction cassandraInteraction;
+    private final Object /* Session */ session;
+    private final Object /* ProtocolVersion */ protocolVersion;
+    private final Object /* CodecRegistry */ codecRegistry;
+    private final Object /* BatchStatement.Type */ unlogged;
+    private final Class statementClass;
+
+    private final MethodHandle batchStatementCtor;
+    private final MethodHandle batchAddMethod;
+    private final MethodHandle getRoutingKeyMethod;
+    private final MethodHandle getKeyspaceMethod;
+
+    private volatile ScheduledExecutorService executor;
+    // looked up by the first write, with the naming context of the application
+    private volatile Executor completionExecutor;
+
+    private final Runnable sizeFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable lingerFlush = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (Throwable throwable) {
+                // an exception would cancel the periodic linger flush
+                ROOT_LOGGER.batchFlushFailed(description, throwable);
+            }
+        }
+    };
+
+    CassandraBatchWriter(ConfigurationBuilder configurationBuilder, CassandraInteraction cassandraInteraction, Object cluster, Object session) {
+        this.description = configurationBuilder.getDescription();
+        this.batchSize = configurationBuilder.getBatchSize();
+        this.lingerMillis = configurationBuilder.getBatchLinger();
+        this.maxInFlight = configurationBuilder.getBatchMaxInFlight();
+        this.maxQueued = configurationBuilder.getBatchMaxQueued();
+        this.asyncExecutorName = configurationBuilder.getAsyncExecutor();
+        this.inFlight = new Semaphore(maxInFlight);
+        this.cassandraInteraction = cassandraInteraction;
+        this.session = session;
+
+        MethodHandleBuilder methodHandleBuilder = new MethodHandleBuilder();
+        methodHandleBuilder.classLoader(ModuleIdentifier.fromString(configurationBuilder.getModuleName()));
+        Class protocolVersionClass = methodHandleBuilder.className(PROTOCOLVERSIONCLASS).getTargetClass();
+        Class codecRegistryClass = methodHandleBuilder.className(CODECREGISTRYCLASS).getTargetClass();
+        Class configurationClass = methodHandleBuilder.className(CONFIGURATIONCLASS).getTargetClass();
+        MethodHandle getProtocolOptionsMethod = methodHandleBuilder.method("getProtocolOptions");
+        MethodHandle getCodecRegistryMethod = methodHandleBuilder.method("getCodecRegistry");
+        methodHandleBuilder.className(PROTOCOLOPTIONSCLASS);
+        MethodHandle getProtocolVersionMethod = methodHandleBuilder.method("getProtocolVersion");
+        methodHandleBuilder.className(NoSQLConstants.CASSANDRACLUSTERCLASS);
+        MethodHandle getConfigurationMethod = methodHandleBuilder.method("getConfiguration");
+        Class batchTypeClass = methodHandleBuilder.className(BATCHTYPECLASS).getTargetClass();
+        MethodHandle unloggedField = methodHandleBuilder.staticField("UNLOGGED");
+        statementClass = methodHandleBuilder.className(STATEMENTCLASS).getTargetClass();
+        getRoutingKeyMethod = methodHandleBuilder.method("getRoutingKey", protocolVersionClass, codecRegistryClass);
+        getKeyspaceMethod = methodHandleBuilder.method("getKeyspace");
+        methodHandleBuilder.className(BATCHSTATEMENTCLASS);
+        batchStatementCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class, batchTypeClass));
+        batchAddMethod = methodHandleBuilder.method("add", statementClass);
+        try {
+            unlogged = unloggedField.invoke();
+            // the protocol version is negotiated by the time the profile session is connected
+            Object configuration = getConfigurationMethod.invoke(cluster);
+            protocolVersion = getProtocolVersionMethod.invoke(getProtocolOptionsMethod.invoke(configuration));
+            codecRegistry = getCodecRegistryMethod.invoke(configuration);
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not setup batch writer for " + description, throwable);
+        }
+    }
+
+    /**
+     * Queue a write statement.
+     *
+     * @param statement is the write <code>Statement</code> (e.g. a BoundStatement of an INSERT or UPDATE)
+     * @return CompletionStage that completes when the batch containing the statement is applied
+     */
+    public CompletionStage<Void> write(Object /* Statement */ statement) {
+        Objects.requireNonNull(statement, "statement");
+        if (!statementClass.isInstance(statement)) {
+            throw new IllegalArgumentException(statement.getClass().getName() + " is not a " + STATEMENTCLASS);
+        }
+        final PendingWrite write = new PendingWrite(statement);
+        if (completionExecutor == null) {
+            try {
+                completionExecutor = (Executor) new InitialContext().lookup(asyncExecutorName);
+            } catch (NamingException e) {
+                write.result.completeExceptionally(new IllegalStateException("could not lookup async-executor " + asyncExecutorName +
+                        " for Cassandra profile " + description, e));
+                return write.result;
+            }
+        }
+        if (!running) {
+            write.result.completeExceptionally(notStarted());
+            return write.result;
+        }
+        final int pending = queued.incrementAndGet();
+        if (pending > maxQueued) {
+            queued.decrementAndGet();
+            write.result.completeExceptionally(new RejectedExecutionException("batch writer for " + description + " is full, " + maxQueued + " statements are queued"));
+            return write.result;
+        }
+        queue.add(write);
+        if (!running) {
+            // stopped concurrently, if the statement is still queued it may have missed the final flush
+            if (queue.remove(write)) {
+                queued.decrementAndGet();
+                write.result.completeExceptionally(notStarted());
+            }
+            return write.result;
+        }
+        final ScheduledExecutorService current = executor;
+        if (pending >= batchSize && current != null && flushRequested.compareAndSet(false, true)) {
+            try {
+                current.execute(sizeFlush);
+            } catch (RejectedExecutionException ignore) {
+                // stopping, the final flush will write the queued statements
+            }
+        }
+        return write.result;
+    }
+
+    private RejectedExecutionException notStarted() {
+        return new RejectedExecutionException("batch writer for " + description + " is not started");
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getStatementCount() {
+        return statements.get();
+    }
+
+    public long getFailedStatementCount() {
+        return failedStatements.get();
+    }
+
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Cassandra batch writer " + description);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(lingerFlush, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    void stop() {
+        running = false;
+        final ScheduledExecutorService current = executor;
+        executor = null;
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(lingerMillis + TimeUnit.SECONDS.toMillis(30), TimeUnit.MILLISECONDS)) {
+                current.shutdownNow();
+            }
+            // write whatever was queued before the writer was stopped, and wait for the batches to complete
+            flush();
+            // a statement queued concurrently with the final flush is rejected, either here or by write
+            PendingWrite write;
+            while ((write = queue.poll()) != null) {
+                queued.decrementAndGet();
+                write.result.completeExceptionally(notStarted());
+            }
+            if (inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+                inFlight.release(maxInFlight);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // only called by the writer thread, or by stop() after the writer thread terminated
+    private void flush() {
+        flushRequested.set(false);
+        final Map<PartitionKey, List<PendingWrite>> partitions = new LinkedHashMap<>();
+        final List<PendingWrite> unrouted = new ArrayList<>();
+        // only drain what is queued now, so that a busy writer still completes the flush
+        int pending = queued.get();
+        PendingWrite write;
+        while (pending-- > 0 && (write = queue.poll()) != null) {
+            queued.decrementAndGet();
+            final PartitionKey key;
+            try {
+                key = partitionKey(write.statement);
+            } catch (Throwable throwable) {
+                failedStatements.incrementAndGet();
+                write.result.completeExceptionally(throwable);
+                continue;
+            }
+            if (key == null) {
+                unrouted.add(write);
+                continue;
+            }
+            List<PendingWrite> partition = partitions.get(key);
+            if (partition == null) {
+                partition = new ArrayList<>();
+                partitions.put(key, partition);
+            }
+            partition.add(write);
+            if (partition.size() == batchSize) {
+                partitions.remove(key);
+                execute(partition);
+            }
+        }
+        for (List<PendingWrite> partition : partitions.values()) {
+            execute(partition);
+        }
+        for (PendingWrite single : unrouted) {
+            execute(Collections.singletonList(single));
+        }
+    }
+
+    private PartitionKey partitionKey(Object statement) throws Throwable {
+        final ByteBuffer routingKey = (ByteBuffer) getRoutingKeyMethod.invoke(statement, protocolVersion, codecRegistry);
+        if (routingKey == null) {
+            return null;
+        }
+        return new PartitionKey((String) getKeyspaceMethod.invoke(statement), routingKey);
+    }
+
+    private void execute(final List<PendingWrite> batch) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(batch, e);
+            return;
+        }
+        batches.incrementAndGet();
+        statements.addAndGet(batch.size());
+        try {
+            final Object statement;
+            if (batch.size() == 1) {
+                statement = batch.get(0).statement;
+            } else {
+                statement = batchStatementCtor.invoke(unlogged);
+                for (PendingWrite write : batch) {
+                    batchAddMethod.invoke(statement, write.statement);
+                }
+            }
+            final Object future = cassandraInteraction.executeAsync(session, statement);
+            // the listener runs on the driver I/O thread, the statements are completed on the async-executor
+            cassandraInteraction.addListener(future, () -> {
+                inFlight.release();
+                try {
+                    ((Future) future).get();
+                    complete(batch, null);
+                } catch (ExecutionException e) {
+                    fail(batch, e.getCause());
+                } catch (Throwable throwable) {
+                    fail(batch, throwable);
+                }
+            }, Runnable::run);
+        } catch (Throwable throwable) {
+            inFlight.release();
+            fail(batch, throwable);
+        }
+    }
+
+    private void fail(List<PendingWrite> batch, Throwable throwable) {
+        // the failure is returned by the CompletionStages and counted in batch-writer-failed-statements
+        ROOT_LOGGER.tracef(throwable, "batch of %d statements for %s failed", batch.size(), description);
+        failedStatements.addAndGet(batch.size());
+        complete(batch, throwable);
+    }
+
+    private void complete(final List<PendingWrite> batch, final Throwable throwable) {
+        final Runnable completion = () -> {
+            for (PendingWrite write : batch) {
+                if (throwable == null) {
+                    write.result.complete(null);
+                } else {
+                    write.result.completeExceptionally(throwable);
+                }
+            }
+        };
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down, don't lose the outcome of the batch
+            completion.run();
+        }
+    }
+
+    private static final class PendingWrite {
+        private final Object /* Statement */ statement;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingWrite(Object statement) {
+            this.statement = statement;
+        }
+    }
+
+    private static final class PartitionKey {
+        private final String keyspace;
+        private final ByteBuffer routingKey;
+
+        PartitionKey(String keyspace, ByteBuffer routingKey) {
+            this.keyspace = keyspace;
+            this.routingKey = routingKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PartitionKey)) {
+                return false;
+            }
+            PartitionKey other = (PartitionKey) o;
+            return Objects.equals(keyspace, other.keyspace) && routingKey.equals(other.routingKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(keyspace) + routingKey.hashCode();
+        }
+    }
+}
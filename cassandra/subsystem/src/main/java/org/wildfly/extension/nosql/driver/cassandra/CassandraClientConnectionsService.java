@@ -19,6 +19,11 @@ import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 
 import org.jboss.as.network.OutboundSocketBinding;
 import org.jboss.msc.inject.Injector;
@@ -29,6 +34,8 @@ import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
 import org.jboss.msc.value.InjectedValue;
 import org.jboss.security.SubjectFactory;
+import org.wildfly.extension.nosql.driver.cassandra.transaction.CassandraTransactionSupport;
+import org.wildfly.extension.nosql.driver.cassandra.transaction.TransactionEnlistmentType;
 import org.wildfly.extension.nosql.subsystem.cassandra.CassandraSubsystemService;
 import org.wildfly.nosql.common.spi.NoSQLConnection;
 
@@ -47,6 +54,11 @@ public class CassandraClientConnectionsService implements Service<CassandraClien
     private final Class sessionClass;
     private Object cluster;  // represents connection into Cassandra
     private Object session;  // only set if keyspaceName is specified
+    // long-lived Session per additional keyspace, so applications don't open new pools with cluster.connect(keyspace)
+    private final Map<String, Object /* Session */> sessions = new ConcurrentHashMap<>();
+    private CassandraSpeculativeExecutions speculativeExecutions;
+    private CassandraStatementRegistry statementRegistry;  // only set if keyspaceName is specified
+    private CassandraBatchWriter batchWriter;  // only set if keyspaceName + batch-writer are specified
     private final InjectedValue<CassandraSubsystemService> cassandraSubsystemServiceInjectedValue = new InjectedValue<>();
     private final InjectedValue<SubjectFactory> subjectFactory = new InjectedValue<>();
 
@@ -71,56 +83,161 @@ public class CassandraClientConnectionsService implements Service<CassandraClien
 
     @Override
     public void start(StartContext startContext) throws StartException {
-
+        // maintain a mapping from JNDI name to NoSQL module name, that we will use during deployment time to
+        // identify the static module name to add to the deployment.
+        cassandraSubsystemServiceInjectedValue.getValue().addModuleNameFromJndi(configurationBuilder.getJNDIName(), configurationBuilder.getModuleName());
+        cassandraSubsystemServiceInjectedValue.getValue().addModuleNameFromProfile(configurationBuilder.getDescription(), configurationBuilder.getModuleName());
         try {
-            // maintain a mapping from JNDI name to NoSQL module name, that we will use during deployment time to
-            // identify the static module name to add to the deployment.
-            cassandraSubsystemServiceInjectedValue.getValue().addModuleNameFromJndi(configurationBuilder.getJNDIName(), configurationBuilder.getModuleName());
-            cassandraSubsystemServiceInjectedValue.getValue().addModuleNameFromProfile(configurationBuilder.getDescription(), configurationBuilder.getModuleName());
-
-            for (OutboundSocketBinding target : outboundSocketBindings.values()) {
-                if (target.getDestinationPort() > 0) {
-                    cassandraInteraction.withPort(target.getDestinationPort());
-                }
-                if (target.getUnresolvedDestinationAddress() != null) {
-                    cassandraInteraction.addContactPoint(target.getUnresolvedDestinationAddress());
-                }
-            }
+            startProfile();
+        } catch (Throwable throwable) {
+            // close the cluster + sessions and stop the batch writer that were started before the failure
+            close();
+            throw new RuntimeException("could not setup Cassandra connection " + configurationBuilder.getDescription(), throwable);
+        }
+    }
 
-            if (subjectFactory.getOptionalValue() != null) {
-                cassandraInteraction.subjectFactory(subjectFactory.getOptionalValue());
+    private void startProfile() throws Throwable {
+        for (OutboundSocketBinding target : outboundSocketBindings.values()) {
+            if (target.getDestinationPort() > 0) {
+                cassandraInteraction.withPort(target.getDestinationPort());
             }
-
-            if (configurationBuilder.getDescription() != null) {
-                cassandraInteraction.withClusterName(configurationBuilder.getDescription());
+            if (target.getUnresolvedDestinationAddress() != null) {
+                cassandraInteraction.addContactPoint(target.getUnresolvedDestinationAddress());
             }
+        }
 
-            if (configurationBuilder.isWithSSL()) {
-                cassandraInteraction.withSSL();
-            }
+        if (subjectFactory.getOptionalValue() != null) {
+            cassandraInteraction.subjectFactory(subjectFactory.getOptionalValue());
+        }
+
+        if (configurationBuilder.getDescription() != null) {
+            cassandraInteraction.withClusterName(configurationBuilder.getDescription());
+        }
 
-            cluster = cassandraInteraction.build();
+        if (configurationBuilder.isWithSSL()) {
+            cassandraInteraction.withSSL();
+        }
+
+        if (configurationBuilder.getCompression() != null) {
+            cassandraInteraction.withCompression(configurationBuilder.getCompression());
+        }
 
-            String keySpace = configurationBuilder.getKeySpace();
-            if (keySpace != null) {
-                session = cassandraInteraction.connect(cluster, keySpace);
+        if (configurationBuilder.getProtocolVersion() != null) {
+            cassandraInteraction.withProtocolVersion(configurationBuilder.getProtocolVersion());
+        }
+
+        applyPoolingAndSocketOptions();
+
+        if (configurationBuilder.isLoadBalancing()) {
+            cassandraInteraction.withLoadBalancingPolicy(configurationBuilder.getLocalDc(), configurationBuilder.getUsedHostsPerRemoteDc(),
+                    configurationBuilder.isAllowRemoteDcsForLocalConsistency(), configurationBuilder.isTokenAware(), configurationBuilder.isLatencyAware());
+        }
+
+        if (configurationBuilder.isSpeculativeExecution()) {
+            speculativeExecutions = new CassandraSpeculativeExecutions(clusterClass.getClassLoader(), clusterClass,
+                    configurationBuilder.getSpeculativeDelay() != null ? configurationBuilder.getSpeculativeDelay() : 0,
+                    configurationBuilder.getSpeculativePercentile(), configurationBuilder.getSpeculativeHighestTrackableLatency(),
+                    configurationBuilder.getSpeculativeMaxExecutions());
+            cassandraInteraction.withSpeculativeExecutionPolicy(speculativeExecutions.policy());
+        }
+
+        cluster = cassandraInteraction.build();
+        if (speculativeExecutions != null) {
+            speculativeExecutions.register(cluster);
+        }
+
+        String keySpace = configurationBuilder.getKeySpace();
+        if (keySpace != null) {
+            session = cassandraInteraction.connect(cluster, keySpace);
+            statementRegistry = new CassandraStatementRegistry(configurationBuilder.getDescription(), clusterClass, session,
+                    configurationBuilder.getPreparedStatementCacheSize());
+            statementRegistry.register(cluster);
+            if (configurationBuilder.isBatchWriter()) {
+                batchWriter = new CassandraBatchWriter(configurationBuilder, cassandraInteraction, cluster, session);
+                batchWriter.start();
             }
-        } catch (Throwable throwable) {
-            throw new RuntimeException("could not setup Cassandra connection " + configurationBuilder.getDescription(), throwable);
+        }
+        for (String keyspaceName : configurationBuilder.getKeyspaces()) {
+            sessions.put(keyspaceName, cassandraInteraction.connect(cluster, keyspaceName));
+        }
+        if (TransactionEnlistmentType.BATCHONCOMMIT.equals(configurationBuilder.getTransactionEnlistment())) {
+            enlistSessions();
+        }
+    }
+
+    // writes executed through the profile Sessions within a JTA transaction, are sent as one logged batch when the JTA transaction commits.
+    // the statement registry + batch writer keep using the Session that isn't enlisted.
+    private void enlistSessions() throws ReflectiveOperationException {
+        final CassandraTransactionSupport transactionSupport = new CassandraTransactionSupport(sessionClass,
+                cassandraSubsystemServiceInjectedValue.getValue().transactionManager(),
+                cassandraSubsystemServiceInjectedValue.getValue().transactionSynchronizationRegistry(),
+                configurationBuilder.getDescription());
+        if (session != null) {
+            session = transactionSupport.wrap(session, configurationBuilder.getKeySpace());
+        }
+        for (Map.Entry<String, Object> entry : sessions.entrySet()) {
+            entry.setValue(transactionSupport.wrap(entry.getValue(), entry.getKey()));
+        }
+    }
+
+    private void applyPoolingAndSocketOptions() throws Throwable {
+        Integer core = configurationBuilder.getCoreConnectionsPerHost();
+        Integer max = configurationBuilder.getMaxConnectionsPerHost();
+        if (core != null || max != null) {
+            // an undefined core keeps one connection open, an undefined max grows up to core
+            int coreConnections = core != null ? core : 1;
+            cassandraInteraction.withConnectionsPerHost(coreConnections, max != null ? max : coreConnections);
+        }
+        if (configurationBuilder.getMaxRequestsPerConnection() != null) {
+            cassandraInteraction.withMaxRequestsPerConnection(configurationBuilder.getMaxRequestsPerConnection());
+        }
+        if (configurationBuilder.getHeartbeatInterval() != null) {
+            cassandraInteraction.withHeartbeatInterval(configurationBuilder.getHeartbeatInterval());
+        }
+        if (configurationBuilder.getPoolTimeout() != null) {
+            cassandraInteraction.withPoolTimeout(configurationBuilder.getPoolTimeout());
+        }
+        if (configurationBuilder.getConnectTimeout() != null) {
+            cassandraInteraction.withConnectTimeout(configurationBuilder.getConnectTimeout());
+        }
+        if (configurationBuilder.getReadTimeout() != null) {
+            cassandraInteraction.withReadTimeout(configurationBuilder.getReadTimeout());
         }
     }
 
     @Override
     public void stop(StopContext stopContext) {
+        close();
+    }
+
+    private void close() {
         try {
             cassandraSubsystemServiceInjectedValue.getValue().removeModuleNameFromJndi(configurationBuilder.getJNDIName());
             cassandraSubsystemServiceInjectedValue.getValue().removeModuleNameFromProfile(configurationBuilder.getDescription());
+            if (speculativeExecutions != null) {
+                speculativeExecutions.unregister();
+                speculativeExecutions = null;
+            }
+            if (batchWriter != null) {
+                batchWriter.stop();
+                batchWriter = null;
+            }
+            if (statementRegistry != null) {
+                statementRegistry.unregister();
+                statementRegistry = null;
+            }
+            for (Object keyspaceSession : sessions.values()) {
+                cassandraInteraction.sessionClose(keyspaceSession);
+            }
+            sessions.clear();
             if (session != null) {
                 cassandraInteraction.sessionClose(session);
                 session = null;
             }
-            cassandraInteraction.clusterClose(cluster);
-            cluster = null;
+            if (cluster != null) {
+                cassandraInteraction.clusterClose(cluster);
+                cluster = null;
+            }
         } catch (Throwable throwable) {
             ROOT_LOGGER.driverFailedToStop(throwable);
         }
@@ -139,6 +256,73 @@ public class CassandraClientConnectionsService implements Service<CassandraClien
         return session;
     }
 
+    /**
+     * Get the Session of one of the keyspaces defined for the profile.
+     *
+     * @param keyspaceName is either the profile keyspace or one of the additional profile keyspaces.
+     * @return Session
+     */
+    public Object /* Session */ getSession(String keyspaceName) {
+        if (session != null && keyspaceName.equals(configurationBuilder.getKeySpace())) {
+            return session;
+        }
+        Object result = sessions.get(keyspaceName);
+        if (result == null) {
+            throw new IllegalArgumentException("keyspace " + keyspaceName + " is not defined by profile " + configurationBuilder.getDescription());
+        }
+        return result;
+    }
+
+    /**
+     * Create a CassandraAsyncSession, that completes on the profile async-executor.  The executor is looked up with the
+     * naming context of the caller.
+     *
+     * @param keyspaceName is one of the profile keyspaces, null means the profile keyspace.
+     * @return CassandraAsyncSession
+     */
+    public CassandraAsyncSession createAsyncSession(String keyspaceName) {
+        final Object asyncSession = keyspaceName != null ? getSession(keyspaceName) : session;
+        if (asyncSession == null) {
+            throw new IllegalStateException("Cassandra profile " + configurationBuilder.getDescription() + " doesn't specify a database (keyspace)");
+        }
+        final Executor executor;
+        try {
+            executor = (Executor) new InitialContext().lookup(configurationBuilder.getAsyncExecutor());
+        } catch (NamingException e) {
+            throw new IllegalStateException("could not lookup async-executor " + configurationBuilder.getAsyncExecutor() +
+                    " for Cassandra profile " + configurationBuilder.getDescription(), e);
+        }
+        return new CassandraAsyncSession(cassandraInteraction, asyncSession, executor);
+    }
+
+    /**
+     * @return JNDI name that the Session of an additional profile keyspace is bound to.
+     */
+    public static String keyspaceJNDIName(String jndiName, String keyspaceName) {
+        return jndiName + "/" + keyspaceName;
+    }
+
+    /**
+     * @return prepared statement registry of the profile, null if the profile doesn't specify a keyspace
+     */
+    public CassandraStatementRegistry getStatementRegistry() {
+        return statementRegistry;
+    }
+
+    /**
+     * @return batch writer of the profile, null if the profile doesn't specify a keyspace + batch-writer
+     */
+    public CassandraBatchWriter getBatchWriter() {
+        return batchWriter;
+    }
+
+    /**
+     * @return speculative executions of the profile, null if the profile doesn't define a speculative execution policy
+     */
+    public CassandraSpeculativeExecutions getSpeculativeExecutions() {
+        return speculativeExecutions;
+    }
+
     @Override
     public <T> T unwrap(Class<T> clazz) {
         if ( clusterClass.isAssignableFrom( clazz ) ) {
@@ -147,6 +331,9 @@ public class CassandraClientConnectionsService implements Service<CassandraClien
         if ( sessionClass.isAssignableFrom( clazz)) {
             return (T) session;
         }
+        if ( batchWriter != null && CassandraBatchWriter.class.isAssignableFrom( clazz)) {
+            return (T) batchWriter;
+        }
         throw ROOT_LOGGER.unassignable(clazz);
     }
 
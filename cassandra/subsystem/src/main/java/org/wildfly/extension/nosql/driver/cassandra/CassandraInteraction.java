@@ -20,6 +20,7 @@ import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodType;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import javax.resource.spi.security.PasswordCredential;
 import javax.security.auth.Subject;
@@ -36,6 +37,21 @@ import org.wildfly.nosql.common.NoSQLConstants;
  */
 public class CassandraInteraction {
 
+    private static final String POOLINGOPTIONSCLASS = "com.datastax.driver.core.PoolingOptions";
+    private static final String SOCKETOPTIONSCLASS = "com.datastax.driver.core.SocketOptions";
+    private static final String HOSTDISTANCECLASS = "com.datastax.driver.core.HostDistance";
+    private static final String LOADBALANCINGPOLICYCLASS = "com.datastax.driver.core.policies.LoadBalancingPolicy";
+    private static final String DCAWAREROUNDROBINPOLICYCLASS = "com.datastax.driver.core.policies.DCAwareRoundRobinPolicy";
+    private static final String DCAWAREROUNDROBINPOLICYBUILDERCLASS = "com.datastax.driver.core.policies.DCAwareRoundRobinPolicy$Builder";
+    private static final String TOKENAWAREPOLICYCLASS = "com.datastax.driver.core.policies.TokenAwarePolicy";
+    private static final String LATENCYAWAREPOLICYCLASS = "com.datastax.driver.core.policies.LatencyAwarePolicy";
+    private static final String LATENCYAWAREPOLICYBUILDERCLASS = "com.datastax.driver.core.policies.LatencyAwarePolicy$Builder";
+    private static final String SPECULATIVEEXECUTIONPOLICYCLASS = "com.datastax.driver.core.policies.SpeculativeExecutionPolicy";
+    private static final String COMPRESSIONCLASS = "com.datastax.driver.core.ProtocolOptions$Compression";
+    private static final String PROTOCOLVERSIONCLASS = "com.datastax.driver.core.ProtocolVersion";
+    private static final String STATEMENTCLASS = "com.datastax.driver.core.Statement";
+    private static final String RESULTSETFUTURECLASS = "com.datastax.driver.core.ResultSetFuture";
+
     private final Class clusterClass;
     private final Class sessionClass;
 
@@ -50,7 +66,37 @@ public class CassandraInteraction {
     private final MethodHandle builderAddContactPointMethod;
     private final MethodHandle builderwithSSLMethod;
     private final MethodHandle sessionCloseMethod;
+    private final MethodHandle sessionExecuteAsyncCqlMethod;
+    private final MethodHandle sessionExecuteAsyncStatementMethod;
+    private final MethodHandle futureAddListenerMethod;
+    private final MethodHandle builderWithPoolingOptionsMethod;
+    private final MethodHandle builderWithSocketOptionsMethod;
+    private final MethodHandle poolingOptionsCtor;
+    private final MethodHandle poolingSetConnectionsPerHostMethod;
+    private final MethodHandle poolingSetMaxRequestsPerConnectionMethod;
+    private final MethodHandle poolingSetHeartbeatIntervalSecondsMethod;
+    private final MethodHandle poolingSetPoolTimeoutMillisMethod;
+    private final MethodHandle socketOptionsCtor;
+    private final MethodHandle socketSetConnectTimeoutMillisMethod;
+    private final MethodHandle socketSetReadTimeoutMillisMethod;
+    private final MethodHandle builderWithLoadBalancingPolicyMethod;
+    private final MethodHandle builderWithSpeculativeExecutionPolicyMethod;
+    private final MethodHandle builderWithCompressionMethod;
+    private final MethodHandle builderWithProtocolVersionMethod;
+    private final MethodHandle compressionValueOfMethod;
+    private final MethodHandle protocolVersionFromIntMethod;
+    private final MethodHandle dcAwareBuilderMethod;
+    private final MethodHandle dcAwareWithLocalDcMethod;
+    private final MethodHandle dcAwareWithUsedHostsPerRemoteDcMethod;
+    private final MethodHandle dcAwareAllowRemoteDCsForLocalConsistencyLevelMethod;
+    private final MethodHandle dcAwareBuildMethod;
+    private final MethodHandle tokenAwareCtor;
+    private final MethodHandle latencyAwareBuilderMethod;
+    private final MethodHandle latencyAwareBuildMethod;
+    private final Object[] hostDistances;  // HostDistance.LOCAL + HostDistance.REMOTE
     private Object clusterBuilder;
+    private Object poolingOptions;
+    private Object socketOptions;
     private volatile SubjectFactory subjectFactory;
     private final String securityDomain;
 
@@ -65,12 +111,69 @@ public class CassandraInteraction {
         builderAddContactPointMethod = methodHandleBuilder.method("addContactPoint", String.class);
         builderwithSSLMethod = methodHandleBuilder.method("withSSL");
 
+        Class hostDistanceClass = methodHandleBuilder.className(HOSTDISTANCECLASS).getTargetClass();
+        try {
+            hostDistances = new Object[] {
+                    methodHandleBuilder.staticField("LOCAL").invoke(),
+                    methodHandleBuilder.staticField("REMOTE").invoke()
+            };
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not get " + HOSTDISTANCECLASS + " values", throwable);
+        }
+
+        Class poolingOptionsClass = methodHandleBuilder.className(POOLINGOPTIONSCLASS).getTargetClass();
+        poolingOptionsCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        poolingSetConnectionsPerHostMethod = methodHandleBuilder.method("setConnectionsPerHost", hostDistanceClass, int.class, int.class);
+        poolingSetMaxRequestsPerConnectionMethod = methodHandleBuilder.method("setMaxRequestsPerConnection", hostDistanceClass, int.class);
+        poolingSetHeartbeatIntervalSecondsMethod = methodHandleBuilder.method("setHeartbeatIntervalSeconds", int.class);
+        poolingSetPoolTimeoutMillisMethod = methodHandleBuilder.method("setPoolTimeoutMillis", int.class);
+
+        Class socketOptionsClass = methodHandleBuilder.className(SOCKETOPTIONSCLASS).getTargetClass();
+        socketOptionsCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        socketSetConnectTimeoutMillisMethod = methodHandleBuilder.method("setConnectTimeoutMillis", int.class);
+        socketSetReadTimeoutMillisMethod = methodHandleBuilder.method("setReadTimeoutMillis", int.class);
+
+        Class loadBalancingPolicyClass = methodHandleBuilder.className(LOADBALANCINGPOLICYCLASS).getTargetClass();
+        Class dcAwareBuilderClass = methodHandleBuilder.className(DCAWAREROUNDROBINPOLICYBUILDERCLASS).getTargetClass();
+        dcAwareWithLocalDcMethod = methodHandleBuilder.method("withLocalDc", String.class);
+        dcAwareWithUsedHostsPerRemoteDcMethod = methodHandleBuilder.method("withUsedHostsPerRemoteDc", int.class);
+        dcAwareAllowRemoteDCsForLocalConsistencyLevelMethod = methodHandleBuilder.method("allowRemoteDCsForLocalConsistencyLevel");
+        dcAwareBuildMethod = methodHandleBuilder.method("build");
+        methodHandleBuilder.className(DCAWAREROUNDROBINPOLICYCLASS);
+        dcAwareBuilderMethod = methodHandleBuilder.staticMethod("builder", MethodType.methodType(dcAwareBuilderClass));
+        methodHandleBuilder.className(TOKENAWAREPOLICYCLASS);
+        tokenAwareCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class, loadBalancingPolicyClass));
+        Class latencyAwareBuilderClass = methodHandleBuilder.className(LATENCYAWAREPOLICYBUILDERCLASS).getTargetClass();
+        latencyAwareBuildMethod = methodHandleBuilder.method("build");
+        methodHandleBuilder.className(LATENCYAWAREPOLICYCLASS);
+        latencyAwareBuilderMethod = methodHandleBuilder.staticMethod("builder", MethodType.methodType(latencyAwareBuilderClass, loadBalancingPolicyClass));
+
+        Class speculativeExecutionPolicyClass = methodHandleBuilder.className(SPECULATIVEEXECUTIONPOLICYCLASS).getTargetClass();
+
+        Class compressionClass = methodHandleBuilder.className(COMPRESSIONCLASS).getTargetClass();
+        compressionValueOfMethod = methodHandleBuilder.staticMethod("valueOf", MethodType.methodType(compressionClass, String.class));
+        Class protocolVersionClass = methodHandleBuilder.className(PROTOCOLVERSIONCLASS).getTargetClass();
+        protocolVersionFromIntMethod = methodHandleBuilder.staticMethod("fromInt", MethodType.methodType(protocolVersionClass, int.class));
+
+        methodHandleBuilder.className(NoSQLConstants.CASSANDRACLUSTERBUILDERCLASS);
+        builderWithLoadBalancingPolicyMethod = methodHandleBuilder.method("withLoadBalancingPolicy", loadBalancingPolicyClass);
+        builderWithSpeculativeExecutionPolicyMethod = methodHandleBuilder.method("withSpeculativeExecutionPolicy", speculativeExecutionPolicyClass);
+        builderWithCompressionMethod = methodHandleBuilder.method("withCompression", compressionClass);
+        builderWithProtocolVersionMethod = methodHandleBuilder.method("withProtocolVersion", protocolVersionClass);
+        builderWithPoolingOptionsMethod = methodHandleBuilder.method("withPoolingOptions", poolingOptionsClass);
+        builderWithSocketOptionsMethod = methodHandleBuilder.method("withSocketOptions", socketOptionsClass);
+
         clusterClass = methodHandleBuilder.className(NoSQLConstants.CASSANDRACLUSTERCLASS).getTargetClass();
         clusterConnectMethod = methodHandleBuilder.method("connect", String.class);
         clusterCloseMethod = methodHandleBuilder.method("close");
         clusterBuilderMethod = methodHandleBuilder.staticMethod("builder", MethodType.methodType(clusterBuilderClass));
+        Class statementClass = methodHandleBuilder.className(STATEMENTCLASS).getTargetClass();
+        methodHandleBuilder.className(RESULTSETFUTURECLASS);
+        futureAddListenerMethod = methodHandleBuilder.method("addListener", Runnable.class, Executor.class);
         sessionClass = methodHandleBuilder.className(NoSQLConstants.CASSANDRASESSIONCLASS).getTargetClass();
         sessionCloseMethod = methodHandleBuilder.method("close");
+        sessionExecuteAsyncCqlMethod = methodHandleBuilder.method("executeAsync", String.class, Object[].class);
+        sessionExecuteAsyncStatementMethod = methodHandleBuilder.method("executeAsync", statementClass);
         securityDomain = configurationBuilder.getSecurityDomain();
     }
 
@@ -101,6 +204,98 @@ public class CassandraInteraction {
         builderwithSSLMethod.invoke(getBuilder());
     }
 
+    /**
+     * Connections per host apply to both local and remote hosts, the driver requires core &lt;= max.
+     */
+    protected void withConnectionsPerHost(int core, int max) throws Throwable {
+        for (Object hostDistance : hostDistances) {
+            poolingSetConnectionsPerHostMethod.invoke(getPoolingOptions(), hostDistance, core, max);
+        }
+    }
+
+    protected void withMaxRequestsPerConnection(int maxRequests) throws Throwable {
+        for (Object hostDistance : hostDistances) {
+            poolingSetMaxRequestsPerConnectionMethod.invoke(getPoolingOptions(), hostDistance, maxRequests);
+        }
+    }
+
+    protected void withHeartbeatInterval(int seconds) throws Throwable {
+        poolingSetHeartbeatIntervalSecondsMethod.invoke(getPoolingOptions(), seconds);
+    }
+
+    protected void withPoolTimeout(int millis) throws Throwable {
+        poolingSetPoolTimeoutMillisMethod.invoke(getPoolingOptions(), millis);
+    }
+
+    protected void withConnectTimeout(int millis) throws Throwable {
+        socketSetConnectTimeoutMillisMethod.invoke(getSocketOptions(), millis);
+    }
+
+    protected void withReadTimeout(int millis) throws Throwable {
+        socketSetReadTimeoutMillisMethod.invoke(getSocketOptions(), millis);
+    }
+
+    /**
+     * Use a DCAwareRoundRobinPolicy, that is wrapped by a LatencyAwarePolicy and then a TokenAwarePolicy, so that the
+     * replicas of the statement routing key are tried first and slow replicas last.
+     *
+     * @param localDc is the local data center, null means the data center of the contact points.
+     */
+    protected void withLoadBalancingPolicy(String localDc, int usedHostsPerRemoteDc, boolean allowRemoteDcsForLocalConsistency,
+                                           boolean tokenAware, boolean latencyAware) throws Throwable {
+        Object dcAwareBuilder = dcAwareBuilderMethod.invoke(); // DCAwareRoundRobinPolicy.builder()
+        if (localDc != null) {
+            dcAwareWithLocalDcMethod.invoke(dcAwareBuilder, localDc);
+        }
+        if (usedHostsPerRemoteDc > 0) {
+            dcAwareWithUsedHostsPerRemoteDcMethod.invoke(dcAwareBuilder, usedHostsPerRemoteDc);
+        }
+        if (allowRemoteDcsForLocalConsistency) {
+            dcAwareAllowRemoteDCsForLocalConsistencyLevelMethod.invoke(dcAwareBuilder);
+        }
+        Object policy = dcAwareBuildMethod.invoke(dcAwareBuilder);
+        if (latencyAware) {
+            policy = latencyAwareBuildMethod.invoke(latencyAwareBuilderMethod.invoke(policy));
+        }
+        if (tokenAware) {
+            policy = tokenAwareCtor.invoke(policy);
+        }
+        builderWithLoadBalancingPolicyMethod.invoke(getBuilder(), policy);
+    }
+
+    protected void withSpeculativeExecutionPolicy(Object /* SpeculativeExecutionPolicy */ policy) throws Throwable {
+        builderWithSpeculativeExecutionPolicyMethod.invoke(getBuilder(), policy);
+    }
+
+    protected void withCompression(CompressionType compression) throws Throwable {
+        builderWithCompressionMethod.invoke(getBuilder(), compressionValueOfMethod.invoke(compression.name()));
+    }
+
+    /**
+     * Pinning the native protocol version skips the version negotiation with the contact points.
+     *
+     * @param protocolVersion is the native protocol version number (e.g. 4 for ProtocolVersion.V4).
+     */
+    protected void withProtocolVersion(int protocolVersion) throws Throwable {
+        builderWithProtocolVersionMethod.invoke(getBuilder(), protocolVersionFromIntMethod.invoke(protocolVersion));
+    }
+
+    private Object /* PoolingOptions */ getPoolingOptions() throws Throwable {
+        if (poolingOptions == null) {
+            poolingOptions = poolingOptionsCtor.invoke(); // new PoolingOptions();
+            builderWithPoolingOptionsMethod.invoke(getBuilder(), poolingOptions);
+        }
+        return poolingOptions;
+    }
+
+    private Object /* SocketOptions */ getSocketOptions() throws Throwable {
+        if (socketOptions == null) {
+            socketOptions = socketOptionsCtor.invoke(); // new SocketOptions();
+            builderWithSocketOptionsMethod.invoke(getBuilder(), socketOptions);
+        }
+        return socketOptions;
+    }
+
     protected void setCredential(String securityDomain) throws Throwable {
         if (securityDomain != null && subjectFactory != null) {
             try {
@@ -135,6 +330,21 @@ public class CassandraInteraction {
         sessionCloseMethod.invoke(session);
     }
 
+    protected Object /* ResultSetFuture */ executeAsync(Object session, String cql, Object[] values) throws Throwable {
+        return sessionExecuteAsyncCqlMethod.invoke(session, cql, values);
+    }
+
+    protected Object /* ResultSetFuture */ executeAsync(Object session, Object /* Statement */ statement) throws Throwable {
+        return sessionExecuteAsyncStatementMethod.invoke(session, statement);
+    }
+
+    /**
+     * ListenableFuture.addListener, the listener is run by the executor when the future completes.
+     */
+    protected void addListener(Object /* ResultSetFuture */ future, Runnable listener, Executor executor) throws Throwable {
+        futureAddListenerMethod.invoke(future, listener, executor);
+    }
+
     public Class getClusterClass() {
         return clusterClass;
     }
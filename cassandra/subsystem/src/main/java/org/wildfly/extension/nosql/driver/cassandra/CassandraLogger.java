@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.cassandra;
+
+import static org.jboss.logging.Logger.Level.WARN;
+
+import org.jboss.logging.BasicLogger;
+import org.jboss.logging.Logger;
+import org.jboss.logging.annotations.Cause;
+import org.jboss.logging.annotations.LogMessage;
+import org.jboss.logging.annotations.Message;
+import org.jboss.logging.annotations.MessageLogger;
+
+/**
+ * CassandraLogger holds the messages of the Cassandra subsystem, message ids 200-299.
+ */
+@MessageLogger(projectCode = "WFLYNOSQL", length = 4)
+public interface CassandraLogger extends BasicLogger {
+    /**
+     * Default root level logger with the package name for the category.
+     */
+    CassandraLogger ROOT_LOGGER = Logger.getMessageLogger(CassandraLogger.class, "org.wildfly.nosql");
+
+    /**
+     * Logs a warning message indicating that a periodic write batch flush failed.
+     *
+     * @param description the batch writer description.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 200, value = "Write batch flush of %s failed")
+    void batchFlushFailed(String description, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that the JTA transaction batch is likely too large for Cassandra.
+     *
+     * @param profile the profile name.
+     * @param sizeKB the estimated batch size in KB.
+     * @param statements the number of statements in the batch.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 201, value = "The JTA transaction batch of Cassandra profile %s is about %d KB (%d statements), Cassandra rejects " +
+            "batches larger than batch_size_fail_threshold_in_kb (50 KB by default) when the transaction commits")
+    void transactionBatchTooLarge(String profile, long sizeKB, int statements);
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extension.nosql.driver.cassandra;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * CassandraSpeculativeExecutions builds the speculative execution policy of a Cassandra profile, either a
+ * ConstantSpeculativeExecutionPolicy or a PercentileSpeculativeExecutionPolicy backed by a PerHostPercentileTracker.
+ *
+ * The number of speculative executions started is read from the driver metrics.
+ *
+ * Speculative executions are only started for statements that are marked idempotent (Statement.setIdempotent(true)).
+ */
+public class CassandraSpeculativeExecutions {
+
+    private static final String CONSTANTSPECULATIVEEXECUTIONPOLICYCLASS = "com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy";
+    private static final String PERCENTILESPECULATIVEEXECUTIONPOLICYCLASS = "com.datastax.driver.core.policies.PercentileSpeculativeExecutionPolicy";
+    private static final String PERHOSTPERCENTILETRACKERCLASS = "com.datastax.driver.core.PerHostPercentileTracker";
+    private static final String LATENCYTRACKERCLASS = "com.datastax.driver.core.LatencyTracker";
+
+    private final MethodHandle registerLatencyTrackerMethod;
+    private final MethodHandle unregisterLatencyTrackerMethod;
+    private final MethodHandle getMetricsMethod;
+    private final MethodHandle launchedCountMethod;  // metrics.getErrorMetrics().getSpeculativeExecutions().getCount()
+    private final Object /* SpeculativeExecutionPolicy */ policy;
+    private final Object /* PerHostPercentileTracker */ percentileTracker;  // only set for the percentile policy
+    private volatile Object /* Cluster */ cluster;
+
+    /**
+     * @param delay constant delay in milliseconds before a speculative execution is started, ignored if percentile is not null
+     * @param percentile latency percentile of the queried host after which a speculative execution is started
+     * @param highestTrackableLatency highest latency in milliseconds recorded by the percentile tracker
+     * @param maxExecutions maximum number of speculative executions per request
+     */
+    CassandraSpeculativeExecutions(ClassLoader classLoader, Class clusterClass, long delay, Double percentile,
+                                   long highestTrackableLatency, int maxExecutions) throws Throwable {
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final Class latencyTrackerClass = classLoader.loadClass(LATENCYTRACKERCLASS);
+        registerLatencyTrackerMethod = lookup.unreflect(clusterClass.getMethod("register", latencyTrackerClass));
+        unregisterLatencyTrackerMethod = lookup.unreflect(clusterClass.getMethod("unregister", latencyTrackerClass));
+        getMetricsMethod = lookup.unreflect(clusterClass.getMethod("getMetrics"));
+        final MethodHandle getErrorMetricsMethod = lookup.unreflect(getMetricsMethod.type().returnType().getMethod("getErrorMetrics"));
+        final MethodHandle getSpeculativeExecutionsMethod = lookup.unreflect(getErrorMetricsMethod.type().returnType().getMethod("getSpeculativeExecutions"));
+        final MethodHandle getCountMethod = lookup.unreflect(getSpeculativeExecutionsMethod.type().returnType().getMethod("getCount"));
+        launchedCountMethod = MethodHandles.filterReturnValue(
+                MethodHandles.filterReturnValue(getErrorMetricsMethod, getSpeculativeExecutionsMethod), getCountMethod);
+
+        if (percentile != null) {
+            final Class trackerClass = classLoader.loadClass(PERHOSTPERCENTILETRACKERCLASS);
+            final Method builderMethod = trackerClass.getMethod("builderWithHighestTrackableLatencyMillis", long.class);
+            final Object trackerBuilder = lookup.unreflect(builderMethod).invoke(highestTrackableLatency);
+            percentileTracker = lookup.unreflect(builderMethod.getReturnType().getMethod("build")).invoke(trackerBuilder);
+            final Class percentilePolicyClass = classLoader.loadClass(PERCENTILESPECULATIVEEXECUTIONPOLICYCLASS);
+            policy = lookup.findConstructor(percentilePolicyClass, MethodType.methodType(void.class, trackerClass, double.class, int.class))
+                    .invoke(percentileTracker, percentile.doubleValue(), maxExecutions);
+        } else {
+            percentileTracker = null;
+            final Class constantPolicyClass = classLoader.loadClass(CONSTANTSPECULATIVEEXECUTIONPOLICYCLASS);
+            policy = lookup.findConstructor(constantPolicyClass, MethodType.methodType(void.class, long.class, int.class))
+                    .invoke(delay, maxExecutions);
+        }
+    }
+
+    /**
+     * @return SpeculativeExecutionPolicy to pass to Cluster.Builder.withSpeculativeExecutionPolicy
+     */
+    Object policy() {
+        return policy;
+    }
+
+    /**
+     * Register the percentile tracker with the built cluster.
+     */
+    void register(Object cluster) throws Throwable {
+        this.cluster = cluster;
+        if (percentileTracker != null) {
+            registerLatencyTrackerMethod.invoke(cluster, percentileTracker);
+        }
+    }
+
+    void unregister() throws Throwable {
+        final Object cluster = this.cluster;
+        this.cluster = null;
+        if (cluster != null && percentileTracker != null) {
+            unregisterLatencyTrackerMethod.invoke(cluster, percentileTracker);
+        }
+    }
+
+    /**
+     * @return number of speculative executions started, zero if the driver metrics are disabled
+     */
+    public long getLaunchedCount() {
+        final Object cluster = this.cluster;
+        if (cluster == null) {
+            return 0;
+        }
+        try {
+            final Object metrics = getMetricsMethod.invoke(cluster);
+            return metrics != null ? (long) launchedCountMethod.invoke(metrics) : 0;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not read the speculative executions count", throwable);
+        }
+    }
+}
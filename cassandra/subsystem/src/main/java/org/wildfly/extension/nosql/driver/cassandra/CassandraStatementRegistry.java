@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extension.nosql.driver.cassandra;
+
+import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+/**
+ * CassandraStatementRegistry is the bounded, least recently used registry of the <code>PreparedStatement</code>
+ * instances of a Cassandra profile, keyed by CQL text, so that each statement is prepared once instead of being parsed
+ * by Cassandra for every request.  Concurrent requests for the same CQL wait for a single prepare.
+ *
+ * A SchemaChangeListener evicts the statements that reference a table that was changed or removed, so that the next
+ * request prepares the statement again with the current result set metadata (e.g. for <code>SELECT *</code> after a
+ * column is added).  Statements are only prepared again when they are requested from the registry, so statements that are
+ * held by the application (e.g. injected into an application scoped bean) keep the previous metadata.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyCassandra") @Cql("SELECT * FROM accounts WHERE name = ?") PreparedStatement selectAccount;</code>
+ */
+public class CassandraStatementRegistry {
+
+    private static final String SCHEMACHANGELISTENERCLASS = "com.datastax.driver.core.SchemaChangeListener";
+
+    private final String profile;
+    private final Object /* Session */ session;
+    private final Class preparedStatementClass;
+    private final MethodHandle prepareMethod;
+    private final MethodHandle registerListenerMethod;
+    private final MethodHandle unregisterListenerMethod;
+    private final Object /* SchemaChangeListener */ schemaChangeListener;
+    private final Map<String, FutureTask<Object>> statements;
+    private volatile Object /* Cluster */ cluster;
+
+    CassandraStatementRegistry(String profile, Class clusterClass, Object session, final int maxSize) throws Throwable {
+        this.profile = profile;
+        this.session = session;
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final ClassLoader classLoader = clusterClass.getClassLoader();
+        final Class sessionClass = clusterClass.getMethod("connect").getReturnType();
+        final Method prepare = sessionClass.getMethod("prepare", String.class);
+        preparedStatementClass = prepare.getReturnType();
+        prepareMethod = lookup.unreflect(prepare);
+        final Class listenerClass = classLoader.loadClass(SCHEMACHANGELISTENERCLASS);
+        registerListenerMethod = lookup.unreflect(clusterClass.getMethod("register", listenerClass));
+        unregisterListenerMethod = lookup.unreflect(clusterClass.getMethod("unregister", listenerClass));
+        schemaChangeListener = Proxy.newProxyInstance(classLoader, new Class[]{listenerClass}, new SchemaChangeHandler());
+        statements = new LinkedHashMap<String, FutureTask<Object>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FutureTask<Object>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    void register(Object cluster) throws Throwable {
+        this.cluster = cluster;
+        registerListenerMethod.invoke(cluster, schemaChangeListener);
+    }
+
+    void unregister() throws Throwable {
+        final Object cluster = this.cluster;
+        this.cluster = null;
+        if (cluster != null) {
+            unregisterListenerMethod.invoke(cluster, schemaChangeListener);
+        }
+        invalidateAll();
+    }
+
+    public Class getPreparedStatementClass() {
+        return preparedStatementClass;
+    }
+
+    /**
+     * @param cql is the CQL text of the statement
+     * @return <code>PreparedStatement</code> for the CQL text, prepared by the first caller
+     */
+    public Object /* PreparedStatement */ prepare(final String cql) {
+        FutureTask<Object> statement;
+        boolean prepare = false;
+        synchronized (statements) {
+            statement = statements.get(cql);
+            if (statement == null) {
+                statement = new FutureTask<>(() -> {
+                    try {
+                        return prepareMethod.invoke(session, cql);
+                    } catch (Exception e) {
+                        throw e;
+                    } catch (Throwable throwable) {
+                        throw new ExecutionException(throwable);
+                    }
+                });
+                statements.put(cql, statement);
+                prepare = true;
+            }
+        }
+        if (prepare) {
+            statement.run();
+        }
+        try {
+            return statement.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while preparing statement '" + cql + "' for profile " + profile, e);
+        } catch (ExecutionException e) {
+            // don't keep the failure, so that the statement is prepared again by the next request
+            synchronized (statements) {
+                if (statements.get(cql) == statement) {
+                    statements.remove(cql);
+                }
+            }
+            Throwable cause = e.getCause() instanceof ExecutionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("could not prepare statement '" + cql + "' for profile " + profile, cause);
+        }
+    }
+
+    public int size() {
+        synchronized (statements) {
+            return statements.size();
+        }
+    }
+
+    /**
+     * Evict the statements that reference the table (or materialized view) name.
+     */
+    void invalidate(String table) {
+        final Pattern reference = Pattern.compile("\\b" + Pattern.quote(table.toLowerCase(Locale.ROOT)) + "\\b");
+        synchronized (statements) {
+            for (Iterator<String> cql = statements.keySet().iterator(); cql.hasNext(); ) {
+                if (reference.matcher(cql.next().toLowerCase(Locale.ROOT)).find()) {
+                    cql.remove();
+                }
+            }
+        }
+    }
+
+    void invalidateAll() {
+        synchronized (statements) {
+            statements.clear();
+        }
+    }
+
+    private class SchemaChangeHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return CassandraStatementRegistry.class.getSimpleName() + " " + profile;
+            }
+            if ((name.startsWith("onTable") || name.startsWith("onMaterializedView")) && !name.endsWith("Added")) {
+                // onTableChanged(TableMetadata current, TableMetadata previous), onTableRemoved(TableMetadata table)
+                final Object table = args[args.length - 1];
+                final String tableName = (String) table.getClass().getMethod("getName").invoke(table);
+                ROOT_LOGGER.tracef("table %s changed, evicting its prepared statements from profile %s", tableName, profile);
+                invalidate(tableName);
+            } else if (name.equals("onKeyspaceRemoved") || name.equals("onUserTypeChanged") || name.equals("onUserTypeRemoved")) {
+                invalidateAll();
+            }
+            return null;
+        }
+    }
+}
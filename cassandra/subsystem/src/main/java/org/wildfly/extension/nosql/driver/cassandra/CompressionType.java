@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.cassandra;
+
+/**
+ * CompressionType is the native protocol compression of a Cassandra profile, SNAPPY + LZ4 require the matching
+ * compression library to be visible to the Cassandra driver module.
+ */
+public enum CompressionType {
+    NONE,       // no compression (driver default)
+    SNAPPY,     // org.xerial.snappy:snappy-java
+    LZ4         // net.jpountz.lz4:lz4, faster than SNAPPY for a similar ratio
+}
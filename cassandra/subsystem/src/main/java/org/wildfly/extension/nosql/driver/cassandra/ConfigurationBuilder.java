@@ -16,6 +16,11 @@
 
 package org.wildfly.extension.nosql.driver.cassandra;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.wildfly.extension.nosql.driver.cassandra.transaction.TransactionEnlistmentType;
+
 /**
  * ConfigurationBuilder
  *
@@ -25,8 +30,41 @@ public class ConfigurationBuilder {
     private String description; //
     private String JNDIName;    // required global jndi name
     private String keyspace;    // optional Cassandra keyspace
+    private final List<String> keyspaces = new ArrayList<>();  // additional keyspaces, each with a long-lived Session
     private String securityDomain;
     private boolean withSSL;
+    private int preparedStatementCacheSize = 1000;
+    private CompressionType compression;    // null means the driver default (NONE)
+    private Integer protocolVersion;        // null means negotiate with the contact points
+    private String asyncExecutor = "java:jboss/ee/concurrency/executor/default";  // JNDI name of the CassandraAsyncSession executor
+    private TransactionEnlistmentType transactionEnlistment;  // null means the Sessions are not enlisted
+    // pooling + socket options, null means the driver default
+    private Integer coreConnectionsPerHost;
+    private Integer maxConnectionsPerHost;
+    private Integer maxRequestsPerConnection;
+    private Integer heartbeatInterval;  // seconds
+    private Integer poolTimeout;        // milliseconds
+    private Integer connectTimeout;     // milliseconds
+    private Integer readTimeout;        // milliseconds
+    // load balancing policy, the driver default policy is used if loadBalancing is false
+    private boolean loadBalancing;
+    private String localDc;             // null means the data center of the contact points
+    private int usedHostsPerRemoteDc;
+    private boolean allowRemoteDcsForLocalConsistency;
+    private boolean tokenAware = true;
+    private boolean latencyAware;
+    // speculative execution policy, disabled if neither the delay or the percentile is set
+    private Long speculativeDelay;           // milliseconds
+    private Double speculativePercentile;
+    private int speculativeMaxExecutions = 1;
+    private long speculativeHighestTrackableLatency = 15000;  // milliseconds
+
+    // partition aware batch writer, disabled if batchWriter is false
+    private boolean batchWriter;
+    private int batchSize = 50;
+    private long batchLinger = 10;           // milliseconds
+    private int batchMaxInFlight = 16;
+    private int batchMaxQueued = 10000;
 
     private static final String defaultModuleName = "com.datastax.cassandra.driver-core";
     private String moduleName = // name of Cassandra static module
@@ -60,6 +98,15 @@ public class ConfigurationBuilder {
         return keyspace;
     }
 
+    public List<String> getKeyspaces() {
+        return keyspaces;
+    }
+
+    public ConfigurationBuilder addKeyspace(String keyspace) {
+        this.keyspaces.add(keyspace);
+        return this;
+    }
+
     public void setModuleName(String moduleName) {
         this.moduleName = moduleName;
     }
@@ -80,4 +127,224 @@ public class ConfigurationBuilder {
         this.withSSL = withSSL;
     }
 
+    public CompressionType getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionType compression) {
+        this.compression = compression;
+    }
+
+    public Integer getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    public void setProtocolVersion(Integer protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+
+    public String getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public void setAsyncExecutor(String asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    public TransactionEnlistmentType getTransactionEnlistment() {
+        return transactionEnlistment;
+    }
+
+    public void setTransactionEnlistment(TransactionEnlistmentType transactionEnlistment) {
+        this.transactionEnlistment = transactionEnlistment;
+    }
+
+    public boolean isBatchWriter() {
+        return batchWriter;
+    }
+
+    public void setBatchWriter(boolean batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getBatchLinger() {
+        return batchLinger;
+    }
+
+    public void setBatchLinger(long batchLinger) {
+        this.batchLinger = batchLinger;
+    }
+
+    public int getBatchMaxInFlight() {
+        return batchMaxInFlight;
+    }
+
+    public void setBatchMaxInFlight(int batchMaxInFlight) {
+        this.batchMaxInFlight = batchMaxInFlight;
+    }
+
+    public int getBatchMaxQueued() {
+        return batchMaxQueued;
+    }
+
+    public void setBatchMaxQueued(int batchMaxQueued) {
+        this.batchMaxQueued = batchMaxQueued;
+    }
+
+    public Integer getCoreConnectionsPerHost() {
+        return coreConnectionsPerHost;
+    }
+
+    public void setCoreConnectionsPerHost(Integer coreConnectionsPerHost) {
+        this.coreConnectionsPerHost = coreConnectionsPerHost;
+    }
+
+    public Integer getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(Integer maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public Integer getMaxRequestsPerConnection() {
+        return maxRequestsPerConnection;
+    }
+
+    public void setMaxRequestsPerConnection(Integer maxRequestsPerConnection) {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
+    public Integer getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Integer heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Integer getPoolTimeout() {
+        return poolTimeout;
+    }
+
+    public void setPoolTimeout(Integer poolTimeout) {
+        this.poolTimeout = poolTimeout;
+    }
+
+    public Integer getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Integer connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Integer getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Integer readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public boolean isLoadBalancing() {
+        return loadBalancing;
+    }
+
+    public void setLoadBalancing(boolean loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    public String getLocalDc() {
+        return localDc;
+    }
+
+    public void setLocalDc(String localDc) {
+        this.localDc = localDc;
+    }
+
+    public int getUsedHostsPerRemoteDc() {
+        return usedHostsPerRemoteDc;
+    }
+
+    public void setUsedHostsPerRemoteDc(int usedHostsPerRemoteDc) {
+        this.usedHostsPerRemoteDc = usedHostsPerRemoteDc;
+    }
+
+    public boolean isAllowRemoteDcsForLocalConsistency() {
+        return allowRemoteDcsForLocalConsistency;
+    }
+
+    public void setAllowRemoteDcsForLocalConsistency(boolean allowRemoteDcsForLocalConsistency) {
+        this.allowRemoteDcsForLocalConsistency = allowRemoteDcsForLocalConsistency;
+    }
+
+    public boolean isTokenAware() {
+        return tokenAware;
+    }
+
+    public void setTokenAware(boolean tokenAware) {
+        this.tokenAware = tokenAware;
+    }
+
+    public boolean isLatencyAware() {
+        return latencyAware;
+    }
+
+    public void setLatencyAware(boolean latencyAware) {
+        this.latencyAware = latencyAware;
+    }
+
+    public boolean isSpeculativeExecution() {
+        return speculativeDelay != null || speculativePercentile != null;
+    }
+
+    public Long getSpeculativeDelay() {
+        return speculativeDelay;
+    }
+
+    public void setSpeculativeDelay(Long speculativeDelay) {
+        this.speculativeDelay = speculativeDelay;
+    }
+
+    public Double getSpeculativePercentile() {
+        return speculativePercentile;
+    }
+
+    public void setSpeculativePercentile(Double speculativePercentile) {
+        this.speculativePercentile = speculativePercentile;
+    }
+
+    public int getSpeculativeMaxExecutions() {
+        return speculativeMaxExecutions;
+    }
+
+    public void setSpeculativeMaxExecutions(int speculativeMaxExecutions) {
+        this.speculativeMaxExecutions = speculativeMaxExecutions;
+    }
+
+    public long getSpeculativeHighestTrackableLatency() {
+        return speculativeHighestTrackableLatency;
+    }
+
+    public void setSpeculativeHighestTrackableLatency(long speculativeHighestTrackableLatency) {
+        this.speculativeHighestTrackableLatency = speculativeHighestTrackableLatency;
+    }
+
+    public int getPreparedStatementCacheSize() {
+        return preparedStatementCacheSize;
+    }
+
+    public void setPreparedStatementCacheSize(int preparedStatementCacheSize) {
+        this.preparedStatementCacheSize = preparedStatementCacheSize;
+    }
+
 }
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extension.nosql.driver.cassandra.transaction;
+
+import static org.wildfly.extension.nosql.driver.cassandra.CassandraLogger.ROOT_LOGGER;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * CassandraTransactionSupport implements the <code>transaction=batch-on-commit</code> profile mode.
+ *
+ * Write statements executed through an enlisted Session proxy while a JTA transaction is active, are buffered in
+ * the TransactionSynchronizationRegistry instead of being sent to Cassandra.  An interposed Synchronization sends the
+ * buffered statements as one LOGGED batch before the JTA transaction completes, if the batch fails, the JTA transaction
+ * is rolled back.  If the JTA transaction rolls back, the buffered statements are discarded without being sent.
+ *
+ * Only INSERT/UPDATE/DELETE statements are buffered, queries (SELECT) are executed immediately, so they don't see the
+ * writes buffered in the JTA transaction.  Statements whose outcome is only known when the batch is executed,
+ * conditional (IF) statements and counter mutations (which can't be part of a LOGGED batch) fail right away.
+ */
+public class CassandraTransactionSupport {
+
+    private static final String BATCH_RESOURCE = "_nosqlCASSANDRABATCH_";
+    private static final String STATEMENTCLASS = "com.datastax.driver.core.Statement";
+    private static final String SIMPLESTATEMENTCLASS = "com.datastax.driver.core.SimpleStatement";
+    private static final String BOUNDSTATEMENTCLASS = "com.datastax.driver.core.BoundStatement";
+    private static final String PREPAREDSTATEMENTCLASS = "com.datastax.driver.core.PreparedStatement";
+    private static final String BATCHSTATEMENTCLASS = "com.datastax.driver.core.BatchStatement";
+    private static final String BATCHTYPECLASS = "com.datastax.driver.core.BatchStatement$Type";
+    private static final String RESULTSETCLASS = "com.datastax.driver.core.ResultSet";
+    private static final String RESULTSETFUTURECLASS = "com.datastax.driver.core.ResultSetFuture";
+    private static final String CLUSTERCLASS = "com.datastax.driver.core.Cluster";
+    private static final String METADATACLASS = "com.datastax.driver.core.Metadata";
+    private static final String KEYSPACEMETADATACLASS = "com.datastax.driver.core.KeyspaceMetadata";
+    private static final String TABLEMETADATACLASS = "com.datastax.driver.core.AbstractTableMetadata";
+    private static final String COLUMNMETADATACLASS = "com.datastax.driver.core.ColumnMetadata";
+    private static final String COLUMNDEFINITIONSCLASS = "com.datastax.driver.core.ColumnDefinitions";
+    private static final String DATATYPECLASS = "com.datastax.driver.core.DataType";
+
+    private static final String[] WRITES = {"INSERT", "UPDATE", "DELETE", "BEGIN"};
+    // string literals are removed before looking for the IF keyword
+    private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern CONDITION = Pattern.compile("\\bIF\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MUTATED_TABLE = Pattern.compile("^(?:UPDATE\\s+(\\S+)|DELETE\\s.*?\\bFROM\\s+(\\S+))",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    // warn when the buffered batch gets near the default Cassandra batch_size_fail_threshold_in_kb (50 KB)
+    private static final long BATCH_SIZE_WARNING = 40 * 1024;
+
+    private final TransactionManager transactionManager;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    private final String profileName;
+    private final Class sessionClass;
+    private final Class boundStatementClass;
+    private final Class batchStatementClass;
+    private final Class simpleStatementClass;
+    private final Object /* BatchStatement.Type */ loggedBatchType;
+    private final MethodHandle simpleStatementCtor;
+    private final MethodHandle simpleStatementNamedValuesCtor;
+    private final MethodHandle batchStatementCtor;
+    private final MethodHandle batchAddMethod;
+    private final MethodHandle boundPreparedStatementMethod;
+    private final MethodHandle preparedGetQueryStringMethod;
+    private final MethodHandle sessionExecuteMethod;
+    private final MethodHandle batchGetStatementsMethod;
+    private final MethodHandle preparedGetVariablesMethod;
+    private final MethodHandle variablesSizeMethod;
+    private final MethodHandle boundGetBytesUnsafeMethod;
+    private final MethodHandle simpleUsesNamedValuesMethod;
+    private final MethodHandle simpleValuesCountMethod;
+    private final MethodHandle simpleGetObjectMethod;
+    private final MethodHandle sessionGetClusterMethod;
+    private final MethodHandle clusterGetMetadataMethod;
+    private final MethodHandle metadataGetKeyspaceMethod;
+    private final MethodHandle keyspaceGetTableMethod;
+    private final MethodHandle tableGetColumnsMethod;
+    private final MethodHandle columnGetTypeMethod;
+    private final MethodHandle dataTypeGetNameMethod;
+    // keyspace.table to true if the table has counter columns
+    private final ConcurrentMap<String, Boolean> counterTables = new ConcurrentHashMap<>();
+    // returned for buffered writes, as the statements are only executed when the JTA transaction commits
+    private final Object /* ResultSet */ bufferedResultSet;
+    private final Object /* ResultSetFuture */ bufferedResultSetFuture;
+
+    public CassandraTransactionSupport(Class sessionClass, TransactionManager transactionManager, TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+                                       String profileName) throws ReflectiveOperationException {
+        this.sessionClass = sessionClass;
+        this.transactionManager = transactionManager;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.profileName = profileName;
+        final ClassLoader classLoader = sessionClass.getClassLoader();
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final Class statementClass = classLoader.loadClass(STATEMENTCLASS);
+        simpleStatementClass = classLoader.loadClass(SIMPLESTATEMENTCLASS);
+        final Class preparedStatementClass = classLoader.loadClass(PREPAREDSTATEMENTCLASS);
+        final Class batchTypeClass = classLoader.loadClass(BATCHTYPECLASS);
+        final Class resultSetClass = classLoader.loadClass(RESULTSETCLASS);
+        final Class resultSetFutureClass = classLoader.loadClass(RESULTSETFUTURECLASS);
+        boundStatementClass = classLoader.loadClass(BOUNDSTATEMENTCLASS);
+        batchStatementClass = classLoader.loadClass(BATCHSTATEMENTCLASS);
+        loggedBatchType = Enum.valueOf(batchTypeClass, "LOGGED");
+        simpleStatementCtor = lookup.findConstructor(simpleStatementClass, MethodType.methodType(void.class, String.class, Object[].class));
+        simpleStatementNamedValuesCtor = lookup.findConstructor(simpleStatementClass, MethodType.methodType(void.class, String.class, Map.class));
+        batchStatementCtor = lookup.findConstructor(batchStatementClass, MethodType.methodType(void.class, batchTypeClass));
+        batchAddMethod = lookup.unreflect(batchStatementClass.getMethod("add", statementClass));
+        boundPreparedStatementMethod = lookup.unreflect(boundStatementClass.getMethod("preparedStatement"));
+        preparedGetQueryStringMethod = lookup.unreflect(preparedStatementClass.getMethod("getQueryString"));
+        sessionExecuteMethod = lookup.unreflect(sessionClass.getMethod("execute", statementClass));
+        batchGetStatementsMethod = lookup.unreflect(batchStatementClass.getMethod("getStatements"));
+        preparedGetVariablesMethod = lookup.unreflect(preparedStatementClass.getMethod("getVariables"));
+        variablesSizeMethod = lookup.unreflect(classLoader.loadClass(COLUMNDEFINITIONSCLASS).getMethod("size"));
+        boundGetBytesUnsafeMethod = lookup.unreflect(boundStatementClass.getMethod("getBytesUnsafe", int.class));
+        simpleUsesNamedValuesMethod = lookup.unreflect(simpleStatementClass.getMethod("usesNamedValues"));
+        simpleValuesCountMethod = lookup.unreflect(simpleStatementClass.getMethod("valuesCount"));
+        simpleGetObjectMethod = lookup.unreflect(simpleStatementClass.getMethod("getObject", int.class));
+        sessionGetClusterMethod = lookup.unreflect(sessionClass.getMethod("getCluster"));
+        clusterGetMetadataMethod = lookup.unreflect(classLoader.loadClass(CLUSTERCLASS).getMethod("getMetadata"));
+        metadataGetKeyspaceMethod = lookup.unreflect(classLoader.loadClass(METADATACLASS).getMethod("getKeyspace", String.class));
+        keyspaceGetTableMethod = lookup.unreflect(classLoader.loadClass(KEYSPACEMETADATACLASS).getMethod("getTable", String.class));
+        tableGetColumnsMethod = lookup.unreflect(classLoader.loadClass(TABLEMETADATACLASS).getMethod("getColumns"));
+        columnGetTypeMethod = lookup.unreflect(classLoader.loadClass(COLUMNMETADATACLASS).getMethod("getType"));
+        dataTypeGetNameMethod = lookup.unreflect(classLoader.loadClass(DATATYPECLASS).getMethod("getName"));
+
+        final BufferedResult bufferedResult = new BufferedResult();
+        bufferedResultSet = Proxy.newProxyInstance(classLoader, new Class[] {resultSetClass}, bufferedResult);
+        bufferedResultSetFuture = Proxy.newProxyInstance(classLoader, new Class[] {resultSetFutureClass}, bufferedResult);
+        bufferedResult.resultSet = bufferedResultSet;
+        bufferedResult.future = bufferedResultSetFuture;
+    }
+
+    /**
+     * @param keyspace of the session, identifies the statement buffer of the session within the JTA transaction
+     * @return Session proxy that buffers writes while a JTA transaction is active
+     */
+    public Object /* Session */ wrap(Object session, String keyspace) {
+        return Proxy.newProxyInstance(sessionClass.getClassLoader(), new Class[] {sessionClass}, new TransactionalSessionProxy(session, keyspace, this));
+    }
+
+    Object bufferedResultSet() {
+        return bufferedResultSet;
+    }
+
+    Object bufferedResultSetFuture() {
+        return bufferedResultSetFuture;
+    }
+
+    /**
+     * @return Statement for the parameters of a Session execute/executeAsync method
+     */
+    Object /* Statement */ statement(Object[] args) throws Throwable {
+        if (!(args[0] instanceof String)) {
+            return args[0];
+        }
+        if (args.length > 1 && args[1] instanceof Map) {
+            return simpleStatementNamedValuesCtor.invoke((String) args[0], (Map) args[1]);
+        }
+        return simpleStatementCtor.invoke((String) args[0], args.length > 1 ? (Object[]) args[1] : new Object[0]);
+    }
+
+    /**
+     * @return true if the statement is an INSERT/UPDATE/DELETE or batch, that is buffered. Queries and schema changes are
+     * executed immediately.
+     */
+    boolean isWrite(Object statement) throws Throwable {
+        if (batchStatementClass.isInstance(statement)) {
+            return true;
+        }
+        final String cql = cql(statement).trim();
+        for (String write : WRITES) {
+            if (cql.regionMatches(true, 0, write, 0, write.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isTransactionActive() throws SystemException {
+        final int txstatus = transactionManager.getStatus();
+        return txstatus == Status.STATUS_ACTIVE || txstatus == Status.STATUS_MARKED_ROLLBACK;
+    }
+
+    /**
+     * Add the write statement to the batch of the active JTA transaction, the batch is registered with the JTA
+     * transaction the first time.  All enlisted Sessions of the profile share one batch, so that the JTA transaction
+     * sends exactly one LOGGED batch.
+     *
+     * @throws IllegalStateException if the JTA transaction already wrote through the Session of another keyspace
+     * @throws UnsupportedOperationException for statements that can't be part of a LOGGED batch
+     */
+    void buffer(Object session, String keyspace, Object statement) throws Throwable {
+        final String key = BATCH_RESOURCE + profileName;
+        BatchOnCommit batch = (BatchOnCommit) transactionSynchronizationRegistry.getResource(key);
+        if (batch == null) {
+            batch = new BatchOnCommit(session, keyspace);
+            transactionSynchronizationRegistry.registerInterposedSynchronization(batch);
+            transactionSynchronizationRegistry.putResource(key, batch);
+        } else if (batch.session != session) {
+            // unqualified table names are resolved with the keyspace of the Session that executes the batch
+            throw new IllegalStateException("the JTA transaction already writes to keyspace " + batch.keyspace + " of Cassandra profile " + profileName +
+                    ", transaction=batch-on-commit only supports writes through the Session of one keyspace per JTA transaction");
+        }
+        checkBufferable(session, keyspace, statement);
+        batch.add(statement, estimateSize(statement));
+    }
+
+    private String cql(Object statement) throws Throwable {
+        return boundStatementClass.isInstance(statement) ?
+                (String) preparedGetQueryStringMethod.invoke(boundPreparedStatementMethod.invoke(statement)) :
+                statement.toString();  // RegularStatement.toString() returns the query string
+    }
+
+    private void checkBufferable(Object session, String keyspace, Object statement) throws Throwable {
+        if (batchStatementClass.isInstance(statement)) {
+            for (Object batched : (Collection) batchGetStatementsMethod.invoke(statement)) {
+                checkBufferable(session, keyspace, batched);
+            }
+            return;
+        }
+        final String cql = LITERAL.matcher(cql(statement)).replaceAll("''").trim();
+        if (cql.regionMatches(true, 0, "BEGIN", 0, "BEGIN".length())) {
+            throw new UnsupportedOperationException("CQL batches can't be executed in a transaction=batch-on-commit JTA transaction, execute the statements of the batch instead: " + cql);
+        }
+        if (CONDITION.matcher(cql).find()) {
+            // the result of a conditional statement is only known when the batch is executed at commit time
+            throw new UnsupportedOperationException("conditional (IF) statements can't be executed in a transaction=batch-on-commit JTA transaction: " + cql);
+        }
+        final Matcher mutation = MUTATED_TABLE.matcher(cql);
+        if (mutation.find() && isCounterTable(session, keyspace, mutation.group(1) != null ? mutation.group(1) : mutation.group(2))) {
+            throw new UnsupportedOperationException("counter mutations can't be part of a LOGGED batch, execute them outside of the transaction=batch-on-commit JTA transaction: " + cql);
+        }
+    }
+
+    private boolean isCounterTable(Object session, String keyspace, String name) throws Throwable {
+        final int dot = name.indexOf('.');
+        final String keyspaceName = dot > 0 ? name.substring(0, dot) : keyspace;
+        final String tableName = dot > 0 ? name.substring(dot + 1) : name;
+        final String key = keyspaceName + "." + tableName;
+        final Boolean cached = counterTables.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Object keyspaceMetadata = metadataGetKeyspaceMethod.invoke(clusterGetMetadataMethod.invoke(sessionGetClusterMethod.invoke(session)), keyspaceName);
+        final Object tableMetadata = keyspaceMetadata != null ? keyspaceGetTableMethod.invoke(keyspaceMetadata, tableName) : null;
+        if (tableMetadata == null) {
+            // unknown table, the batch will fail at commit time
+            return false;
+        }
+        boolean counter = false;
+        for (Object column : (List) tableGetColumnsMethod.invoke(tableMetadata)) {
+            counter |= ((Enum) dataTypeGetNameMethod.invoke(columnGetTypeMethod.invoke(column))).name().equals("COUNTER");
+        }
+        counterTables.put(key, counter);
+        return counter;
+    }
+
+    /**
+     * @return approximate size of the statement in bytes (CQL text + values)
+     */
+    private long estimateSize(Object statement) throws Throwable {
+        if (batchStatementClass.isInstance(statement)) {
+            long size = 0;
+            for (Object batched : (Collection) batchGetStatementsMethod.invoke(statement)) {
+                size += estimateSize(batched);
+            }
+            return size;
+        }
+        long size = cql(statement).length();
+        if (boundStatementClass.isInstance(statement)) {
+            final int count = (int) variablesSizeMethod.invoke(preparedGetVariablesMethod.invoke(boundPreparedStatementMethod.invoke(statement)));
+            for (int index = 0; index < count; index++) {
+                final ByteBuffer value = (ByteBuffer) boundGetBytesUnsafeMethod.invoke(statement, index);
+                size += value != null ? value.remaining() : 0;
+            }
+        } else if (simpleStatementClass.isInstance(statement) && !(boolean) simpleUsesNamedValuesMethod.invoke(statement)) {
+            final int count = (int) simpleValuesCountMethod.invoke(statement);
+            for (int index = 0; index < count; index++) {
+                final Object value = simpleGetObjectMethod.invoke(statement, index);
+                size += value instanceof ByteBuffer ? ((ByteBuffer) value).remaining() : String.valueOf(value).length();
+            }
+        }
+        return size;
+    }
+
+    private class BatchOnCommit implements Synchronization {
+        private final Object /* Session */ session;
+        private final String keyspace;
+        private final List<Object> statements = new ArrayList<>();
+        private long estimatedSize;
+        private boolean warned;
+
+        BatchOnCommit(Object session, String keyspace) {
+            this.session = session;
+            this.keyspace = keyspace;
+        }
+
+        void add(Object statement, long size) {
+            statements.add(statement);
+            estimatedSize += size;
+            if (!warned && estimatedSize >= BATCH_SIZE_WARNING) {
+                warned = true;
+                ROOT_LOGGER.transactionBatchTooLarge(profileName, estimatedSize / 1024, statements.size());
+            }
+        }
+
+        @Override
+        public void beforeCompletion() {
+            if (statements.isEmpty() || transactionSynchronizationRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+                return;
+            }
+            try {
+                final Object batch = batchStatementCtor.invoke(loggedBatchType);
+                for (Object statement : statements) {
+                    batchAddMethod.invoke(batch, statement);
+                }
+                sessionExecuteMethod.invoke(session, batch);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not execute the transaction batch for " + profileName, throwable);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            // the statements are discarded on rollback
+            statements.clear();
+        }
+    }
+
+    /**
+     * Completed ResultSet + ResultSetFuture that is returned for buffered writes.
+     */
+    private static class BufferedResult implements InvocationHandler {
+        private Object resultSet;
+        private Object future;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "statement buffered until the JTA transaction commits";
+                case "get":
+                case "getUninterruptibly":
+                    return resultSet;
+                case "fetchMoreResults":
+                    return future;
+                case "addListener":
+                    ((Executor) args[1]).execute((Runnable) args[0]);
+                    return null;
+                case "wasApplied":
+                case "isExhausted":
+                case "isFullyFetched":
+                case "isDone":
+                    return true;
+                case "isCancelled":
+                case "cancel":
+                    return false;
+                case "getAvailableWithoutFetching":
+                    return 0;
+                case "all":
+                case "getAllExecutionInfo":
+                    return Collections.emptyList();
+                case "iterator":
+                    return Collections.emptyIterator();
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wildfly.extension.nosql.driver.cassandra.transaction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * TransactionalSessionProxy proxies a Session, so that write statements executed while a JTA transaction is active,
+ * are added to the JTA transaction batch instead of being executed.
+ *
+ * Other Session operations (e.g. prepare), queries and schema changes are invoked as is.
+ */
+public class TransactionalSessionProxy implements InvocationHandler {
+
+    private final Object underlying;
+    private final String keyspace;
+    private final CassandraTransactionSupport transactionSupport;
+
+    TransactionalSessionProxy(Object underlying, String keyspace, CassandraTransactionSupport transactionSupport) {
+        this.underlying = underlying;
+        this.keyspace = keyspace;
+        this.transactionSupport = transactionSupport;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return method.invoke(underlying, args);
+        }
+        final boolean async = method.getName().equals("executeAsync");
+        if ((async || method.getName().equals("execute")) && transactionSupport.isTransactionActive()) {
+            final Object statement = transactionSupport.statement(args);
+            if (transactionSupport.isWrite(statement)) {
+                transactionSupport.buffer(underlying, keyspace, statement);
+                return async ? transactionSupport.bufferedResultSetFuture() : transactionSupport.bufferedResultSet();
+            }
+        }
+        try {
+            return method.invoke(underlying, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PersistentResourceDefinition;
+import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.operations.validation.LongRangeValidator;
+import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * BatchWriterDefinition represents the partition aware, unlogged batch writer of a Cassandra profile.
+ */
+public class BatchWriterDefinition extends PersistentResourceDefinition {
+
+    protected static final SimpleAttributeDefinition BATCH_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.BATCH_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(50))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition LINGER =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.LINGER, ModelType.LONG, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(1, Long.MAX_VALUE, true, true))
+                    .setDefaultValue(new ModelNode(10L))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition MAX_IN_FLIGHT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.MAX_IN_FLIGHT, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(16))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition MAX_QUEUED =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.MAX_QUEUED, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(10000))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
+            BATCH_SIZE,
+            LINGER,
+            MAX_IN_FLIGHT,
+            MAX_QUEUED);
+
+    static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
+
+    static {
+        for (SimpleAttributeDefinition attr : ATTRIBUTES) {
+            ATTRIBUTES_MAP.put(attr.getName(), attr);
+        }
+
+    }
+
+    static final BatchWriterDefinition INSTANCE = new BatchWriterDefinition();
+
+    @Override
+    public Collection<AttributeDefinition> getAttributes() {
+        return ATTRIBUTES_MAP.values();
+    }
+
+    private BatchWriterDefinition() {
+        super(CassandraDriverExtension.BATCH_WRITER_PATH,
+                CassandraDriverExtension.getResolver(CommonAttributes.BATCH_WRITER),
+                BatchWriterAdd.INSTANCE,
+                ReloadRequiredRemoveStepHandler.INSTANCE);
+    }
+
+    private static class BatchWriterAdd extends AbstractAddStepHandler {
+        private static final BatchWriterAdd INSTANCE = new BatchWriterAdd();
+
+        private BatchWriterAdd() {
+            super(ATTRIBUTES);
+        }
+
+        @Override
+        protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package org.wildfly.extension.nosql.subsystem.cassandra;
 
+import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -35,7 +37,12 @@ import org.jboss.as.controller.PersistentResourceDefinition;
 import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
 import org.jboss.as.controller.SimpleAttributeDefinition;
 import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
+import org.jboss.as.controller.operations.validation.EnumValidator;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.operations.validation.ParameterValidator;
 import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.as.controller.registry.Resource;
 import org.jboss.as.naming.ServiceBasedNamingStore;
 import org.jboss.as.naming.ValueManagedReferenceFactory;
@@ -54,7 +61,9 @@ import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.value.ImmediateValue;
 import org.jboss.security.SubjectFactory;
 import org.wildfly.extension.nosql.driver.cassandra.CassandraClientConnectionsService;
+import org.wildfly.extension.nosql.driver.cassandra.CompressionType;
 import org.wildfly.extension.nosql.driver.cassandra.ConfigurationBuilder;
+import org.wildfly.extension.nosql.driver.cassandra.transaction.TransactionEnlistmentType;
 import org.wildfly.nosql.common.ConnectionServiceAccess;
 
 /**
@@ -69,6 +78,10 @@ public class CassandraDefinition extends PersistentResourceDefinition {
     static {
         List<PersistentResourceDefinition> children = new ArrayList<>();
         children.add(HostDefinition.INSTANCE);
+        children.add(PoolingDefinition.INSTANCE);
+        children.add(LoadBalancingDefinition.INSTANCE);
+        children.add(SpeculativeExecutionDefinition.INSTANCE);
+        children.add(BatchWriterDefinition.INSTANCE);
         CHILDREN = Collections.unmodifiableList(children);
     }
 
@@ -90,6 +103,13 @@ public class CassandraDefinition extends PersistentResourceDefinition {
                     .setAllowExpression(true)
                     .build();
 
+    // comma separated list of additional keyspace names
+    protected static final SimpleAttributeDefinition KEYSPACES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.KEYSPACES, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(true)
+                    .build();
+
     protected static final SimpleAttributeDefinition MODULE =
             new SimpleAttributeDefinitionBuilder(CommonAttributes.MODULE_NAME, ModelType.STRING, true)
                     .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
@@ -108,13 +128,138 @@ public class CassandraDefinition extends PersistentResourceDefinition {
                     .setAllowExpression(true)
                     .build();
 
+    protected static final SimpleAttributeDefinition CONNECT_TIMEOUT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.CONNECT_TIMEOUT, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition READ_TIMEOUT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.READ_TIMEOUT, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(0, true, true))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition COMPRESSION =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.COMPRESSION, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new EnumValidator<>(CompressionType.class, true, true))
+                    .setDefaultValue(new ModelNode(CompressionType.NONE.toString()))
+                    .setAllowExpression(true)
+                    .build();
+
+    // undefined means the protocol version is negotiated with the contact points
+    protected static final SimpleAttributeDefinition PROTOCOL_VERSION =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.PROTOCOL_VERSION, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    // JNDI name of the executor that CassandraAsyncSession completions run on
+    protected static final SimpleAttributeDefinition ASYNC_EXECUTOR =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.ASYNC_EXECUTOR, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode("java:jboss/ee/concurrency/executor/default"))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition TRANSACTION =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.TRANSACTION, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(false)
+                    .setValidator(new ParameterValidator() {
+                        @Override
+                        public void validateParameter(String parameterName, ModelNode value) throws OperationFailedException {
+                            if (value.isDefined()) {
+                                String str = value.asString();
+                                if (TransactionEnlistmentType.getFromStringValue(str) == null) {
+                                    throw ROOT_LOGGER.invalidParameter(CommonAttributes.TRANSACTION, str, TransactionEnlistmentType.allowedNames());
+                                }
+                            }
+                        }
+
+                        @Override
+                        public void validateResolvedParameter(String parameterName, ModelNode value) throws OperationFailedException {
+                            validateParameter(parameterName, value.resolve());
+                        }
+
+                    }
+                    )
+                    .build();
+
+    protected static final SimpleAttributeDefinition PREPARED_STATEMENT_CACHE_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.PREPARED_STATEMENT_CACHE_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(1000))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition PREPARED_STATEMENTS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.PREPARED_STATEMENTS, ModelType.INT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition SPECULATIVE_EXECUTIONS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.SPECULATIVE_EXECUTIONS, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition BATCH_WRITER_BATCHES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.BATCH_WRITER_BATCHES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition BATCH_WRITER_STATEMENTS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.BATCH_WRITER_STATEMENTS, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition BATCH_WRITER_FAILED_STATEMENTS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.BATCH_WRITER_FAILED_STATEMENTS, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition BATCH_WRITER_QUEUE_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.BATCH_WRITER_QUEUE_SIZE, ModelType.INT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition BATCH_WRITER_IN_FLIGHT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.BATCH_WRITER_IN_FLIGHT, ModelType.INT, true)
+                    .setStorageRuntime()
+                    .build();
+
     protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
             ID_NAME,
             JNDI_NAME,
             DATABASE,
+            KEYSPACES,
             MODULE,
             SECURITY_DOMAIN,
-            SSL);
+            SSL,
+            CONNECT_TIMEOUT,
+            READ_TIMEOUT,
+            COMPRESSION,
+            PROTOCOL_VERSION,
+            ASYNC_EXECUTOR,
+            TRANSACTION,
+            PREPARED_STATEMENT_CACHE_SIZE);
+
+    // runtime only metrics, read from the running profile service
+    protected static List<SimpleAttributeDefinition> METRICS = Arrays.asList(
+            PREPARED_STATEMENTS,
+            SPECULATIVE_EXECUTIONS,
+            BATCH_WRITER_BATCHES,
+            BATCH_WRITER_STATEMENTS,
+            BATCH_WRITER_FAILED_STATEMENTS,
+            BATCH_WRITER_QUEUE_SIZE,
+            BATCH_WRITER_IN_FLIGHT);
 
     static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
 
@@ -132,6 +277,14 @@ public class CassandraDefinition extends PersistentResourceDefinition {
         return ATTRIBUTES_MAP.values();
     }
 
+    @Override
+    public void registerAttributes(ManagementResourceRegistration resourceRegistration) {
+        super.registerAttributes(resourceRegistration);
+        for (SimpleAttributeDefinition metric : METRICS) {
+            resourceRegistration.registerMetric(metric, CassandraMetricsHandler.INSTANCE);
+        }
+    }
+
     @Override
     public List<? extends PersistentResourceDefinition> getChildren() {
         return CHILDREN;
@@ -170,9 +323,96 @@ public class CassandraDefinition extends PersistentResourceDefinition {
             if (profileEntry.hasDefined(CommonAttributes.DATABASE)) {
                 builder.setKeyspace(profileEntry.get(CommonAttributes.DATABASE).asString());
             }
+            if (profileEntry.hasDefined(CommonAttributes.KEYSPACES)) {
+                for (String keyspace : profileEntry.get(CommonAttributes.KEYSPACES).asString().split(",")) {
+                    if (keyspace.trim().length() > 0 && !keyspace.trim().equals(builder.getKeySpace())) {
+                        builder.addKeyspace(keyspace.trim());
+                    }
+                }
+            }
             if (profileEntry.hasDefined(CommonAttributes.SSL)) {
                 builder.setWithSSL(profileEntry.get(CommonAttributes.SSL).asBoolean());
             }
+            if (profileEntry.hasDefined(CommonAttributes.CONNECT_TIMEOUT)) {
+                builder.setConnectTimeout(CONNECT_TIMEOUT.resolveModelAttribute(context, profileEntry).asInt());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.READ_TIMEOUT)) {
+                builder.setReadTimeout(READ_TIMEOUT.resolveModelAttribute(context, profileEntry).asInt());
+            }
+            CompressionType compression = CompressionType.valueOf(COMPRESSION.resolveModelAttribute(context, profileEntry).asString());
+            if (compression != CompressionType.NONE) {
+                builder.setCompression(compression);
+            }
+            if (profileEntry.hasDefined(CommonAttributes.PROTOCOL_VERSION)) {
+                builder.setProtocolVersion(PROTOCOL_VERSION.resolveModelAttribute(context, profileEntry).asInt());
+            }
+            builder.setAsyncExecutor(ASYNC_EXECUTOR.resolveModelAttribute(context, profileEntry).asString());
+            if (profileEntry.hasDefined(CommonAttributes.TRANSACTION)) {
+                builder.setTransactionEnlistment(TransactionEnlistmentType.getFromStringValue(profileEntry.get(CommonAttributes.TRANSACTION).asString()));
+            }
+            builder.setPreparedStatementCacheSize(PREPARED_STATEMENT_CACHE_SIZE.resolveModelAttribute(context, profileEntry).asInt());
+            if (profileEntry.hasDefined(CommonAttributes.POOLING, CommonAttributes.SETTINGS_NAME)) {
+                ModelNode pooling = profileEntry.get(CommonAttributes.POOLING, CommonAttributes.SETTINGS_NAME);
+                if (pooling.hasDefined(CommonAttributes.CORE_CONNECTIONS_PER_HOST)) {
+                    builder.setCoreConnectionsPerHost(PoolingDefinition.CORE_CONNECTIONS_PER_HOST.resolveModelAttribute(context, pooling).asInt());
+                }
+                if (pooling.hasDefined(CommonAttributes.MAX_CONNECTIONS_PER_HOST)) {
+                    builder.setMaxConnectionsPerHost(PoolingDefinition.MAX_CONNECTIONS_PER_HOST.resolveModelAttribute(context, pooling).asInt());
+                }
+                if (pooling.hasDefined(CommonAttributes.MAX_REQUESTS_PER_CONNECTION)) {
+                    builder.setMaxRequestsPerConnection(PoolingDefinition.MAX_REQUESTS_PER_CONNECTION.resolveModelAttribute(context, pooling).asInt());
+                }
+                if (pooling.hasDefined(CommonAttributes.HEARTBEAT_INTERVAL)) {
+                    builder.setHeartbeatInterval(PoolingDefinition.HEARTBEAT_INTERVAL.resolveModelAttribute(context, pooling).asInt());
+                }
+                if (pooling.hasDefined(CommonAttributes.POOL_TIMEOUT)) {
+                    builder.setPoolTimeout(PoolingDefinition.POOL_TIMEOUT.resolveModelAttribute(context, pooling).asInt());
+                }
+                if (builder.getCoreConnectionsPerHost() != null && builder.getMaxConnectionsPerHost() != null &&
+                        builder.getCoreConnectionsPerHost() > builder.getMaxConnectionsPerHost()) {
+                    throw new OperationFailedException(CommonAttributes.CORE_CONNECTIONS_PER_HOST + " (" + builder.getCoreConnectionsPerHost() +
+                            ") cannot be greater than " + CommonAttributes.MAX_CONNECTIONS_PER_HOST + " (" + builder.getMaxConnectionsPerHost() + ")");
+                }
+            }
+            if (profileEntry.hasDefined(CommonAttributes.LOAD_BALANCING, CommonAttributes.SETTINGS_NAME)) {
+                ModelNode loadBalancing = profileEntry.get(CommonAttributes.LOAD_BALANCING, CommonAttributes.SETTINGS_NAME);
+                builder.setLoadBalancing(true);
+                if (loadBalancing.hasDefined(CommonAttributes.LOCAL_DC)) {
+                    builder.setLocalDc(LoadBalancingDefinition.LOCAL_DC.resolveModelAttribute(context, loadBalancing).asString());
+                }
+                builder.setUsedHostsPerRemoteDc(LoadBalancingDefinition.USED_HOSTS_PER_REMOTE_DC.resolveModelAttribute(context, loadBalancing).asInt());
+                builder.setAllowRemoteDcsForLocalConsistency(LoadBalancingDefinition.ALLOW_REMOTE_DCS_FOR_LOCAL_CONSISTENCY.resolveModelAttribute(context, loadBalancing).asBoolean());
+                builder.setTokenAware(LoadBalancingDefinition.TOKEN_AWARE.resolveModelAttribute(context, loadBalancing).asBoolean());
+                builder.setLatencyAware(LoadBalancingDefinition.LATENCY_AWARE.resolveModelAttribute(context, loadBalancing).asBoolean());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.SPECULATIVE_EXECUTION, CommonAttributes.SETTINGS_NAME)) {
+                ModelNode speculativeExecution = profileEntry.get(CommonAttributes.SPECULATIVE_EXECUTION, CommonAttributes.SETTINGS_NAME);
+                if (speculativeExecution.hasDefined(CommonAttributes.PERCENTILE)) {
+                    double percentile = SpeculativeExecutionDefinition.PERCENTILE.resolveModelAttribute(context, speculativeExecution).asDouble();
+                    if (percentile <= 0.0 || percentile >= 100.0) {
+                        throw new OperationFailedException(CommonAttributes.PERCENTILE + " (" + percentile + ") must be greater than 0 and less than 100");
+                    }
+                    builder.setSpeculativePercentile(percentile);
+                } else if (speculativeExecution.hasDefined(CommonAttributes.DELAY)) {
+                    builder.setSpeculativeDelay(SpeculativeExecutionDefinition.DELAY.resolveModelAttribute(context, speculativeExecution).asLong());
+                } else {
+                    throw new OperationFailedException(CommonAttributes.SPECULATIVE_EXECUTION + " requires either " +
+                            CommonAttributes.DELAY + " or " + CommonAttributes.PERCENTILE);
+                }
+                builder.setSpeculativeMaxExecutions(SpeculativeExecutionDefinition.MAX_EXECUTIONS.resolveModelAttribute(context, speculativeExecution).asInt());
+                builder.setSpeculativeHighestTrackableLatency(SpeculativeExecutionDefinition.HIGHEST_TRACKABLE_LATENCY.resolveModelAttribute(context, speculativeExecution).asLong());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.BATCH_WRITER, CommonAttributes.SETTINGS_NAME)) {
+                if (builder.getKeySpace() == null) {
+                    throw new OperationFailedException(CommonAttributes.BATCH_WRITER + " requires the profile " + CommonAttributes.DATABASE + " (keyspace)");
+                }
+                ModelNode batchWriter = profileEntry.get(CommonAttributes.BATCH_WRITER, CommonAttributes.SETTINGS_NAME);
+                builder.setBatchWriter(true);
+                builder.setBatchSize(BatchWriterDefinition.BATCH_SIZE.resolveModelAttribute(context, batchWriter).asInt());
+                builder.setBatchLinger(BatchWriterDefinition.LINGER.resolveModelAttribute(context, batchWriter).asLong());
+                builder.setBatchMaxInFlight(BatchWriterDefinition.MAX_IN_FLIGHT.resolveModelAttribute(context, batchWriter).asInt());
+                builder.setBatchMaxQueued(BatchWriterDefinition.MAX_QUEUED.resolveModelAttribute(context, batchWriter).asInt());
+            }
             if (profileEntry.hasDefined(CommonAttributes.HOST_DEF)) {
                 ModelNode hostModels = profileEntry.get(CommonAttributes.HOST_DEF);
                 for (ModelNode host : hostModels.asList()) {
@@ -194,25 +434,11 @@ public class CassandraDefinition extends PersistentResourceDefinition {
             if (builder.getJNDIName() != null && builder.getJNDIName().length() > 0) {
                 final CassandraClientConnectionsService cassandraClientConnectionsService = new CassandraClientConnectionsService(builder);
                 final ServiceName serviceName = ConnectionServiceAccess.serviceName(builder.getDescription());
-                final ContextNames.BindInfo bindingInfo = ContextNames.bindInfoFor(builder.getJNDIName());
-
-                final BinderService binderService = new BinderService(bindingInfo.getBindName());
-                context.getServiceTarget().addService(bindingInfo.getBinderServiceName(), binderService)
-                        .addDependency(CassandraSubsystemService.serviceName())
-                        .addDependency(bindingInfo.getParentContextServiceName(), ServiceBasedNamingStore.class, binderService.getNamingStoreInjector())
-                        .addDependency(serviceName, CassandraClientConnectionsService.class, new Injector<CassandraClientConnectionsService>() {
-                            @Override
-                            public void inject(final CassandraClientConnectionsService value) throws
-                                    InjectionException {
-                                binderService.getManagedObjectInjector().inject(new ValueManagedReferenceFactory(new ImmediateValue<>(value.getSession() != null ? value.getSession() : value.getCluster())));
-                            }
-
-                            @Override
-                            public void uninject() {
-                                binderService.getNamingStoreInjector().uninject();
-                            }
-                        }).install();
-
+                bind(context, builder.getJNDIName(), serviceName, null);
+                // each additional keyspace Session is bound under the profile jndi-name
+                for (final String keyspace : builder.getKeyspaces()) {
+                    bind(context, CassandraClientConnectionsService.keyspaceJNDIName(builder.getJNDIName(), keyspace), serviceName, keyspace);
+                }
                 final ServiceBuilder<CassandraClientConnectionsService> serviceBuilder = context.getServiceTarget().addService(serviceName, cassandraClientConnectionsService);
                 serviceBuilder.addDependency(CassandraSubsystemService.serviceName(), new CastingInjector<>(cassandraClientConnectionsService.getCassandraSubsystemServiceInjectedValue(), CassandraSubsystemService.class));
                 // add service dependency on each separate hostname/port reference in standalone*.xml referenced from this driver profile definition.
@@ -230,6 +456,29 @@ public class CassandraDefinition extends PersistentResourceDefinition {
             }
         }
 
+        private void bind(OperationContext context, String jndiName, ServiceName serviceName, final String keyspace) {
+            final ContextNames.BindInfo bindingInfo = ContextNames.bindInfoFor(jndiName);
+
+            final BinderService binderService = new BinderService(bindingInfo.getBindName());
+            context.getServiceTarget().addService(bindingInfo.getBinderServiceName(), binderService)
+                    .addDependency(CassandraSubsystemService.serviceName())
+                    .addDependency(bindingInfo.getParentContextServiceName(), ServiceBasedNamingStore.class, binderService.getNamingStoreInjector())
+                    .addDependency(serviceName, CassandraClientConnectionsService.class, new Injector<CassandraClientConnectionsService>() {
+                        @Override
+                        public void inject(final CassandraClientConnectionsService value) throws
+                                InjectionException {
+                            final Object bound = keyspace != null ? value.getSession(keyspace) :
+                                    (value.getSession() != null ? value.getSession() : value.getCluster());
+                            binderService.getManagedObjectInjector().inject(new ValueManagedReferenceFactory(new ImmediateValue<>(bound)));
+                        }
+
+                        @Override
+                        public void uninject() {
+                            binderService.getNamingStoreInjector().uninject();
+                        }
+                    }).install();
+        }
+
     }
 
 }
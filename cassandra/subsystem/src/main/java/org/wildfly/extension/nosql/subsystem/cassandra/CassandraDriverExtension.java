@@ -37,7 +37,11 @@ public class CassandraDriverExtension implements Extension {
     public static final String SUBSYSTEM_NAME = "cassandradriver";
 
     protected static final PathElement PROFILE_PATH = PathElement.pathElement(CommonAttributes.PROFILE);
+    protected static final PathElement BATCH_WRITER_PATH = PathElement.pathElement(CommonAttributes.BATCH_WRITER, CommonAttributes.SETTINGS_NAME);
     protected static final PathElement HOST_PATH = PathElement.pathElement(CommonAttributes.HOST_DEF);
+    protected static final PathElement LOAD_BALANCING_PATH = PathElement.pathElement(CommonAttributes.LOAD_BALANCING, CommonAttributes.SETTINGS_NAME);
+    protected static final PathElement POOLING_PATH = PathElement.pathElement(CommonAttributes.POOLING, CommonAttributes.SETTINGS_NAME);
+    protected static final PathElement SPECULATIVE_EXECUTION_PATH = PathElement.pathElement(CommonAttributes.SPECULATIVE_EXECUTION, CommonAttributes.SETTINGS_NAME);
 
     public static final String NAMESPACE = "urn:jboss:domain:cassandradriver:1.0";
     public static final Namespace CURRENT = Namespace.CASSANDRA_1_0;
@@ -17,6 +17,9 @@
 package org.wildfly.extension.nosql.subsystem.cassandra;
 
 
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
 import org.jboss.as.controller.AbstractBoottimeAddStepHandler;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.OperationContext;
@@ -27,6 +30,8 @@ import org.wildfly.nosql.common.DriverScanDependencyProcessor;
 import org.jboss.as.server.AbstractDeploymentChainStep;
 import org.jboss.as.server.DeploymentProcessorTarget;
 import org.jboss.as.server.deployment.Phase;
+import org.jboss.as.txn.service.TransactionManagerService;
+import org.jboss.as.txn.service.TransactionSynchronizationRegistryService;
 import org.jboss.dmr.ModelNode;
 import org.jboss.msc.service.ServiceController;
 
@@ -57,10 +62,14 @@ public class CassandraDriverSubsystemAdd extends AbstractBoottimeAddStepHandler
             protected void execute(DeploymentProcessorTarget processorTarget) {
                 final int PARSE_CASSANDRA_DRIVER                      = 0x4C02;
                 final int DEPENDENCIES_CASSANDRA_DRIVER               = 0x1F12;
+                final int POST_MODULE_CASSANDRA_STATEMENTS            = 0x3C05;
+                final int INSTALL_CASSANDRA_STATEMENTS                = 0x20F4;
                 // TODO: use Phase.PARSE_CASSANDRA_DRIVER
                 processorTarget.addDeploymentProcessor(CassandraDriverExtension.SUBSYSTEM_NAME, Phase.PARSE, PARSE_CASSANDRA_DRIVER, new DriverScanDependencyProcessor("cassandrasubsystem"));
                 // TODO: use Phase.DEPENDENCIES_CASSANDRA_DRIVER
                 processorTarget.addDeploymentProcessor(CassandraDriverExtension.SUBSYSTEM_NAME, Phase.DEPENDENCIES, DEPENDENCIES_CASSANDRA_DRIVER, DriverDependencyProcessor.getInstance());
+                processorTarget.addDeploymentProcessor(CassandraDriverExtension.SUBSYSTEM_NAME, Phase.POST_MODULE, POST_MODULE_CASSANDRA_STATEMENTS, new CassandraStatementScanProcessor());
+                processorTarget.addDeploymentProcessor(CassandraDriverExtension.SUBSYSTEM_NAME, Phase.INSTALL, INSTALL_CASSANDRA_STATEMENTS, new CassandraStatementProcessor());
             }
         }, OperationContext.Stage.RUNTIME);
 
@@ -69,7 +78,10 @@ public class CassandraDriverSubsystemAdd extends AbstractBoottimeAddStepHandler
 
     private void startCassandraDriverSubsysteService(final OperationContext context) {
         CassandraSubsystemService cassandraSubsystemService = new CassandraSubsystemService();
-        context.getServiceTarget().addService(CassandraSubsystemService.serviceName(), cassandraSubsystemService).setInitialMode(ServiceController.Mode.ACTIVE).install();
+        context.getServiceTarget().addService(CassandraSubsystemService.serviceName(), cassandraSubsystemService).setInitialMode(ServiceController.Mode.ACTIVE)
+        .addDependency(TransactionManagerService.SERVICE_NAME, TransactionManager.class, cassandraSubsystemService.getTransactionManagerInjector())
+        .addDependency(TransactionSynchronizationRegistryService.SERVICE_NAME, TransactionSynchronizationRegistry.class, cassandraSubsystemService.getTxSyncRegistryInjector())
+                .install();
     }
 
 
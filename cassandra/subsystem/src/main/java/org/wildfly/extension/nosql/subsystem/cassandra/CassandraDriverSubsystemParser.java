@@ -38,14 +38,60 @@ final class CassandraDriverSubsystemParser extends PersistentResourceXMLParser {
                                         CassandraDefinition.ID_NAME,
                                         CassandraDefinition.JNDI_NAME,
                                         CassandraDefinition.DATABASE,
+                                        CassandraDefinition.KEYSPACES,
                                         CassandraDefinition.MODULE,
-                                        CassandraDefinition.SSL
+                                        CassandraDefinition.SSL,
+                                        CassandraDefinition.CONNECT_TIMEOUT,
+                                        CassandraDefinition.READ_TIMEOUT,
+                                        CassandraDefinition.COMPRESSION,
+                                        CassandraDefinition.PROTOCOL_VERSION,
+                                        CassandraDefinition.ASYNC_EXECUTOR,
+                                        CassandraDefinition.TRANSACTION,
+                                        CassandraDefinition.PREPARED_STATEMENT_CACHE_SIZE
                                 )
                                 .addChild(builder(HostDefinition.INSTANCE)
                                         .addAttributes(
                                                 HostDefinition.OUTBOUND_SOCKET_BINDING_REF
                                         )
                                 )
+                                .addChild(builder(PoolingDefinition.INSTANCE)
+                                        .setXmlElementName(CommonAttributes.POOLING)
+                                        .addAttributes(
+                                                PoolingDefinition.CORE_CONNECTIONS_PER_HOST,
+                                                PoolingDefinition.MAX_CONNECTIONS_PER_HOST,
+                                                PoolingDefinition.MAX_REQUESTS_PER_CONNECTION,
+                                                PoolingDefinition.HEARTBEAT_INTERVAL,
+                                                PoolingDefinition.POOL_TIMEOUT
+                                        )
+                                )
+                                .addChild(builder(LoadBalancingDefinition.INSTANCE)
+                                        .setXmlElementName(CommonAttributes.LOAD_BALANCING)
+                                        .addAttributes(
+                                                LoadBalancingDefinition.LOCAL_DC,
+                                                LoadBalancingDefinition.USED_HOSTS_PER_REMOTE_DC,
+                                                LoadBalancingDefinition.ALLOW_REMOTE_DCS_FOR_LOCAL_CONSISTENCY,
+                                                LoadBalancingDefinition.TOKEN_AWARE,
+                                                LoadBalancingDefinition.LATENCY_AWARE
+                                        )
+                                )
+                                .addChild(builder(SpeculativeExecutionDefinition.INSTANCE)
+                                        .setXmlElementName(CommonAttributes.SPECULATIVE_EXECUTION)
+                                        .addAttributes(
+                                                SpeculativeExecutionDefinition.DELAY,
+                                                SpeculativeExecutionDefinition.PERCENTILE,
+                                                SpeculativeExecutionDefinition.MAX_EXECUTIONS,
+                                                SpeculativeExecutionDefinition.HIGHEST_TRACKABLE_LATENCY
+                                        )
+                                )
+                                .addChild(builder(BatchWriterDefinition.INSTANCE)
+                                        .setXmlElementName(CommonAttributes.BATCH_WRITER)
+                                        .addAttributes(
+                                                BatchWriterDefinition.BATCH_SIZE,
+                                                BatchWriterDefinition.LINGER,
+                                                BatchWriterDefinition.MAX_IN_FLIGHT,
+                                                BatchWriterDefinition.MAX_QUEUED
+                                        )
+                                )
                 )
                 .build();
     }
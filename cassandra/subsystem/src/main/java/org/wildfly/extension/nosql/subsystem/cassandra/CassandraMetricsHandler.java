@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.NAME;
+
+import org.jboss.as.controller.AbstractRuntimeOnlyHandler;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.dmr.ModelNode;
+import org.jboss.msc.service.ServiceController;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraBatchWriter;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraClientConnectionsService;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraSpeculativeExecutions;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraStatementRegistry;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * CassandraMetricsHandler reads the runtime metrics of a Cassandra profile from the profile connection service.
+ * Metrics are undefined when the profile service is not running.
+ */
+class CassandraMetricsHandler extends AbstractRuntimeOnlyHandler {
+
+    static final CassandraMetricsHandler INSTANCE = new CassandraMetricsHandler();
+
+    private CassandraMetricsHandler() {
+    }
+
+    @Override
+    protected void executeRuntimeStep(OperationContext context, ModelNode operation) throws OperationFailedException {
+        final ModelNode model = context.readResource(PathAddress.EMPTY_ADDRESS).getModel();
+        if (!model.hasDefined(CommonAttributes.ID_NAME)) {
+            return;
+        }
+        final String profile = model.get(CommonAttributes.ID_NAME).asString();
+        final ServiceController<?> controller = context.getServiceRegistry(false).getService(ConnectionServiceAccess.serviceName(profile));
+        if (controller == null || controller.getState() != ServiceController.State.UP) {
+            return;
+        }
+        final CassandraClientConnectionsService service = (CassandraClientConnectionsService) controller.getValue();
+        final String metric = operation.require(NAME).asString();
+        final ModelNode result = context.getResult();
+
+        final CassandraStatementRegistry statementRegistry = service.getStatementRegistry();
+        if (statementRegistry != null && CommonAttributes.PREPARED_STATEMENTS.equals(metric)) {
+            result.set(statementRegistry.size());
+        }
+
+        final CassandraSpeculativeExecutions speculativeExecutions = service.getSpeculativeExecutions();
+        if (speculativeExecutions != null && CommonAttributes.SPECULATIVE_EXECUTIONS.equals(metric)) {
+            result.set(speculativeExecutions.getLaunchedCount());
+        }
+
+        final CassandraBatchWriter batchWriter = service.getBatchWriter();
+        if (batchWriter != null) {
+            if (CommonAttributes.BATCH_WRITER_BATCHES.equals(metric)) {
+                result.set(batchWriter.getBatchCount());
+            } else if (CommonAttributes.BATCH_WRITER_STATEMENTS.equals(metric)) {
+                result.set(batchWriter.getStatementCount());
+            } else if (CommonAttributes.BATCH_WRITER_FAILED_STATEMENTS.equals(metric)) {
+                result.set(batchWriter.getFailedStatementCount());
+            } else if (CommonAttributes.BATCH_WRITER_QUEUE_SIZE.equals(metric)) {
+                result.set(batchWriter.getQueueSize());
+            } else if (CommonAttributes.BATCH_WRITER_IN_FLIGHT.equals(metric)) {
+                result.set(batchWriter.getInFlightCount());
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import java.util.List;
+
+import org.jboss.as.server.deployment.DeploymentPhaseContext;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.DeploymentUnitProcessor;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraClientConnectionsService;
+import org.wildfly.extension.nosql.driver.cassandra.CassandraStatementRegistry;
+import org.wildfly.extension.nosql.subsystem.cassandra.CassandraStatementScanProcessor.StatementDefinition;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * CassandraStatementProcessor prepares the statements collected by {@link CassandraStatementScanProcessor} in the
+ * prepared statement registry of their profile, a statement that cannot be prepared fails the deployment.
+ */
+public class CassandraStatementProcessor implements DeploymentUnitProcessor {
+
+    @Override
+    public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
+        final DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
+        final List<StatementDefinition> statements = deploymentUnit.getAttachmentList(CassandraStatementScanProcessor.STATEMENTS);
+        for (StatementDefinition statement : statements) {
+            final CassandraStatementRegistry statementRegistry =
+                    ((CassandraClientConnectionsService) ConnectionServiceAccess.connection(statement.getProfile())).getStatementRegistry();
+            if (statementRegistry == null) {
+                throw new DeploymentUnitProcessingException(CassandraStatementScanProcessor.DESCRIPTOR + " statement " + statement.getName() +
+                        ", Cassandra profile " + statement.getProfile() + " doesn't specify a database (keyspace)");
+            }
+            try {
+                statementRegistry.prepare(statement.getCql());
+            } catch (RuntimeException e) {
+                throw new DeploymentUnitProcessingException("could not prepare " + CassandraStatementScanProcessor.DESCRIPTOR + " statement " +
+                        statement.getName() + " for Cassandra profile " + statement.getProfile(), e);
+            }
+        }
+    }
+
+    @Override
+    public void undeploy(DeploymentUnit context) {
+    }
+}
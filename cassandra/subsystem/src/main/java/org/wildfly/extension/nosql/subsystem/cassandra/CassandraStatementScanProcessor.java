@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+
+import org.jboss.as.server.deployment.AttachmentKey;
+import org.jboss.as.server.deployment.AttachmentList;
+import org.jboss.as.server.deployment.Attachments;
+import org.jboss.as.server.deployment.DeploymentPhaseContext;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.DeploymentUnitProcessor;
+import org.jboss.modules.Module;
+import org.jboss.msc.service.ServiceController;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * CassandraStatementScanProcessor reads the statements that a deployment wants prepared when it starts, from the
+ * <code>META-INF/cassandra-statements.properties</code> descriptors visible to the deployment classloader, and adds a
+ * deployment dependency on each referenced Cassandra profile, so that the statements can be prepared by
+ * {@link CassandraStatementProcessor}.
+ *
+ * Each descriptor entry is <code>profile/statement-name=CQL</code>, the statement name is only used in error messages.
+ */
+public class CassandraStatementScanProcessor implements DeploymentUnitProcessor {
+
+    static final String DESCRIPTOR = "META-INF/cassandra-statements.properties";
+
+    static final AttachmentKey<AttachmentList<StatementDefinition>> STATEMENTS = AttachmentKey.createList(StatementDefinition.class);
+    private static final AttachmentKey<AttachmentList<Object>> PROFILE_CONNECTIONS = AttachmentKey.createList(Object.class);
+
+    @Override
+    public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
+        final DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
+        final Module module = deploymentUnit.getAttachment(Attachments.MODULE);
+        if (module == null) {
+            return;
+        }
+        final Properties statements = new Properties();
+        try {
+            final Enumeration<URL> descriptors = module.getClassLoader().getResources(DESCRIPTOR);
+            while (descriptors.hasMoreElements()) {
+                final URL descriptor = descriptors.nextElement();
+                try (InputStream input = descriptor.openStream()) {
+                    statements.load(input);
+                }
+            }
+        } catch (IOException e) {
+            throw new DeploymentUnitProcessingException("could not read " + DESCRIPTOR + " of " + deploymentUnit.getName(), e);
+        }
+        final CassandraSubsystemService subsystemService = subsystemService(phaseContext);
+        final List<String> profiles = new ArrayList<>();
+        for (String key : statements.stringPropertyNames()) {
+            final int separator = key.lastIndexOf('/');
+            if (separator <= 0) {
+                throw new DeploymentUnitProcessingException(DESCRIPTOR + " entry " + key + " is not profile/statement-name");
+            }
+            final String profile = key.substring(0, separator);
+            if (subsystemService == null || !subsystemService.profileNames().contains(profile)) {
+                throw new DeploymentUnitProcessingException(DESCRIPTOR + " entry " + key + " references unknown Cassandra profile " + profile);
+            }
+            deploymentUnit.addToAttachmentList(STATEMENTS, new StatementDefinition(profile, key.substring(separator + 1), statements.getProperty(key).trim()));
+            if (!profiles.contains(profile)) {
+                profiles.add(profile);
+                // wait for the profile connection to be started before the statements are prepared
+                phaseContext.addDependency(ConnectionServiceAccess.serviceName(profile), PROFILE_CONNECTIONS);
+            }
+        }
+    }
+
+    @Override
+    public void undeploy(DeploymentUnit context) {
+        context.removeAttachment(STATEMENTS);
+    }
+
+    private static CassandraSubsystemService subsystemService(DeploymentPhaseContext phaseContext) {
+        final ServiceController<?> controller = phaseContext.getServiceRegistry().getService(CassandraSubsystemService.serviceName());
+        return controller != null ? (CassandraSubsystemService) controller.getValue() : null;
+    }
+
+    static final class StatementDefinition {
+        private final String profile;
+        private final String name;
+        private final String cql;
+
+        StatementDefinition(String profile, String name, String cql) {
+            this.profile = profile;
+            this.name = name;
+            this.cql = cql;
+        }
+
+        String getProfile() {
+            return profile;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getCql() {
+            return cql;
+        }
+    }
+}
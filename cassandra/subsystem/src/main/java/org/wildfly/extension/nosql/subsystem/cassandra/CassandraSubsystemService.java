@@ -20,6 +20,11 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.jboss.msc.inject.Injector;
+import org.jboss.msc.value.InjectedValue;
 import org.wildfly.nosql.common.SubsystemService;
 import org.jboss.msc.service.Service;
 import org.jboss.msc.service.ServiceName;
@@ -43,6 +48,9 @@ public class CassandraSubsystemService implements Service<SubsystemService>, Sub
 
     private final Map<String, String> profileNameToModuleName = new ConcurrentHashMap<>();
 
+    private final InjectedValue<TransactionManager> txManager = new InjectedValue<>();
+    private final InjectedValue<TransactionSynchronizationRegistry> txSyncRegistry = new InjectedValue<>();
+
     public CassandraSubsystemService() {
     }
 
@@ -50,6 +58,22 @@ public class CassandraSubsystemService implements Service<SubsystemService>, Sub
         return SERVICENAME;
     }
 
+    public Injector<TransactionManager> getTransactionManagerInjector() {
+        return this.txManager;
+    }
+
+    public TransactionManager transactionManager() {
+        return txManager.getValue();
+    }
+
+    public Injector<TransactionSynchronizationRegistry> getTxSyncRegistryInjector() {
+        return this.txSyncRegistry;
+    }
+
+    public TransactionSynchronizationRegistry transactionSynchronizationRegistry() {
+        return txSyncRegistry.getValue();
+    }
+
     @Override
     public String moduleNameFromJndi(String jndiName) {
         return jndiNameToModuleName.get(jndiName);
@@ -23,12 +23,50 @@ package org.wildfly.extension.nosql.subsystem.cassandra;
  */
 public interface CommonAttributes {
     String OUTBOUND_SOCKET_BINDING_REF = "outbound-socket-binding-ref";
+    String ALLOW_REMOTE_DCS_FOR_LOCAL_CONSISTENCY = "allow-remote-dcs-for-local-consistency";
+    String ASYNC_EXECUTOR = "async-executor";
+    String BATCH_SIZE = "batch-size";
+    String BATCH_WRITER = "batch-writer";
+    String BATCH_WRITER_BATCHES = "batch-writer-batches";
+    String BATCH_WRITER_FAILED_STATEMENTS = "batch-writer-failed-statements";
+    String BATCH_WRITER_IN_FLIGHT = "batch-writer-in-flight";
+    String BATCH_WRITER_QUEUE_SIZE = "batch-writer-queue-size";
+    String BATCH_WRITER_STATEMENTS = "batch-writer-statements";
+    String COMPRESSION = "compression";
+    String CONNECT_TIMEOUT = "connect-timeout";
+    String CORE_CONNECTIONS_PER_HOST = "core-connections-per-host";
     String DATABASE = "database";
+    String DELAY = "delay";
+    String HEARTBEAT_INTERVAL = "heartbeat-interval";
+    String HIGHEST_TRACKABLE_LATENCY = "highest-trackable-latency";
     String HOST_DEF = "host";
     String ID_NAME = "id";
     String JNDI_NAME = "jndi-name";
+    String KEYSPACES = "keyspaces";
+    String LATENCY_AWARE = "latency-aware";
+    String LINGER = "linger";
+    String LOAD_BALANCING = "load-balancing";
+    String LOCAL_DC = "local-dc";
+    String MAX_CONNECTIONS_PER_HOST = "max-connections-per-host";
+    String MAX_EXECUTIONS = "max-executions";
+    String MAX_IN_FLIGHT = "max-in-flight";
+    String MAX_QUEUED = "max-queued";
+    String MAX_REQUESTS_PER_CONNECTION = "max-requests-per-connection";
     String MODULE_NAME = "module";
+    String PERCENTILE = "percentile";
+    String POOL_TIMEOUT = "pool-timeout";
+    String POOLING = "pooling";
+    String PREPARED_STATEMENT_CACHE_SIZE = "prepared-statement-cache-size";
+    String PREPARED_STATEMENTS = "prepared-statements";
     String PROFILE = "cassandra";
+    String PROTOCOL_VERSION = "protocol-version";
+    String READ_TIMEOUT = "read-timeout";
     String SECURITY_DOMAIN = "security-domain";
+    String SETTINGS_NAME = "default";
+    String SPECULATIVE_EXECUTION = "speculative-execution";
+    String SPECULATIVE_EXECUTIONS = "speculative-executions";
     String SSL = "ssl";
+    String TOKEN_AWARE = "token-aware";
+    String TRANSACTION = "transaction";
+    String USED_HOSTS_PER_REMOTE_DC = "used-hosts-per-remote-dc";
 }
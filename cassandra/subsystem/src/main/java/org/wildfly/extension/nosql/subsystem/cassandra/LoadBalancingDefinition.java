@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PersistentResourceDefinition;
+import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.operations.validation.StringLengthValidator;
+import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * LoadBalancingDefinition represents the load balancing policy of a Cassandra profile, a DCAwareRoundRobinPolicy
+ * that is optionally wrapped by a LatencyAwarePolicy and a TokenAwarePolicy.
+ */
+public class LoadBalancingDefinition extends PersistentResourceDefinition {
+
+    protected static final SimpleAttributeDefinition LOCAL_DC =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.LOCAL_DC, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new StringLengthValidator(1, Integer.MAX_VALUE, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition USED_HOSTS_PER_REMOTE_DC =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.USED_HOSTS_PER_REMOTE_DC, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(0, true, true))
+                    .setDefaultValue(new ModelNode(0))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition ALLOW_REMOTE_DCS_FOR_LOCAL_CONSISTENCY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.ALLOW_REMOTE_DCS_FOR_LOCAL_CONSISTENCY, ModelType.BOOLEAN, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode(false))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition TOKEN_AWARE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.TOKEN_AWARE, ModelType.BOOLEAN, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode(true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition LATENCY_AWARE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.LATENCY_AWARE, ModelType.BOOLEAN, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode(false))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
+            LOCAL_DC,
+            USED_HOSTS_PER_REMOTE_DC,
+            ALLOW_REMOTE_DCS_FOR_LOCAL_CONSISTENCY,
+            TOKEN_AWARE,
+            LATENCY_AWARE);
+
+    static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
+
+    static {
+        for (SimpleAttributeDefinition attr : ATTRIBUTES) {
+            ATTRIBUTES_MAP.put(attr.getName(), attr);
+        }
+
+    }
+
+    static final LoadBalancingDefinition INSTANCE = new LoadBalancingDefinition();
+
+    @Override
+    public Collection<AttributeDefinition> getAttributes() {
+        return ATTRIBUTES_MAP.values();
+    }
+
+    private LoadBalancingDefinition() {
+        super(CassandraDriverExtension.LOAD_BALANCING_PATH,
+                CassandraDriverExtension.getResolver(CommonAttributes.LOAD_BALANCING),
+                LoadBalancingAdd.INSTANCE,
+                ReloadRequiredRemoveStepHandler.INSTANCE);
+    }
+
+    private static class LoadBalancingAdd extends AbstractAddStepHandler {
+        private static final LoadBalancingAdd INSTANCE = new LoadBalancingAdd();
+
+        private LoadBalancingAdd() {
+            super(ATTRIBUTES);
+        }
+
+        @Override
+        protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PersistentResourceDefinition;
+import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * PoolingDefinition represents the connection pool settings (PoolingOptions) of a Cassandra profile.
+ * Undefined attributes keep the driver defaults.
+ */
+public class PoolingDefinition extends PersistentResourceDefinition {
+
+    protected static final SimpleAttributeDefinition CORE_CONNECTIONS_PER_HOST =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.CORE_CONNECTIONS_PER_HOST, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition MAX_CONNECTIONS_PER_HOST =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.MAX_CONNECTIONS_PER_HOST, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition MAX_REQUESTS_PER_CONNECTION =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.MAX_REQUESTS_PER_CONNECTION, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, 32768, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEARTBEAT_INTERVAL =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEARTBEAT_INTERVAL, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(0, true, true))
+                    .setMeasurementUnit(MeasurementUnit.SECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition POOL_TIMEOUT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.POOL_TIMEOUT, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(0, true, true))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
+            CORE_CONNECTIONS_PER_HOST,
+            MAX_CONNECTIONS_PER_HOST,
+            MAX_REQUESTS_PER_CONNECTION,
+            HEARTBEAT_INTERVAL,
+            POOL_TIMEOUT);
+
+    static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
+
+    static {
+        for (SimpleAttributeDefinition attr : ATTRIBUTES) {
+            ATTRIBUTES_MAP.put(attr.getName(), attr);
+        }
+
+    }
+
+    static final PoolingDefinition INSTANCE = new PoolingDefinition();
+
+    @Override
+    public Collection<AttributeDefinition> getAttributes() {
+        return ATTRIBUTES_MAP.values();
+    }
+
+    private PoolingDefinition() {
+        super(CassandraDriverExtension.POOLING_PATH,
+                CassandraDriverExtension.getResolver(CommonAttributes.POOLING),
+                PoolingAdd.INSTANCE,
+                ReloadRequiredRemoveStepHandler.INSTANCE);
+    }
+
+    private static class PoolingAdd extends AbstractAddStepHandler {
+        private static final PoolingAdd INSTANCE = new PoolingAdd();
+
+        private PoolingAdd() {
+            super(ATTRIBUTES);
+        }
+
+        @Override
+        protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        }
+    }
+
+}
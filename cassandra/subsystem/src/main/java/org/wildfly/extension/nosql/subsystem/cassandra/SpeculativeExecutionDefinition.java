@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.cassandra;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PersistentResourceDefinition;
+import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.operations.validation.LongRangeValidator;
+import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * SpeculativeExecutionDefinition represents the speculative execution policy of a Cassandra profile, with either a
+ * constant delay or a delay that is a latency percentile of the queried host.
+ */
+public class SpeculativeExecutionDefinition extends PersistentResourceDefinition {
+
+    protected static final SimpleAttributeDefinition DELAY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.DELAY, ModelType.LONG, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(0, Long.MAX_VALUE, true, true))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAlternatives(CommonAttributes.PERCENTILE)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition PERCENTILE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.PERCENTILE, ModelType.DOUBLE, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAlternatives(CommonAttributes.DELAY)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition MAX_EXECUTIONS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.MAX_EXECUTIONS, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(1))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition HIGHEST_TRACKABLE_LATENCY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HIGHEST_TRACKABLE_LATENCY, ModelType.LONG, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(1, Long.MAX_VALUE, true, true))
+                    .setDefaultValue(new ModelNode(15000L))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
+            DELAY,
+            PERCENTILE,
+            MAX_EXECUTIONS,
+            HIGHEST_TRACKABLE_LATENCY);
+
+    static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
+
+    static {
+        for (SimpleAttributeDefinition attr : ATTRIBUTES) {
+            ATTRIBUTES_MAP.put(attr.getName(), attr);
+        }
+
+    }
+
+    static final SpeculativeExecutionDefinition INSTANCE = new SpeculativeExecutionDefinition();
+
+    @Override
+    public Collection<AttributeDefinition> getAttributes() {
+        return ATTRIBUTES_MAP.values();
+    }
+
+    private SpeculativeExecutionDefinition() {
+        super(CassandraDriverExtension.SPECULATIVE_EXECUTION_PATH,
+                CassandraDriverExtension.getResolver(CommonAttributes.SPECULATIVE_EXECUTION),
+                SpeculativeExecutionAdd.INSTANCE,
+                ReloadRequiredRemoveStepHandler.INSTANCE);
+    }
+
+    private static class SpeculativeExecutionAdd extends AbstractAddStepHandler {
+        private static final SpeculativeExecutionAdd INSTANCE = new SpeculativeExecutionAdd();
+
+        private SpeculativeExecutionAdd() {
+            super(ATTRIBUTES);
+        }
+
+        @Override
+        protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.inject.Qualifier;
+
+/**
+ * Qualifier for injecting a <code>MongoCollection</code> from a MongoDB profile.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyMongoDB") @Collection("orders") MongoCollection&lt;Order&gt; orders;</code>
+ *
+ * The collection is resolved once per deployment, the optional concern values override the
+ * concerns inherited from the profile database.
+ *
+ * The near cache view of the collection is injected with the same qualifier, if the profile enables the near cache:
+ * <code>@Inject @Named("MyMongoDB") @Collection("countries") MongoCachedCollection countries;</code>
+ */
+@Qualifier
+@Documented
+@Retention(RUNTIME)
+@Target({FIELD, METHOD, PARAMETER})
+public @interface Collection {
+
+    /**
+     * @return collection name
+     */
+    String value();
+
+    /**
+     * @return name of one of the profile databases, empty string means the profile database.
+     */
+    String database() default "";
+
+    /**
+     * @return <code>WriteConcern</code> name (e.g. MAJORITY), empty string means inherit from the database.
+     */
+    String writeConcern() default "";
+
+    /**
+     * @return <code>ReadConcernLevel</code> value (e.g. majority), empty string means inherit from the database.
+     */
+    String readConcern() default "";
+
+    /**
+     * @return <code>ReadPreference</code> name (e.g. secondaryPreferred), empty string means inherit from the database.
+     */
+    String readPreference() default "";
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+import javax.enterprise.util.AnnotationLiteral;
+
+/**
+ * Annotation literal for {@link Collection}, used to qualify the change events of a collection.
+ */
+@SuppressWarnings("all")
+class CollectionLiteral extends AnnotationLiteral<Collection> implements Collection {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String value;
+    private final String database;
+
+    CollectionLiteral(String value, String database) {
+        this.value = value;
+        this.database = database != null ? database : "";
+    }
+
+    @Override
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public String database() {
+        return database;
+    }
+
+    @Override
+    public String writeConcern() {
+        return "";
+    }
+
+    @Override
+    public String readConcern() {
+        return "";
+    }
+
+    @Override
+    public String readPreference() {
+        return "";
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.wildfly.extension.nosql.driver.mongodb.MongoClientConnectionsService;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * MongoCollectionCache holds the <code>MongoCollection</code> instances that are injected with the
+ * {@link Collection} qualifier, so that the collection lookup + concern handling is only done once per deployment.
+ *
+ * MongoCollection instances are immutable and thread safe, so they are shared between all injection points that
+ * use the same profile, collection name, document class and concern overrides.
+ */
+class MongoCollectionCache {
+
+    private static final String DOCUMENTCLASS = "org.bson.Document";
+    private static final String WRITECONCERNCLASS = "com.mongodb.WriteConcern";
+    private static final String READCONCERNCLASS = "com.mongodb.ReadConcern";
+    private static final String READCONCERNLEVELCLASS = "com.mongodb.ReadConcernLevel";
+    private static final String READPREFERENCECLASS = "com.mongodb.ReadPreference";
+
+    private final ConcurrentMap<CollectionKey, Object> collections = new ConcurrentHashMap<>();
+
+    private final Class mongoDatabaseClass;
+    private final Class mongoCollectionClass;
+    private final Class documentClass;
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle withWriteConcernMethod;
+    private final MethodHandle withReadConcernMethod;
+    private final MethodHandle withReadPreferenceMethod;
+    private final MethodHandle writeConcernValueOfMethod;
+    private final MethodHandle readConcernCtorMethod;
+    private final MethodHandle readConcernLevelFromStringMethod;
+    private final MethodHandle readPreferenceValueOfMethod;
+
+    MongoCollectionCache(Class mongoDatabaseClass) {
+        this.mongoDatabaseClass = mongoDatabaseClass;
+        final ClassLoader classLoader = mongoDatabaseClass.getClassLoader();
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            documentClass = classLoader.loadClass(DOCUMENTCLASS);
+            Class writeConcernClass = classLoader.loadClass(WRITECONCERNCLASS);
+            Class readConcernClass = classLoader.loadClass(READCONCERNCLASS);
+            Class readConcernLevelClass = classLoader.loadClass(READCONCERNLEVELCLASS);
+            Class readPreferenceClass = classLoader.loadClass(READPREFERENCECLASS);
+            // public <TDocument> MongoCollection<TDocument> getCollection(String collectionName, Class<TDocument> documentClass)
+            getCollectionMethod = lookup.unreflect(mongoDatabaseClass.getMethod("getCollection", String.class, Class.class));
+            mongoCollectionClass = getCollectionMethod.type().returnType();
+            withWriteConcernMethod = lookup.unreflect(mongoCollectionClass.getMethod("withWriteConcern", writeConcernClass));
+            withReadConcernMethod = lookup.unreflect(mongoCollectionClass.getMethod("withReadConcern", readConcernClass));
+            withReadPreferenceMethod = lookup.unreflect(mongoCollectionClass.getMethod("withReadPreference", readPreferenceClass));
+            writeConcernValueOfMethod = lookup.findStatic(writeConcernClass, "valueOf", MethodType.methodType(writeConcernClass, String.class));
+            readConcernLevelFromStringMethod = lookup.findStatic(readConcernLevelClass, "fromString", MethodType.methodType(readConcernLevelClass, String.class));
+            readConcernCtorMethod = lookup.findConstructor(readConcernClass, MethodType.methodType(void.class, readConcernLevelClass));
+            readPreferenceValueOfMethod = lookup.findStatic(readPreferenceClass, "valueOf", MethodType.methodType(readPreferenceClass, String.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("could not setup MongoCollection support for " + mongoDatabaseClass.getName(), e);
+        }
+    }
+
+    Class getMongoCollectionClass() {
+        return mongoCollectionClass;
+    }
+
+    Class getDocumentClass() {
+        return documentClass;
+    }
+
+    Object /* MongoCollection */ collection(String profile, Collection collection, Class documentClass) {
+        final CollectionKey key = new CollectionKey(profile, collection, documentClass);
+        Object result = collections.get(key);
+        if (result == null) {
+            result = create(key);
+            Object previous = collections.putIfAbsent(key, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        collections.clear();
+    }
+
+    private Object create(CollectionKey key) {
+        final Object database = key.database.isEmpty() ?
+                ConnectionServiceAccess.connection(key.profile).unwrap(mongoDatabaseClass) :
+                ((MongoClientConnectionsService) ConnectionServiceAccess.connection(key.profile)).getDatabase(key.database);
+        try {
+            Object result = getCollectionMethod.invoke(database, key.name, key.documentClass);
+            if (!key.writeConcern.isEmpty()) {
+                Object writeConcern = writeConcernValueOfMethod.invoke(key.writeConcern);
+                if (writeConcern == null) {
+                    throw new IllegalArgumentException("unknown writeConcern '" + key.writeConcern + "' specified for collection " + key.name);
+                }
+                result = withWriteConcernMethod.invoke(result, writeConcern);
+            }
+            if (!key.readConcern.isEmpty()) {
+                Object readConcern = readConcernCtorMethod.invoke(readConcernLevelFromStringMethod.invoke(key.readConcern));
+                result = withReadConcernMethod.invoke(result, readConcern);
+            }
+            if (!key.readPreference.isEmpty()) {
+                result = withReadPreferenceMethod.invoke(result, readPreferenceValueOfMethod.invoke(key.readPreference));
+            }
+            return result;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not get collection " + key.name + " from profile " + key.profile, throwable);
+        }
+    }
+
+    private static final class CollectionKey {
+        private final String profile;
+        private final String database;
+        private final String name;
+        private final Class documentClass;
+        private final String writeConcern;
+        private final String readConcern;
+        private final String readPreference;
+        private final int hashCode;
+
+        CollectionKey(String profile, Collection collection, Class documentClass) {
+            this.profile = profile;
+            this.database = collection.database();
+            this.name = collection.value();
+            this.documentClass = documentClass;
+            this.writeConcern = collection.writeConcern();
+            this.readConcern = collection.readConcern();
+            this.readPreference = collection.readPreference();
+            this.hashCode = Objects.hash(profile, database, name, documentClass, writeConcern, readConcern, readPreference);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CollectionKey)) {
+                return false;
+            }
+            CollectionKey other = (CollectionKey) o;
+            return profile.equals(other.profile) &&
+                    database.equals(other.database) &&
+                    name.equals(other.name) &&
+                    documentClass.equals(other.documentClass) &&
+                    writeConcern.equals(other.writeConcern) &&
+                    readConcern.equals(other.readConcern) &&
+                    readPreference.equals(other.readPreference);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -17,26 +17,47 @@
 package org.wildfly.extension.nosql.cdi;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Dependent;
+import javax.enterprise.context.Destroyed;
+import javax.enterprise.context.RequestScoped;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.event.Observes;
 import javax.enterprise.inject.spi.AfterBeanDiscovery;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
 import javax.enterprise.inject.spi.Bean;
 import javax.enterprise.inject.spi.BeanAttributes;
 import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.BeforeShutdown;
 import javax.enterprise.inject.spi.Extension;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.enterprise.inject.spi.InjectionTarget;
 import javax.enterprise.inject.spi.InjectionTargetFactory;
+import javax.enterprise.inject.spi.ProcessInjectionPoint;
+import javax.inject.Named;
 
 import org.jboss.as.server.CurrentServiceContainer;
+import org.jboss.msc.service.ServiceController;
+import org.wildfly.extension.nosql.driver.mongodb.MongoCachedCollection;
+import org.wildfly.extension.nosql.driver.mongodb.MongoChangeEvent;
+import org.wildfly.extension.nosql.driver.mongodb.MongoChangeListener;
+import org.wildfly.extension.nosql.driver.mongodb.MongoClientConnectionsService;
+import org.wildfly.extension.nosql.driver.mongodb.MongoDeadline;
+import org.wildfly.extension.nosql.driver.mongodb.MongoHedgedReader;
+import org.wildfly.extension.nosql.driver.mongodb.MongoOutbox;
+import org.wildfly.extension.nosql.driver.mongodb.MongoWriteBatcher;
 import org.wildfly.extension.nosql.subsystem.mongodb.MongoSubsystemService;
 import org.wildfly.nosql.common.ConnectionServiceAccess;
 import org.wildfly.nosql.common.SubsystemService;
@@ -48,6 +69,23 @@ import org.wildfly.nosql.common.spi.NoSQLConnection;
  * defined by @Inject in application beans
  * Registration will be aborted if user defines her own <code>MongoClient</code> bean or producer
  *
+ * <code>MongoCollection</code> beans are also registered for each <code>@Inject @Named("profile") @Collection("name")</code>
+ * injection point found in the deployment, and <code>MongoDatabase</code> beans for each
+ * <code>@Inject @Named("profile") @Database("name")</code> injection point.
+ *
+ * Changes read by the profile watch declarations are fired as {@link MongoChangeEvent}s to the deployment observers.
+ *
+ * A request scoped, causally consistent <code>ClientSession</code> bean is registered for each profile,
+ * <code>@Inject @Named("profile") ClientSession</code>, if the MongoDB driver supports sessions.
+ *
+ * Profiles that enable tenant routing, register a request scoped <code>MongoDatabase</code> bean, that is resolved with
+ * the deployment {@link TenantResolver}.
+ *
+ * Profiles that enable the near cache, register <code>@Inject @Named("profile") @Collection("name") MongoCachedCollection</code>
+ * beans, that read documents by _id through the profile near cache.
+ *
+ * The default <code>GridFSBucket</code> of the profile database is registered as <code>@Inject @Named("profile") GridFSBucket</code>.
+ *
  * @author Antoine Sabot-Durand
  * @author Scott Marlow
  */
@@ -55,10 +93,24 @@ public class MongoExtension implements Extension {
 
     private final Class mongoClientClass;
     private final Class mongoDatabaseClass;
+    private final MongoCollectionCache collectionCache;
+    private final MongoSessionFactory sessionFactory;
+    private final MongoGridFSBucketCache bucketCache;
+    // one MongoCollection bean is registered per distinct bean type + qualifiers
+    private final Map<List<Object>, CollectionInjection> collectionInjections = new ConcurrentHashMap<>();
+    // one MongoDatabase bean is registered per distinct @Named + @Database qualifiers
+    private final Map<Set<Annotation>, DatabaseInjection> databaseInjections = new ConcurrentHashMap<>();
+    // profiles that were ignored because they are not started, so that each is only logged once
+    private final Set<String> ignoredProfiles = ConcurrentHashMap.newKeySet();
+    // change listeners registered for this deployment, by profile
+    private final Map<String, MongoChangeListener> changeListeners = new ConcurrentHashMap<>();
 
     public MongoExtension(Class mongoClientClass, Class mongoDatabaseClass) {
         this.mongoClientClass = mongoClientClass;
         this.mongoDatabaseClass = mongoDatabaseClass;
+        this.collectionCache = new MongoCollectionCache(mongoDatabaseClass);
+        this.sessionFactory = new MongoSessionFactory(mongoClientClass);
+        this.bucketCache = new MongoGridFSBucketCache(mongoDatabaseClass);
     }
 
     private static final Logger log = Logger.getLogger(MongoExtension.class.getName());
@@ -67,17 +119,267 @@ public class MongoExtension implements Extension {
         if (bm.getBeans(mongoClientClass, DefaultLiteral.INSTANCE).isEmpty()) {
             // Iterate profiles and create Cluster/Session bean for each profile, that application code can @Inject
             for(String profile: getService().profileNames()) {
+                final MongoClientConnectionsService connection = startedConnection(profile);
+                if (connection == null) {
+                    continue;
+                }
                 log.log(Level.INFO, "Registering bean for profile {0}", profile);
                 abd.addBean(bm.createBean(
                         new MongoClientBeanAttributes(bm.createBeanAttributes(bm.createAnnotatedType(mongoClientClass)), profile),
                         mongoClientClass, new MongoClientProducerFactory(profile, mongoClientClass)));
-                abd.addBean(bm.createBean(
-                        new MongoDatabaseBeanAttributes(bm.createBeanAttributes(bm.createAnnotatedType(mongoDatabaseClass)), profile),
-                        mongoDatabaseClass, new MongoDatabaseProducerFactory(profile, mongoDatabaseClass)));
+                if (connection.isTenantRouting()) {
+                    // the tenant database is resolved for each request
+                    abd.addBean(bm.createBean(
+                            new MongoDatabaseBeanAttributes(bm.createBeanAttributes(bm.createAnnotatedType(mongoDatabaseClass)), profile, RequestScoped.class),
+                            mongoDatabaseClass, new TenantDatabaseProducerFactory(profile, bm)));
+                } else {
+                    abd.addBean(bm.createBean(
+                            new MongoDatabaseBeanAttributes(bm.createBeanAttributes(bm.createAnnotatedType(mongoDatabaseClass)), profile, ApplicationScoped.class),
+                            mongoDatabaseClass, new MongoDatabaseProducerFactory(profile, mongoDatabaseClass)));
+                }
             }
          } else {
             log.log(Level.INFO, "Application contains a default MongoClient Bean, automatic registration will be disabled");
         }
+        registerCollectionBeans(abd, bm);
+        registerDatabaseBeans(abd, bm);
+        registerProfileServiceBeans(abd, bm);
+        registerSessionBeans(abd, bm);
+        registerGridFSBucketBeans(abd, bm);
+    }
+
+    <T, X> void collectCollectionInjectionPoints(@Observes ProcessInjectionPoint<T, X> pip) {
+        final InjectionPoint injectionPoint = pip.getInjectionPoint();
+        Collection collection = null;
+        String profile = null;
+        for (Annotation qualifier : injectionPoint.getQualifiers()) {
+            if (qualifier instanceof Collection) {
+                collection = (Collection) qualifier;
+            } else if (qualifier instanceof Named) {
+                profile = ((Named) qualifier).value();
+            }
+        }
+        if (collection == null) {
+            return;
+        }
+        final Type type = injectionPoint.getType();
+        final Class rawType = (Class) (type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type);
+        if (rawType != MongoCachedCollection.class && !rawType.isAssignableFrom(collectionCache.getMongoCollectionClass())) {
+            log.log(Level.WARNING, "Ignoring @Collection({0}) qualifier on injection point {1}, type is not MongoCollection", new Object[]{collection.value(), injectionPoint});
+            return;
+        }
+        if (profile == null) {
+            log.log(Level.WARNING, "Ignoring @Collection({0}) qualifier on injection point {1}, @Named profile is not specified", new Object[]{collection.value(), injectionPoint});
+            return;
+        }
+        Class documentClass = collectionCache.getDocumentClass();
+        if (type instanceof ParameterizedType) {
+            Type documentType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (documentType instanceof Class) {
+                documentClass = (Class) documentType;
+            } else if (documentType instanceof ParameterizedType) {
+                documentClass = (Class) ((ParameterizedType) documentType).getRawType();
+            }
+        }
+        final Set<Annotation> qualifiers = new HashSet<>(injectionPoint.getQualifiers());
+        collectionInjections.putIfAbsent(Arrays.asList(type, qualifiers), new CollectionInjection(profile, collection, documentClass, type, qualifiers));
+    }
+
+    <T, X> void collectDatabaseInjectionPoints(@Observes ProcessInjectionPoint<T, X> pip) {
+        final InjectionPoint injectionPoint = pip.getInjectionPoint();
+        Database database = null;
+        String profile = null;
+        for (Annotation qualifier : injectionPoint.getQualifiers()) {
+            if (qualifier instanceof Database) {
+                database = (Database) qualifier;
+            } else if (qualifier instanceof Named) {
+                profile = ((Named) qualifier).value();
+            }
+        }
+        if (database == null) {
+            return;
+        }
+        if (!(injectionPoint.getType() instanceof Class) || !((Class) injectionPoint.getType()).isAssignableFrom(mongoDatabaseClass)) {
+            log.log(Level.WARNING, "Ignoring @Database({0}) qualifier on injection point {1}, type is not MongoDatabase", new Object[]{database.value(), injectionPoint});
+            return;
+        }
+        if (profile == null) {
+            log.log(Level.WARNING, "Ignoring @Database({0}) qualifier on injection point {1}, @Named profile is not specified", new Object[]{database.value(), injectionPoint});
+            return;
+        }
+        final Set<Annotation> qualifiers = new HashSet<>(injectionPoint.getQualifiers());
+        databaseInjections.putIfAbsent(qualifiers, new DatabaseInjection(profile, database.value(), qualifiers));
+    }
+
+    void registerChangeListeners(@Observes AfterDeploymentValidation adv, final BeanManager bm) {
+        // fire the change events with the deployment classloader
+        final ClassLoader deploymentClassLoader = Thread.currentThread().getContextClassLoader();
+        for (final String profile : getService().profileNames()) {
+            final MongoClientConnectionsService connection = startedConnection(profile);
+            if (connection == null || !connection.hasWatches()) {
+                continue;
+            }
+            final MongoChangeListener listener = new MongoChangeListener() {
+                @Override
+                public void onChange(MongoChangeEvent event) {
+                    final Thread thread = Thread.currentThread();
+                    final ClassLoader previous = thread.getContextClassLoader();
+                    thread.setContextClassLoader(deploymentClassLoader);
+                    try {
+                        bm.fireEvent(event, new NamedLiteral(profile), new CollectionLiteral(event.getCollection(), event.getDatabase()));
+                    } finally {
+                        thread.setContextClassLoader(previous);
+                    }
+                }
+            };
+            connection.addChangeListener(listener);
+            changeListeners.put(profile, listener);
+        }
+    }
+
+    // the request context is destroyed on the request thread, also when the request failed with an unmapped exception,
+    // so a MongoDeadline set for the request (e.g. by the RequestDeadlineFilter) doesn't leak to the next request
+    void clearDeadline(@Observes @Destroyed(RequestScoped.class) Object request) {
+        MongoDeadline.clear();
+    }
+
+    void clearCollectionCache(@Observes BeforeShutdown beforeShutdown) {
+        for (Map.Entry<String, MongoChangeListener> entry : changeListeners.entrySet()) {
+            final MongoClientConnectionsService connection = startedConnection(entry.getKey());
+            if (connection != null) {
+                connection.removeChangeListener(entry.getValue());
+            }
+        }
+        changeListeners.clear();
+        collectionCache.clear();
+        bucketCache.clear();
+    }
+
+    private void registerCollectionBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        final java.util.Collection<String> profiles = getService().profileNames();
+        for (CollectionInjection collectionInjection : collectionInjections.values()) {
+            if (!profiles.contains(collectionInjection.profile)) {
+                log.log(Level.WARNING, "Ignoring @Collection({0}), @Named({1}) does not reference known NoSQL profile name", new Object[]{collectionInjection.collection.value(), collectionInjection.profile});
+                continue;
+            }
+            if (collectionInjection.type == MongoCachedCollection.class) {
+                registerCachedCollectionBean(abd, bm, collectionInjection);
+                continue;
+            }
+            log.log(Level.INFO, "Registering MongoCollection bean {0} for profile {1}", new Object[]{collectionInjection.collection.value(), collectionInjection.profile});
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(collectionInjection.type, collectionInjection.qualifiers),
+                    collectionCache.getMongoCollectionClass(), new MongoCollectionProducerFactory(collectionInjection, collectionCache)));
+        }
+    }
+
+    private void registerCachedCollectionBean(AfterBeanDiscovery abd, BeanManager bm, CollectionInjection collectionInjection) {
+        final MongoClientConnectionsService connection = startedConnection(collectionInjection.profile);
+        if (connection == null) {
+            return;
+        }
+        if (!connection.isNearCache()) {
+            log.log(Level.WARNING, "Ignoring @Collection({0}) MongoCachedCollection, @Named({1}) profile doesn't enable the near cache", new Object[]{collectionInjection.collection.value(), collectionInjection.profile});
+            return;
+        }
+        log.log(Level.INFO, "Registering MongoCachedCollection bean {0} for profile {1}", new Object[]{collectionInjection.collection.value(), collectionInjection.profile});
+        abd.addBean(bm.createBean(
+                new InjectionPointBeanAttributes(MongoCachedCollection.class, collectionInjection.qualifiers),
+                MongoCachedCollection.class, new CachedCollectionProducerFactory(collectionInjection)));
+    }
+
+    private void registerDatabaseBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        final java.util.Collection<String> profiles = getService().profileNames();
+        for (DatabaseInjection databaseInjection : databaseInjections.values()) {
+            if (!profiles.contains(databaseInjection.profile)) {
+                log.log(Level.WARNING, "Ignoring @Database({0}), @Named({1}) does not reference known NoSQL profile name", new Object[]{databaseInjection.database, databaseInjection.profile});
+                continue;
+            }
+            log.log(Level.INFO, "Registering MongoDatabase bean {0} for profile {1}", new Object[]{databaseInjection.database, databaseInjection.profile});
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(mongoDatabaseClass, databaseInjection.qualifiers),
+                    mongoDatabaseClass, new NamedDatabaseProducerFactory(databaseInjection)));
+        }
+    }
+
+    private void registerProfileServiceBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        for (String profile : getService().profileNames()) {
+            final MongoClientConnectionsService connection = startedConnection(profile);
+            if (connection == null) {
+                continue;
+            }
+            if (connection.getWriteBatcher() != null) {
+                registerProfileServiceBean(abd, bm, profile, MongoWriteBatcher.class);
+            }
+            if (connection.getHedgedReader() != null) {
+                registerProfileServiceBean(abd, bm, profile, MongoHedgedReader.class);
+            }
+            if (connection.getOutbox() != null) {
+                registerProfileServiceBean(abd, bm, profile, MongoOutbox.class);
+            }
+        }
+    }
+
+    private void registerProfileServiceBean(AfterBeanDiscovery abd, BeanManager bm, String profile, Class serviceClass) {
+        log.log(Level.INFO, "Registering {0} bean for profile {1}", new Object[]{serviceClass.getSimpleName(), profile});
+        final Set<Annotation> qualifiers = new HashSet<>(Arrays.asList(new NamedLiteral(profile), AnyLiteral.INSTANCE));
+        abd.addBean(bm.createBean(
+                new InjectionPointBeanAttributes(serviceClass, qualifiers),
+                serviceClass, new ProfileServiceProducerFactory(profile, serviceClass)));
+    }
+
+    private void registerSessionBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        if (!sessionFactory.isSupported()) {
+            return;
+        }
+        for (String profile : getService().profileNames()) {
+            if (startedConnection(profile) == null) {
+                continue;
+            }
+            log.log(Level.INFO, "Registering request scoped ClientSession bean for profile {0}", profile);
+            final Set<Annotation> qualifiers = new HashSet<>(Arrays.asList(new NamedLiteral(profile), AnyLiteral.INSTANCE));
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(sessionFactory.getClientSessionClass(), qualifiers, RequestScoped.class),
+                    sessionFactory.getClientSessionClass(), new ClientSessionProducerFactory(profile, mongoClientClass, sessionFactory)));
+        }
+    }
+
+    private void registerGridFSBucketBeans(AfterBeanDiscovery abd, BeanManager bm) {
+        if (!bucketCache.isSupported()) {
+            return;
+        }
+        for (String profile : getService().profileNames()) {
+            final MongoClientConnectionsService connection = startedConnection(profile);
+            if (connection == null || connection.getDatabase() == null) {
+                continue;
+            }
+            log.log(Level.INFO, "Registering GridFSBucket bean for profile {0}", profile);
+            final Set<Annotation> qualifiers = new HashSet<>(Arrays.asList(new NamedLiteral(profile), AnyLiteral.INSTANCE));
+            abd.addBean(bm.createBean(
+                    new InjectionPointBeanAttributes(bucketCache.getGridFSBucketClass(), qualifiers),
+                    bucketCache.getGridFSBucketClass(), new GridFSBucketProducerFactory(profile, bucketCache)));
+        }
+    }
+
+    /**
+     * Bean registration only looks at profiles that are started, a profile that failed to start (or is still starting)
+     * doesn't prevent other deployments from using the other profiles.
+     *
+     * @return the profile connection service or null if the profile is not started.
+     */
+    private MongoClientConnectionsService startedConnection(String profile) {
+        final ServiceController<?> controller = CurrentServiceContainer.getServiceContainer().getService(ConnectionServiceAccess.serviceName(profile));
+        if (controller != null && controller.getState() == ServiceController.State.UP) {
+            try {
+                return (MongoClientConnectionsService) controller.getValue();
+            } catch (IllegalStateException stopped) {
+                // stopped after the state check
+            }
+        }
+        if (ignoredProfiles.add(profile)) {
+            log.log(Level.WARNING, "Ignoring NoSQL profile {0}, the profile is not started", profile);
+        }
+        return null;
     }
 
     private SubsystemService getService() {
@@ -176,10 +478,12 @@ public class MongoExtension implements Extension {
 
         private BeanAttributes<T> delegate;
         private final String profile;
+        private final Class<? extends Annotation> scope;
 
-        MongoDatabaseBeanAttributes(BeanAttributes<T> beanAttributes, String profile) {
+        MongoDatabaseBeanAttributes(BeanAttributes<T> beanAttributes, String profile, Class<? extends Annotation> scope) {
             delegate = beanAttributes;
             this.profile = profile;
+            this.scope = scope;
         }
 
         @Override
@@ -197,7 +501,7 @@ public class MongoExtension implements Extension {
 
         @Override
         public Class<? extends Annotation> getScope() {
-            return ApplicationScoped.class;
+            return scope;
         }
 
         @Override
@@ -260,4 +564,413 @@ public class MongoExtension implements Extension {
         }
     }
 
+    private static class TenantDatabaseProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final String profile;
+        private final BeanManager beanManager;
+        private volatile Bean<?> tenantResolverBean;
+
+        TenantDatabaseProducerFactory(String profile, BeanManager beanManager) {
+            this.profile = profile;
+            this.beanManager = beanManager;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    MongoClientConnectionsService connection = (MongoClientConnectionsService) ConnectionServiceAccess.connection(profile);
+                    String databaseName = resolveDatabase();
+                    if (databaseName != null) {
+                        return (T) connection.getTenantDatabase(databaseName);
+                    }
+                    if (connection.getDatabase() == null) {
+                        // a request scoped bean can't be null
+                        throw new IllegalStateException("TenantResolver didn't return a database for profile " + profile +
+                                " and the profile doesn't specify a database");
+                    }
+                    return (T) connection.getDatabase();
+                }
+
+                @Override
+                public void dispose(T database) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+
+        // the resolver reference is obtained for each request, so that a @Dependent resolver is destroyed after use
+        private String resolveDatabase() {
+            Bean<?> bean = tenantResolverBean;
+            if (bean == null) {
+                Set<Bean<?>> beans = beanManager.getBeans(TenantResolver.class);
+                if (beans.isEmpty()) {
+                    throw new IllegalStateException("profile " + profile + " enables tenant routing but the deployment doesn't contain a TenantResolver bean");
+                }
+                bean = beanManager.resolve(beans);
+                tenantResolverBean = bean;
+            }
+            final CreationalContext<?> creationalContext = beanManager.createCreationalContext(bean);
+            try {
+                return ((TenantResolver) beanManager.getReference(bean, TenantResolver.class, creationalContext)).resolveDatabase(profile);
+            } finally {
+                creationalContext.release();
+            }
+        }
+    }
+
+    private static class CollectionInjection {
+        private final String profile;
+        private final Collection collection;
+        private final Class documentClass;
+        private final Type type;
+        private final Set<Annotation> qualifiers;
+
+        CollectionInjection(String profile, Collection collection, Class documentClass, Type type, Set<Annotation> qualifiers) {
+            this.profile = profile;
+            this.collection = collection;
+            this.documentClass = documentClass;
+            this.type = type;
+            this.qualifiers = qualifiers;
+        }
+    }
+
+    private static class DatabaseInjection {
+        private final String profile;
+        private final String database;
+        private final Set<Annotation> qualifiers;
+
+        DatabaseInjection(String profile, String database, Set<Annotation> qualifiers) {
+            this.profile = profile;
+            this.database = database;
+            this.qualifiers = qualifiers;
+        }
+    }
+
+    private static class InjectionPointBeanAttributes<T> implements BeanAttributes<T> {
+
+        private final Set<Type> types;
+        private final Set<Annotation> qualifiers;
+        private final Class<? extends Annotation> scope;
+
+        InjectionPointBeanAttributes(Type type, Set<Annotation> qualifiers) {
+            // MongoCollection/MongoDatabase instances are thread safe and cached, so there is no
+            // need for a client proxy in front of each invocation.
+            this(type, qualifiers, Dependent.class);
+        }
+
+        InjectionPointBeanAttributes(Type type, Set<Annotation> qualifiers, Class<? extends Annotation> scope) {
+            this.types = new HashSet<>(Arrays.asList(type, Object.class));
+            this.qualifiers = qualifiers;
+            this.scope = scope;
+        }
+
+        @Override
+        public String getName() {
+            return null;
+        }
+
+        @Override
+        public Set<Annotation> getQualifiers() {
+            return qualifiers;
+        }
+
+        @Override
+        public Class<? extends Annotation> getScope() {
+            return scope;
+        }
+
+        @Override
+        public Set<Class<? extends Annotation>> getStereotypes() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Set<Type> getTypes() {
+            return types;
+        }
+
+        @Override
+        public boolean isAlternative() {
+            return false;
+        }
+    }
+
+    private static class MongoCollectionProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final CollectionInjection collectionInjection;
+        private final MongoCollectionCache collectionCache;
+
+        MongoCollectionProducerFactory(CollectionInjection collectionInjection, MongoCollectionCache collectionCache) {
+            this.collectionInjection = collectionInjection;
+            this.collectionCache = collectionCache;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return (T) collectionCache.collection(collectionInjection.profile, collectionInjection.collection, collectionInjection.documentClass);
+                }
+
+                @Override
+                public void dispose(T collection) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class CachedCollectionProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final CollectionInjection collectionInjection;
+
+        CachedCollectionProducerFactory(CollectionInjection collectionInjection) {
+            this.collectionInjection = collectionInjection;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return (T) ((MongoClientConnectionsService) ConnectionServiceAccess.connection(collectionInjection.profile))
+                            .getCachedCollection(collectionInjection.collection.database(), collectionInjection.collection.value());
+                }
+
+                @Override
+                public void dispose(T collection) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class NamedDatabaseProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final DatabaseInjection databaseInjection;
+
+        NamedDatabaseProducerFactory(DatabaseInjection databaseInjection) {
+            this.databaseInjection = databaseInjection;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    MongoClientConnectionsService connection = (MongoClientConnectionsService) ConnectionServiceAccess.connection(databaseInjection.profile);
+                    return (T) connection.getDatabase(databaseInjection.database);
+                }
+
+                @Override
+                public void dispose(T database) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class ProfileServiceProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final String profile;
+        private final Class<T> serviceClass;
+
+        ProfileServiceProducerFactory(String profile, Class<T> serviceClass) {
+            this.profile = profile;
+            this.serviceClass = serviceClass;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return ConnectionServiceAccess.connection(profile).unwrap(serviceClass);
+                }
+
+                @Override
+                public void dispose(T service) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class GridFSBucketProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final String profile;
+        private final MongoGridFSBucketCache bucketCache;
+
+        GridFSBucketProducerFactory(String profile, MongoGridFSBucketCache bucketCache) {
+            this.profile = profile;
+            this.bucketCache = bucketCache;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return (T) bucketCache.bucket(profile);
+                }
+
+                @Override
+                public void dispose(T bucket) {
+
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
+    private static class ClientSessionProducerFactory<T>
+            implements InjectionTargetFactory<T> {
+        private final String profile;
+        private final Class mongoClientClass;
+        private final MongoSessionFactory sessionFactory;
+
+        ClientSessionProducerFactory(String profile, Class mongoClientClass, MongoSessionFactory sessionFactory) {
+            this.profile = profile;
+            this.mongoClientClass = mongoClientClass;
+            this.sessionFactory = sessionFactory;
+        }
+
+        @Override
+        public InjectionTarget<T> createInjectionTarget(Bean<T> bean) {
+            return new InjectionTarget<T>() {
+                @Override
+                public void inject(T instance, CreationalContext<T> ctx) {
+                }
+
+                @Override
+                public void postConstruct(T instance) {
+                }
+
+                @Override
+                public void preDestroy(T instance) {
+                }
+
+                @Override
+                public T produce(CreationalContext<T> ctx) {
+                    return (T) sessionFactory.startSession(ConnectionServiceAccess.connection(profile).unwrap(mongoClientClass));
+                }
+
+                @Override
+                public void dispose(T session) {
+                    // the session ends with the request
+                    sessionFactory.close(session);
+                }
+
+                @Override
+                public Set<InjectionPoint> getInjectionPoints() {
+                    return Collections.EMPTY_SET;
+                }
+            };
+        }
+    }
+
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * MongoGridFSBucketCache holds the default <code>GridFSBucket</code> ("fs") of each profile database, that is injected with
+ * <code>@Inject @Named("profile") GridFSBucket</code>.  GridFSBucket instances are thread safe, so they are shared by all
+ * injection points of the profile.
+ *
+ * GridFSBucket requires MongoDB driver 3.1 or later, {@link #isSupported} is false for earlier drivers.
+ */
+class MongoGridFSBucketCache {
+
+    private static final String GRIDFSBUCKETSCLASS = "com.mongodb.client.gridfs.GridFSBuckets";
+    private static final String GRIDFSBUCKETCLASS = "com.mongodb.client.gridfs.GridFSBucket";
+
+    private final ConcurrentMap<String, Object> buckets = new ConcurrentHashMap<>();
+
+    private final Class mongoDatabaseClass;
+    private final Class gridFSBucketClass;
+    private final MethodHandle createMethod;
+
+    MongoGridFSBucketCache(Class mongoDatabaseClass) {
+        this.mongoDatabaseClass = mongoDatabaseClass;
+        final ClassLoader classLoader = mongoDatabaseClass.getClassLoader();
+        Class bucketClass = null;
+        MethodHandle create = null;
+        try {
+            bucketClass = classLoader.loadClass(GRIDFSBUCKETCLASS);
+            // public static GridFSBucket create(MongoDatabase database)
+            create = MethodHandles.publicLookup().findStatic(classLoader.loadClass(GRIDFSBUCKETSCLASS), "create",
+                    MethodType.methodType(bucketClass, mongoDatabaseClass));
+        } catch (ClassNotFoundException | NoSuchMethodException expected) {
+            // MongoDB driver doesn't support GridFSBucket
+            bucketClass = null;
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("could not setup GridFSBucket support for " + mongoDatabaseClass.getName(), e);
+        }
+        this.gridFSBucketClass = bucketClass;
+        this.createMethod = create;
+    }
+
+    boolean isSupported() {
+        return gridFSBucketClass != null;
+    }
+
+    Class getGridFSBucketClass() {
+        return gridFSBucketClass;
+    }
+
+    Object /* GridFSBucket */ bucket(String profile) {
+        Object result = buckets.get(profile);
+        if (result == null) {
+            result = create(profile);
+            Object previous = buckets.putIfAbsent(profile, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+
+    private Object create(String profile) {
+        final Object database = ConnectionServiceAccess.connection(profile).unwrap(mongoDatabaseClass);
+        try {
+            return createMethod.invoke(database);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not create GridFSBucket for profile " + profile, throwable);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * MongoSessionFactory starts the causally consistent <code>ClientSession</code> instances, that are injected with
+ * request scope.  ClientSession requires MongoDB driver 3.8 or later, {@link #isSupported} is false for earlier drivers.
+ */
+class MongoSessionFactory {
+
+    private static final String CLIENTSESSIONCLASS = "com.mongodb.client.ClientSession";
+    private static final String CLIENTSESSIONOPTIONSCLASS = "com.mongodb.ClientSessionOptions";
+
+    private final Class clientSessionClass;
+    private final MethodHandle startSessionMethod;
+    private final MethodHandle closeMethod;
+    private final Object /* ClientSessionOptions */ causallyConsistentOptions;
+
+    MongoSessionFactory(Class mongoClientClass) {
+        final ClassLoader classLoader = mongoClientClass.getClassLoader();
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        Class sessionClass = null;
+        MethodHandle startSession = null;
+        MethodHandle close = null;
+        Object options = null;
+        try {
+            sessionClass = classLoader.loadClass(CLIENTSESSIONCLASS);
+            Class optionsClass = classLoader.loadClass(CLIENTSESSIONOPTIONSCLASS);
+            // ClientSessionOptions.builder().causallyConsistent(true).build()
+            Object builder = lookup.unreflect(optionsClass.getMethod("builder")).invoke();
+            lookup.unreflect(builder.getClass().getMethod("causallyConsistent", boolean.class)).invoke(builder, true);
+            options = lookup.unreflect(builder.getClass().getMethod("build")).invoke(builder);
+            // ClientSession startSession(ClientSessionOptions options)
+            startSession = lookup.unreflect(mongoClientClass.getMethod("startSession", optionsClass));
+            close = lookup.unreflect(sessionClass.getMethod("close"));
+        } catch (ClassNotFoundException | NoSuchMethodException expected) {
+            // MongoDB driver doesn't support ClientSession
+            sessionClass = null;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not setup ClientSession support for " + mongoClientClass.getName(), throwable);
+        }
+        clientSessionClass = sessionClass;
+        startSessionMethod = startSession;
+        closeMethod = close;
+        causallyConsistentOptions = options;
+    }
+
+    boolean isSupported() {
+        return clientSessionClass != null;
+    }
+
+    Class getClientSessionClass() {
+        return clientSessionClass;
+    }
+
+    Object /* ClientSession */ startSession(Object /* MongoClient */ client) {
+        try {
+            return startSessionMethod.invoke(client, causallyConsistentOptions);
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not start MongoDB ClientSession", throwable);
+        }
+    }
+
+    void close(Object /* ClientSession */ session) {
+        try {
+            closeMethod.invoke(session);
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not close MongoDB ClientSession", throwable);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.cdi;
+
+/**
+ * TenantResolver is implemented by a deployment bean, to pick the tenant database of the current request, for the
+ * MongoDB profiles that enable tenant routing (tenant-cache-size).  The <code>@Named("profile") MongoDatabase</code> bean
+ * of such a profile is request scoped and is resolved through the TenantResolver.
+ *
+ * Ex:
+ * <pre>
+ *    &#064;ApplicationScoped
+ *    public class HeaderTenantResolver implements TenantResolver {
+ *        &#064;Inject HttpServletRequest request;
+ *
+ *        public String resolveDatabase(String profile) {
+ *            return "tenant_" + request.getHeader("X-Tenant");
+ *        }
+ *    }
+ * </pre>
+ */
+public interface TenantResolver {
+
+    /**
+     * @param profile is the MongoDB profile name.
+     * @return database name of the current tenant or null to use the profile database.
+     */
+    String resolveDatabase(String profile);
+}
@@ -16,6 +16,11 @@
 
 package org.wildfly.extension.nosql.driver.mongodb;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.wildfly.extension.nosql.driver.mongodb.transaction.TransactionEnlistmentType;
+
 /**
  * ConfigurationBuilder
  *
@@ -25,6 +30,7 @@ public class ConfigurationBuilder {
 
     private String JNDIName;
     private String database;
+    private final List<String> databases = new ArrayList<>();
     private String adminDatabase;
     private String description;
     private static final String defaultModuleName = "org.mongodb.driver";
@@ -36,6 +42,22 @@ public class ConfigurationBuilder {
     private AuthType authType;
     private boolean SSL;
     private String replicaSet;
+    private int writeBatchSize;  // zero means write batching is disabled
+    private long writeBatchLinger = 10;
+    private boolean writeBatchOrdered;
+    private int writeBatchCapacity = 10000;
+    private TransactionEnlistmentType transactionEnlistment;
+    private IndexPolicy indexPolicy = IndexPolicy.CREATE;
+    private int hedgePercentile;  // zero means hedged reads are disabled
+    private int hedgeMaxRate = 10;
+    private String hedgeReadPreference = "secondaryPreferred";
+    private long operationTimeout;  // zero means operations are not bounded
+    private int tenantCacheSize;  // zero means tenant routing is disabled
+    private int outboxSegmentSize;  // zero means the outbox is disabled
+    private int outboxBatchSize = 500;
+    private int nearCacheSize;  // zero means the near cache is disabled
+    private long nearCacheTtl = 60000;
+    private final List<WatchConfiguration> watches = new ArrayList<>();
 
     public AuthType getAuthType() {
         return authType;
@@ -82,6 +104,18 @@ public class ConfigurationBuilder {
         return this;
     }
 
+    /**
+     * @return additional database names, that share the profile MongoClient.
+     */
+    public List<String> getDatabases() {
+        return databases;
+    }
+
+    public ConfigurationBuilder addDatabase(String database) {
+        this.databases.add(database);
+        return this;
+    }
+
     public String getAdminDatabase() {
         return adminDatabase;
     }
@@ -134,4 +168,170 @@ public class ConfigurationBuilder {
         this.replicaSet = replicaSet;
     }
 
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public ConfigurationBuilder setWriteBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+        return this;
+    }
+
+    public long getWriteBatchLinger() {
+        return writeBatchLinger;
+    }
+
+    public ConfigurationBuilder setWriteBatchLinger(long writeBatchLinger) {
+        this.writeBatchLinger = writeBatchLinger;
+        return this;
+    }
+
+    public boolean isWriteBatchOrdered() {
+        return writeBatchOrdered;
+    }
+
+    public ConfigurationBuilder setWriteBatchOrdered(boolean writeBatchOrdered) {
+        this.writeBatchOrdered = writeBatchOrdered;
+        return this;
+    }
+
+    public int getWriteBatchCapacity() {
+        return writeBatchCapacity;
+    }
+
+    public ConfigurationBuilder setWriteBatchCapacity(int writeBatchCapacity) {
+        this.writeBatchCapacity = writeBatchCapacity;
+        return this;
+    }
+
+    public List<WatchConfiguration> getWatches() {
+        return watches;
+    }
+
+    public ConfigurationBuilder addWatch(String name, String database, String collection, String fullDocument) {
+        watches.add(new WatchConfiguration(name, database, collection, fullDocument));
+        return this;
+    }
+
+    public void setTransactionEnlistment(TransactionEnlistmentType transactionEnlistment) {
+        this.transactionEnlistment = transactionEnlistment;
+    }
+
+    public TransactionEnlistmentType getTransactionEnlistment() {
+        return transactionEnlistment;
+    }
+
+    public IndexPolicy getIndexPolicy() {
+        return indexPolicy;
+    }
+
+    public void setIndexPolicy(IndexPolicy indexPolicy) {
+        this.indexPolicy = indexPolicy;
+    }
+
+    public int getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(int hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public int getHedgeMaxRate() {
+        return hedgeMaxRate;
+    }
+
+    public void setHedgeMaxRate(int hedgeMaxRate) {
+        this.hedgeMaxRate = hedgeMaxRate;
+    }
+
+    public String getHedgeReadPreference() {
+        return hedgeReadPreference;
+    }
+
+    public void setHedgeReadPreference(String hedgeReadPreference) {
+        this.hedgeReadPreference = hedgeReadPreference;
+    }
+
+    public long getOperationTimeout() {
+        return operationTimeout;
+    }
+
+    public void setOperationTimeout(long operationTimeout) {
+        this.operationTimeout = operationTimeout;
+    }
+
+    public int getTenantCacheSize() {
+        return tenantCacheSize;
+    }
+
+    public void setTenantCacheSize(int tenantCacheSize) {
+        this.tenantCacheSize = tenantCacheSize;
+    }
+
+    public int getOutboxSegmentSize() {
+        return outboxSegmentSize;
+    }
+
+    public void setOutboxSegmentSize(int outboxSegmentSize) {
+        this.outboxSegmentSize = outboxSegmentSize;
+    }
+
+    public int getOutboxBatchSize() {
+        return outboxBatchSize;
+    }
+
+    public void setOutboxBatchSize(int outboxBatchSize) {
+        this.outboxBatchSize = outboxBatchSize;
+    }
+
+    public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    public void setNearCacheSize(int nearCacheSize) {
+        this.nearCacheSize = nearCacheSize;
+    }
+
+    public long getNearCacheTtl() {
+        return nearCacheTtl;
+    }
+
+    public void setNearCacheTtl(long nearCacheTtl) {
+        this.nearCacheTtl = nearCacheTtl;
+    }
+
+    /**
+     * WatchConfiguration is a collection change stream that is delivered as CDI events.
+     */
+    public static final class WatchConfiguration {
+        private final String name;
+        private final String database;  // null means the profile database
+        private final String collection;
+        private final String fullDocument;
+
+        WatchConfiguration(String name, String database, String collection, String fullDocument) {
+            this.name = name;
+            this.database = database;
+            this.collection = collection;
+            this.fullDocument = fullDocument;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public String getFullDocument() {
+            return fullDocument;
+        }
+    }
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.TransactionManager;
+
+/**
+ * DeadlineProxy proxies a MongoDatabase or MongoCollection, so that the cursor operations (find, aggregate, distinct,
+ * mapReduce) are bounded with <code>maxTime</code>, the lower of the profile operation-timeout and the time left before
+ * the {@link MongoDeadline} of the current invocation.
+ *
+ * Returned MongoDatabase/MongoCollection instances (e.g. from getCollection or withWriteConcern) are also proxied.
+ */
+class DeadlineProxy implements InvocationHandler {
+
+    private static final String MONGODATABASECLASS = "com.mongodb.client.MongoDatabase";
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final Method NO_MAXTIME_METHOD;
+
+    static {
+        try {
+            NO_MAXTIME_METHOD = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final Object underlying;
+    private final Support support;
+
+    private DeadlineProxy(Object underlying, Support support) {
+        this.underlying = underlying;
+        this.support = support;
+    }
+
+    /**
+     * @return Support that wraps the profile MongoDatabase instances, so that the operation timeout is applied
+     */
+    static Support support(ClassLoader classLoader, long operationTimeout, TransactionManager transactionManager) throws ClassNotFoundException {
+        return new Support(classLoader, operationTimeout, transactionManager);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return method.invoke(underlying, args);
+        }
+        try {
+            final Object result = method.invoke(underlying, args);
+            final Method maxTimeMethod = support.maxTimeMethod(method.getReturnType());
+            if (maxTimeMethod != null && result != null) {
+                return maxTimeMethod.invoke(result, support.maxTime(), TimeUnit.MILLISECONDS);
+            }
+            return support.wrapResult(result);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static class Support {
+        private final Class mongoDatabaseClass;
+        private final Class mongoCollectionClass;
+        private final long operationTimeout;
+        private final TransactionManager transactionManager;
+        // returned interface type to its maxTime(long, TimeUnit) method, or NO_MAXTIME_METHOD
+        private final Map<Class, Method> maxTimeMethods = new ConcurrentHashMap<>();
+
+        Support(ClassLoader classLoader, long operationTimeout, TransactionManager transactionManager) throws ClassNotFoundException {
+            this.mongoDatabaseClass = classLoader.loadClass(MONGODATABASECLASS);
+            this.mongoCollectionClass = classLoader.loadClass(MONGOCOLLECTIONCLASS);
+            this.operationTimeout = operationTimeout;
+            this.transactionManager = transactionManager;
+        }
+
+        /**
+         * @return MongoDatabase proxy that applies the operation timeout
+         */
+        Object /* MongoDatabase */ wrap(Object database) {
+            return wrapResult(database);
+        }
+
+        private Object wrapResult(Object result) {
+            if (result == null || (Proxy.isProxyClass(result.getClass()) && Proxy.getInvocationHandler(result) instanceof DeadlineProxy)) {
+                return result;
+            }
+            if (mongoCollectionClass.isInstance(result)) {
+                return Proxy.newProxyInstance(mongoCollectionClass.getClassLoader(), new Class[] {mongoCollectionClass}, new DeadlineProxy(result, this));
+            }
+            if (mongoDatabaseClass.isInstance(result)) {
+                return Proxy.newProxyInstance(mongoDatabaseClass.getClassLoader(), new Class[] {mongoDatabaseClass}, new DeadlineProxy(result, this));
+            }
+            return result;
+        }
+
+        Method maxTimeMethod(Class returnType) {
+            Method result = maxTimeMethods.get(returnType);
+            if (result == null) {
+                try {
+                    result = returnType.getMethod("maxTime", long.class, TimeUnit.class);
+                } catch (NoSuchMethodException e) {
+                    result = NO_MAXTIME_METHOD;
+                }
+                maxTimeMethods.put(returnType, result);
+            }
+            return result != NO_MAXTIME_METHOD ? result : null;
+        }
+
+        long maxTime() {
+            final long remaining = MongoDeadline.remainingMillis(transactionManager);
+            return remaining > 0 ? Math.min(remaining, operationTimeout) : operationTimeout;
+        }
+    }
+}
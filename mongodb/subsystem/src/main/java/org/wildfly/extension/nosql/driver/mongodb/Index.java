@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a MongoDB index that a deployment requires.  Declared indexes are created or verified (see {@link IndexPolicy})
+ * against the profile database before the deployment completes.
+ *
+ * Ex:
+ * <code>@Index(profile = "MyMongoDB", collection = "orders", keys = {"customerId:1", "createdAt:-1"})</code>
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+@Repeatable(Indexes.class)
+public @interface Index {
+
+    /**
+     * @return MongoDB profile name (id)
+     */
+    String profile();
+
+    /**
+     * @return name of one of the profile databases, empty string means the profile database.
+     */
+    String database() default "";
+
+    /**
+     * @return collection name
+     */
+    String collection();
+
+    /**
+     * @return index keys in order, as field:type where type is 1, -1, text, hashed, 2d or 2dsphere (Ex: "createdAt:-1")
+     */
+    String[] keys();
+
+    /**
+     * @return index name, empty string means the MongoDB generated name.
+     */
+    String name() default "";
+
+    boolean unique() default false;
+
+    boolean sparse() default false;
+
+    /**
+     * @return time to live in seconds for TTL indexes, negative means not a TTL index.
+     */
+    long expireAfterSeconds() default -1;
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+/**
+ * IndexPolicy controls what happens at deployment time, when an index declared with {@link Index} is missing or
+ * doesn't match the existing index.
+ */
+public enum IndexPolicy {
+    CREATE,     // create missing indexes, log a warning for mismatched indexes
+    WARN,       // log a warning for missing + mismatched indexes
+    FAIL        // fail the deployment for missing + mismatched indexes
+}
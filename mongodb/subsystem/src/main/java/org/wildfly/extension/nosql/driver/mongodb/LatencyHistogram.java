@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram is a lock free histogram of latencies, with power of two microsecond buckets.
+ *
+ * Percentiles are reported as the upper bound of the bucket that contains the percentile, which is accurate
+ * within a factor of two, that is good enough for spotting latency changes without any allocation per recording.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 40;  // 2^39 microseconds is about 6 days
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long duration, TimeUnit unit) {
+        final long micros = Math.max(0, unit.toMicros(duration));
+        buckets.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return mean latency in microseconds
+     */
+    public long getMean() {
+        final long samples = count.get();
+        return samples > 0 ? totalMicros.get() / samples : 0;
+    }
+
+    /**
+     * @return max latency in microseconds
+     */
+    public long getMax() {
+        return maxMicros.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return latency in microseconds that percentile of the recorded latencies are less than or equal to, zero if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        final long samples = count.get();
+        if (samples == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(samples * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= target) {
+                return Math.min(1L << bucket, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int bucket(long micros) {
+        // bucket n holds latencies in (2^(n-1), 2^n] microseconds
+        final int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * MongoCachedCollection is a read-through near cache view of a collection, for lookups by <code>_id</code> on small,
+ * frequently read collections.
+ *
+ * Found documents are kept as their BSON bytes (<code>RawBsonDocument</code>), at most <code>near-cache-size</code>
+ * documents per collection (least recently used are evicted), for <code>near-cache-ttl</code> milliseconds.
+ * Writes to the collection through the profile (MongoDatabase/MongoCollection, write batcher, outbox) and changes read by
+ * the profile change stream watches invalidate the collection entries.  Lookups within a JTA transaction of a
+ * transaction=1pc profile are not cached.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyMongoDB") @Collection("countries") MongoCachedCollection countries;</code>
+ * <code>RawBsonDocument country = (RawBsonDocument) countries.findById("NL");</code>
+ */
+public class MongoCachedCollection {
+
+    private final String name;
+    private final Object /* MongoCollection<RawBsonDocument> */ collection;
+    private final MongoNearCache nearCache;
+    private final Map<Object, Entry> entries;
+    // incremented by each invalidation, so that a document read before an invalidation isn't cached after it
+    private long generation;
+
+    MongoCachedCollection(String name, Object collection, MongoNearCache nearCache, final int maxSize) {
+        this.name = name;
+        this.collection = collection;
+        this.nearCache = nearCache;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param id is the document _id value (e.g. ObjectId, String)
+     * @return <code>RawBsonDocument</code> with the _id or null if there is none.
+     */
+    public Object /* RawBsonDocument */ findById(Object id) {
+        Objects.requireNonNull(id, "id");
+        if (nearCache.inTransaction()) {
+            // read with the JTA transaction ClientSession, which may see uncommitted writes that must not be cached
+            return nearCache.find(collection, id);
+        }
+        final long readGeneration;
+        synchronized (this) {
+            final Entry entry = entries.get(id);
+            if (entry != null) {
+                if (entry.expires - System.nanoTime() > 0) {
+                    nearCache.hit();
+                    return nearCache.rawDocument(entry.bytes);
+                }
+                entries.remove(id);
+            }
+            readGeneration = generation;
+        }
+        nearCache.miss();
+        final Object document = nearCache.find(collection, id);
+        if (document != null) {
+            final ByteBuffer buffer = nearCache.byteBuffer(document);
+            // exact size copy, the document buffer may be a slice of a larger buffer
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            synchronized (this) {
+                if (generation == readGeneration) {
+                    entries.put(id, new Entry(bytes, System.nanoTime() + nearCache.getTtlNanos()));
+                }
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Remove the document with the _id from the near cache.
+     */
+    public synchronized void invalidate(Object id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    /**
+     * Remove all documents of the collection from the near cache.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final long expires;
+
+        Entry(byte[] bytes, long expires) {
+            this.bytes = bytes;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+/**
+ * MongoChangeEvent is a change read from a MongoDB collection change stream, that is fired as CDI event with the
+ * profile <code>@Named</code> and the collection <code>@Collection</code> qualifiers.
+ *
+ * Ex:
+ * <code>void onOrderChange(@Observes @Named("MyMongoDB") @Collection("orders") MongoChangeEvent event)</code>
+ *
+ * Events are delivered in change stream order, at least once.  After a server restart, the change stream
+ * resumes after the last checkpointed change, so recently delivered changes may be delivered again.
+ */
+public class MongoChangeEvent {
+
+    private final String profile;
+    private final String watch;
+    private final String database;
+    private final String collection;
+    private final String operationType;
+    private final Object /* BsonDocument */ documentKey;
+    private final Object fullDocument;
+    private final Object /* ChangeStreamDocument */ changeStreamDocument;
+
+    MongoChangeEvent(String profile, String watch, String database, String collection, String operationType,
+                     Object documentKey, Object fullDocument, Object changeStreamDocument) {
+        this.profile = profile;
+        this.watch = watch;
+        this.database = database;
+        this.collection = collection;
+        this.operationType = operationType;
+        this.documentKey = documentKey;
+        this.fullDocument = fullDocument;
+        this.changeStreamDocument = changeStreamDocument;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return name of the watch declaration that read the change
+     */
+    public String getWatch() {
+        return watch;
+    }
+
+    /**
+     * @return name of the database, or null for the profile database
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * @return change operation type (e.g. insert, update, replace, delete)
+     */
+    public String getOperationType() {
+        return operationType;
+    }
+
+    /**
+     * @return <code>BsonDocument</code> that identifies the changed document
+     */
+    public Object getDocumentKey() {
+        return documentKey;
+    }
+
+    /**
+     * @return the changed document, may be null depending on the operation type and the watch full-document setting
+     */
+    public Object getFullDocument() {
+        return fullDocument;
+    }
+
+    /**
+     * @return the driver <code>ChangeStreamDocument</code>
+     */
+    public Object getChangeStreamDocument() {
+        return changeStreamDocument;
+    }
+
+    @Override
+    public String toString() {
+        return "MongoChangeEvent{" + profile + "/" + collection + " " + operationType + " " + documentKey + "}";
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import static org.wildfly.extension.nosql.driver.mongodb.MongoLogger.ROOT_LOGGER;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MongoChangeStreamWatcher reads the change stream of one collection and dispatches each change to the
+ * registered {@link MongoChangeListener}s.
+ *
+ * The reader task hands changes to the dispatcher task through a bounded queue, so a slow listener applies back pressure
+ * to the change stream instead of buffering without limit, and changes are delivered in change stream order.
+ * The resume token of the last delivered change is checkpointed to a local file, so that after a restart the
+ * change stream continues where it left off.  Changes are only taken from the queue while a deployment listener is
+ * registered, so the changes read before the deployments start (or after they are undeployed) are not lost, they are
+ * delivered once a deployment registers a listener, or read again from the checkpoint after a restart.
+ *
+ * Change streams require MongoDB driver 3.6 or later.
+ */
+class MongoChangeStreamWatcher {
+
+    private static final String MONGODATABASECLASS = "com.mongodb.client.MongoDatabase";
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final String CHANGESTREAMITERABLECLASS = "com.mongodb.client.ChangeStreamIterable";
+    private static final String CHANGESTREAMDOCUMENTCLASS = "com.mongodb.client.model.changestream.ChangeStreamDocument";
+    private static final String FULLDOCUMENTCLASS = "com.mongodb.client.model.changestream.FullDocument";
+    private static final String OPERATIONTYPECLASS = "com.mongodb.client.model.changestream.OperationType";
+    private static final String MONGOCURSORCLASS = "com.mongodb.client.MongoCursor";
+    private static final String BSONDOCUMENTCLASS = "org.bson.BsonDocument";
+
+    private static final int DISPATCH_QUEUE_SIZE = 1000;
+    private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final long LISTENER_WAIT = 100;
+    private static final long MAX_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final String profile;
+    private final ConfigurationBuilder.WatchConfiguration watch;
+    private final Object /* MongoDatabase */ database;
+    private final List<MongoChangeListener> listeners;
+    private final Path checkpointFile;
+    private final BlockingQueue<Object> dispatchQueue = new ArrayBlockingQueue<>(DISPATCH_QUEUE_SIZE);
+
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle watchMethod;
+    private final MethodHandle fullDocumentMethod;
+    private final MethodHandle fullDocumentFromStringMethod;
+    private final MethodHandle resumeAfterMethod;
+    private final MethodHandle iteratorMethod;
+    private final MethodHandle tryNextMethod;
+    private final MethodHandle closeMethod;
+    private final MethodHandle getResumeTokenMethod;
+    private final MethodHandle getOperationTypeMethod;
+    private final MethodHandle getOperationTypeValueMethod;
+    private final MethodHandle getDocumentKeyMethod;
+    private final MethodHandle getFullDocumentMethod;
+    private final MethodHandle bsonDocumentParseMethod;
+    private final MethodHandle toJsonMethod;
+
+    private volatile boolean running;
+    private volatile Object /* BsonDocument */ lastReadToken;
+    private volatile Object /* BsonDocument */ lastDeliveredToken;
+    private Object /* BsonDocument */ lastCheckpointedToken;
+    private long lastCheckpoint;
+
+    private final Runnable reader = new Runnable() {
+        @Override
+        public void run() {
+            read();
+        }
+    };
+
+    private final Runnable dispatcher = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    /**
+     * @throws ReflectiveOperationException if the MongoDB driver doesn't support change streams
+     */
+    MongoChangeStreamWatcher(String profile, ConfigurationBuilder.WatchConfiguration watch, Object database,
+                             List<MongoChangeListener> listeners, Path checkpointFile) throws ReflectiveOperationException {
+        this.profile = profile;
+        this.watch = watch;
+        this.database = database;
+        this.listeners = listeners;
+        this.checkpointFile = checkpointFile;
+
+        final ClassLoader classLoader = database.getClass().getClassLoader();
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final Class mongoDatabaseClass = classLoader.loadClass(MONGODATABASECLASS);
+        final Class mongoCollectionClass = classLoader.loadClass(MONGOCOLLECTIONCLASS);
+        final Class changeStreamIterableClass = classLoader.loadClass(CHANGESTREAMITERABLECLASS);
+        final Class changeStreamDocumentClass = classLoader.loadClass(CHANGESTREAMDOCUMENTCLASS);
+        final Class fullDocumentClass = classLoader.loadClass(FULLDOCUMENTCLASS);
+        final Class operationTypeClass = classLoader.loadClass(OPERATIONTYPECLASS);
+        final Class mongoCursorClass = classLoader.loadClass(MONGOCURSORCLASS);
+        final Class bsonDocumentClass = classLoader.loadClass(BSONDOCUMENTCLASS);
+
+        getCollectionMethod = lookup.unreflect(mongoDatabaseClass.getMethod("getCollection", String.class));
+        watchMethod = lookup.unreflect(mongoCollectionClass.getMethod("watch"));
+        fullDocumentMethod = lookup.unreflect(changeStreamIterableClass.getMethod("fullDocument", fullDocumentClass));
+        fullDocumentFromStringMethod = lookup.unreflect(fullDocumentClass.getMethod("fromString", String.class));
+        resumeAfterMethod = lookup.unreflect(changeStreamIterableClass.getMethod("resumeAfter", bsonDocumentClass));
+        iteratorMethod = lookup.unreflect(changeStreamIterableClass.getMethod("iterator"));
+        tryNextMethod = lookup.unreflect(mongoCursorClass.getMethod("tryNext"));
+        closeMethod = lookup.unreflect(mongoCursorClass.getMethod("close"));
+        getResumeTokenMethod = lookup.unreflect(changeStreamDocumentClass.getMethod("getResumeToken"));
+        getOperationTypeMethod = lookup.unreflect(changeStreamDocumentClass.getMethod("getOperationType"));
+        getOperationTypeValueMethod = lookup.unreflect(operationTypeClass.getMethod("getValue"));
+        getDocumentKeyMethod = lookup.unreflect(changeStreamDocumentClass.getMethod("getDocumentKey"));
+        getFullDocumentMethod = lookup.unreflect(changeStreamDocumentClass.getMethod("getFullDocument"));
+        bsonDocumentParseMethod = lookup.unreflect(bsonDocumentClass.getMethod("parse", String.class));
+        toJsonMethod = lookup.unreflect(bsonDocumentClass.getMethod("toJson"));
+    }
+
+    void start(ExecutorService executor) {
+        running = true;
+        lastReadToken = lastCheckpointedToken = readCheckpoint();
+        executor.execute(reader);
+        executor.execute(dispatcher);
+    }
+
+    /**
+     * Stop reading the change stream, the caller is expected to interrupt the tasks and then call {@link #checkpoint(boolean)}.
+     */
+    void stop() {
+        running = false;
+    }
+
+    private void read() {
+        long retryDelay = 100;
+        while (running) {
+            Object cursor = null;
+            try {
+                Object iterable = watchMethod.invoke(getCollectionMethod.invoke(database, watch.getCollection()));
+                if (watch.getFullDocument() != null) {
+                    iterable = fullDocumentMethod.invoke(iterable, fullDocumentFromStringMethod.invoke(watch.getFullDocument()));
+                }
+                if (lastReadToken != null) {
+                    iterable = resumeAfterMethod.invoke(iterable, lastReadToken);
+                }
+                cursor = iteratorMethod.invoke(iterable);
+                while (running) {
+                    // tryNext returns null when no change arrived within the server await time
+                    final Object change = tryNextMethod.invoke(cursor);
+                    if (change != null) {
+                        dispatchQueue.put(change);
+                        lastReadToken = getResumeTokenMethod.invoke(change);
+                        retryDelay = 100;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable throwable) {
+                if (!running) {
+                    return;
+                }
+                ROOT_LOGGER.changeStreamFailed(watch.getName(), profile, retryDelay, throwable);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+            } finally {
+                if (cursor != null) {
+                    try {
+                        closeMethod.invoke(cursor);
+                    } catch (Throwable ignore) {
+                    }
+                }
+            }
+        }
+    }
+
+    private void dispatch() {
+        // change that no deployment listener received yet, it is delivered again once a deployment listener is registered
+        Object change = null;
+        while (running || change != null || !dispatchQueue.isEmpty()) {
+            try {
+                if (!hasDeploymentListener()) {
+                    // don't consume changes or advance the checkpoint, until a deployment observes the changes
+                    if (!running) {
+                        return;
+                    }
+                    Thread.sleep(LISTENER_WAIT);
+                    continue;
+                }
+                if (change == null) {
+                    change = dispatchQueue.poll(CHECKPOINT_INTERVAL, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (change != null) {
+                try {
+                    final MongoChangeEvent event = event(change);
+                    boolean delivered = false;
+                    for (MongoChangeListener listener : listeners) {
+                        delivered |= !(listener instanceof MongoNearCache);
+                        try {
+                            listener.onChange(event);
+                        } catch (RuntimeException e) {
+                            ROOT_LOGGER.changeListenerFailed(event, e);
+                        }
+                    }
+                    if (delivered) {
+                        lastDeliveredToken = getResumeTokenMethod.invoke(change);
+                        change = null;
+                    }
+                } catch (Throwable throwable) {
+                    ROOT_LOGGER.changeDispatchFailed(watch.getName(), profile, throwable);
+                    change = null;
+                }
+            }
+            checkpoint(false);
+        }
+    }
+
+    /**
+     * @return true if a listener other than the profile near cache is registered.
+     */
+    private boolean hasDeploymentListener() {
+        for (MongoChangeListener listener : listeners) {
+            if (!(listener instanceof MongoNearCache)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MongoChangeEvent event(Object change) throws Throwable {
+        final Object operationType = getOperationTypeMethod.invoke(change);
+        return new MongoChangeEvent(profile, watch.getName(), watch.getDatabase(), watch.getCollection(),
+                operationType != null ? (String) getOperationTypeValueMethod.invoke(operationType) : null,
+                getDocumentKeyMethod.invoke(change), getFullDocumentMethod.invoke(change), change);
+    }
+
+    /**
+     * Write the resume token of the last delivered change to the checkpoint file.
+     *
+     * @param force is false to only write once per checkpoint interval
+     */
+    synchronized void checkpoint(boolean force) {
+        final Object token = lastDeliveredToken;
+        if (token == null || token == lastCheckpointedToken) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (!force && now - lastCheckpoint < CHECKPOINT_INTERVAL) {
+            return;
+        }
+        try {
+            final Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            Files.createDirectories(checkpointFile.getParent());
+            Files.write(temp, ((String) toJsonMethod.invoke(token)).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastCheckpointedToken = token;
+            lastCheckpoint = now;
+        } catch (Throwable throwable) {
+            ROOT_LOGGER.changeStreamCheckpointFailed(watch.getName(), profile, checkpointFile, throwable);
+        }
+    }
+
+    private Object /* BsonDocument */ readCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return null;
+        }
+        try {
+            return bsonDocumentParseMethod.invoke(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            ROOT_LOGGER.changeStreamCheckpointUnreadable(checkpointFile, watch.getName(), e);
+        } catch (Throwable throwable) {
+            ROOT_LOGGER.changeStreamCheckpointInvalid(checkpointFile, throwable);
+        }
+        return null;
+    }
+}
@@ -18,10 +18,20 @@ package org.wildfly.extension.nosql.driver.mongodb;
 
 import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.as.network.OutboundSocketBinding;
+import org.jboss.as.server.ServerEnvironment;
 import org.jboss.msc.inject.Injector;
 import org.jboss.msc.inject.MapInjector;
 import org.jboss.msc.service.Service;
@@ -30,6 +40,8 @@ import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
 import org.jboss.msc.value.InjectedValue;
 import org.jboss.security.SubjectFactory;
+import org.wildfly.extension.nosql.driver.mongodb.transaction.MongoTransactionSupport;
+import org.wildfly.extension.nosql.driver.mongodb.transaction.TransactionEnlistmentType;
 import org.wildfly.extension.nosql.subsystem.mongodb.MongoSubsystemService;
 import org.wildfly.nosql.common.spi.NoSQLConnection;
 
@@ -44,13 +56,30 @@ public class MongoClientConnectionsService implements Service<MongoClientConnect
     private Map<String, OutboundSocketBinding> outboundSocketBindings = new HashMap<String, OutboundSocketBinding>();
     private Object /* MongoClient */ client;
     private Object /* MongoDatabase */ database;
+    // database name to MongoDatabase, for each database that shares the client
+    private final Map<String, Object /* MongoDatabase */> databases = new ConcurrentHashMap<>();
     private MongoInteraction mongoInteraction;
+    private volatile MongoWriteBatcher writeBatcher;
+    private volatile MongoHedgedReader hedgedReader;
+    private volatile MongoTenantDatabases tenantDatabases;
+    private volatile MongoOutbox outbox;
+    private MongoTransactionSupport transactionSupport;
+    private DeadlineProxy.Support deadlineSupport;
+    private volatile MongoNearCache nearCache;
+    private final List<MongoChangeStreamWatcher> watchers = new ArrayList<>();
+    private final List<MongoChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private ExecutorService watchExecutor;
     private final InjectedValue<SubjectFactory> subjectFactory = new InjectedValue<>();
+    private final InjectedValue<ServerEnvironment> serverEnvironment = new InjectedValue<>();
 
     public InjectedValue<SubjectFactory> getSubjectFactoryInjector() {
         return subjectFactory;
     }
 
+    public InjectedValue<ServerEnvironment> getServerEnvironmentInjector() {
+        return serverEnvironment;
+    }
+
     public InjectedValue<MongoSubsystemService> getMongoSubsystemServiceInjectedValue() {
         return mongoSubsystemServiceInjectedValue;
     }
@@ -72,6 +101,19 @@ public class MongoClientConnectionsService implements Service<MongoClientConnect
         // identify the static module name to add to the deployment.
         mongoSubsystemServiceInjectedValue.getValue().addModuleNameFromJndi(configurationBuilder.getJNDIName(), configurationBuilder.getModuleName());
         mongoSubsystemServiceInjectedValue.getValue().addModuleNameFromProfile(configurationBuilder.getDescription(), configurationBuilder.getModuleName());
+        for (String databaseName : configurationBuilder.getDatabases()) {
+            mongoSubsystemServiceInjectedValue.getValue().addModuleNameFromJndi(databaseJNDIName(configurationBuilder.getJNDIName(), databaseName), configurationBuilder.getModuleName());
+        }
+        try {
+            startProfile();
+        } catch (StartException | RuntimeException | Error failure) {
+            // close the client and stop the profile threads that were started before the failure
+            close();
+            throw failure;
+        }
+    }
+
+    private void startProfile() throws StartException {
         for (OutboundSocketBinding target : outboundSocketBindings.values()) {
             try {
                 mongoInteraction.hostPort(target.getUnresolvedDestinationAddress(), target.getDestinationPort());
@@ -91,23 +133,166 @@ public class MongoClientConnectionsService implements Service<MongoClientConnect
         if (configurationBuilder.getDatabase() != null) {
             try {
                 database = mongoInteraction.getDB();
+                databases.put(configurationBuilder.getDatabase(), database);
             } catch (Throwable throwable) {
                 throw new RuntimeException("could not use database " + configurationBuilder.getDatabase(),throwable);
             }
         }
+        // MongoDatabase instances are lightweight views on the client, so additional databases do not add connections
+        for (String databaseName : configurationBuilder.getDatabases()) {
+            try {
+                databases.put(databaseName, mongoInteraction.getDatabase(databaseName));
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not use database " + databaseName,throwable);
+            }
+        }
+        if (TransactionEnlistmentType.ONEPHASECOMMIT.equals(configurationBuilder.getTransactionEnlistment())) {
+            onePhaseCommitWrapper();
+        }
+        if (configurationBuilder.getOperationTimeout() > 0) {
+            operationTimeoutWrapper();
+        }
+        if (configurationBuilder.getNearCacheSize() > 0) {
+            nearCacheWrapper();
+        }
+        if (configurationBuilder.getTenantCacheSize() > 0) {
+            tenantDatabases = new MongoTenantDatabases(configurationBuilder.getTenantCacheSize(), mongoInteraction, this::wrapDatabase);
+        }
+        if (configurationBuilder.getWriteBatchSize() > 0 && database != null) {
+            writeBatcher = new MongoWriteBatcher(configurationBuilder, database);
+            writeBatcher.start();
+        }
+        if (configurationBuilder.getOutboxSegmentSize() > 0 && database != null) {
+            // one journal directory per profile
+            final Path journal = dataDirectory().resolve(configurationBuilder.getDescription() + "-outbox");
+            outbox = new MongoOutbox(configurationBuilder, database, journal);
+            outbox.start();
+        }
+        if (configurationBuilder.getHedgePercentile() > 0 && database != null) {
+            try {
+                hedgedReader = new MongoHedgedReader(configurationBuilder, database, mongoInteraction.readPreference(configurationBuilder.getHedgeReadPreference()),
+                        mongoSubsystemServiceInjectedValue.getValue().transactionManager());
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not use hedge read preference " + configurationBuilder.getHedgeReadPreference(), throwable);
+            }
+            hedgedReader.start();
+        }
+        if (!configurationBuilder.getWatches().isEmpty()) {
+            startWatchers();
+        }
+    }
+
+    // the outbox journals and watch checkpoints are kept in the mongodb directory of the server data directory
+    private Path dataDirectory() {
+        return serverEnvironment.getValue().getServerDataDir().toPath().resolve("mongodb");
+    }
+
+    // database operations invoked within a JTA transaction, use the ClientSession that is bound to the JTA transaction
+    private void onePhaseCommitWrapper() throws StartException {
+        try {
+            transactionSupport = new MongoTransactionSupport(client,
+                    mongoSubsystemServiceInjectedValue.getValue().transactionManager(),
+                    mongoSubsystemServiceInjectedValue.getValue().transactionSynchronizationRegistry(),
+                    configurationBuilder.getDescription(), configurationBuilder.getJNDIName());
+        } catch (ReflectiveOperationException e) {
+            throw new StartException("MongoDB profile " + configurationBuilder.getDescription() +
+                    " specifies transaction=" + TransactionEnlistmentType.ONEPHASECOMMIT.getValue() + " but the MongoDB driver doesn't support transactions (3.8 or later is required)", e);
+        }
+        for (Map.Entry<String, Object> entry : databases.entrySet()) {
+            entry.setValue(transactionSupport.wrap(entry.getValue()));
+        }
+        if (database != null) {
+            database = databases.get(configurationBuilder.getDatabase());
+        }
+    }
+
+    // query operations are bounded by the operation-timeout and the invocation deadline
+    private void operationTimeoutWrapper() {
+        try {
+            deadlineSupport = DeadlineProxy.support(mongoInteraction.getMongoDatabaseClass().getClassLoader(),
+                    configurationBuilder.getOperationTimeout(), mongoSubsystemServiceInjectedValue.getValue().transactionManager());
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("could not setup operation-timeout for " + configurationBuilder.getDescription(), e);
+        }
+        for (Map.Entry<String, Object> entry : databases.entrySet()) {
+            entry.setValue(deadlineSupport.wrap(entry.getValue()));
+        }
+        if (database != null) {
+            database = databases.get(configurationBuilder.getDatabase());
+        }
+    }
+
+    // writes to the profile databases invalidate the near cache, as well as the changes read by the profile watches
+    private void nearCacheWrapper() {
+        try {
+            nearCache = new MongoNearCache(configurationBuilder, mongoInteraction.getMongoDatabaseClass().getClassLoader(),
+                    transactionSupport != null ? mongoSubsystemServiceInjectedValue.getValue().transactionManager() : null,
+                    transactionSupport != null ? mongoSubsystemServiceInjectedValue.getValue().transactionSynchronizationRegistry() : null);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("could not setup near cache for " + configurationBuilder.getDescription(), e);
+        }
+        for (Map.Entry<String, Object> entry : databases.entrySet()) {
+            entry.setValue(nearCache.wrap(entry.getValue()));
+        }
+        if (database != null) {
+            database = databases.get(configurationBuilder.getDatabase());
+        }
+        changeListeners.add(nearCache);
+    }
 
+    // same wrapping as the profile databases, for databases that are resolved after start (tenant databases)
+    private Object /* MongoDatabase */ wrapDatabase(Object database) {
+        if (transactionSupport != null) {
+            database = transactionSupport.wrap(database);
+        }
+        if (deadlineSupport != null) {
+            database = deadlineSupport.wrap(database);
+        }
+        if (nearCache != null) {
+            database = nearCache.wrap(database);
+        }
+        return database;
     }
 
     @Override
     public void stop(StopContext stopContext) {
+        close();
+    }
+
+    private void close() {
+        stopWatchers();
+        if (writeBatcher != null) {
+            writeBatcher.stop();
+            writeBatcher = null;
+        }
+        if (hedgedReader != null) {
+            hedgedReader.stop();
+            hedgedReader = null;
+        }
+        if (outbox != null) {
+            outbox.stop();
+            outbox = null;
+        }
         try {
             mongoSubsystemServiceInjectedValue.getValue().removeModuleNameFromJndi(configurationBuilder.getJNDIName());
             mongoSubsystemServiceInjectedValue.getValue().removeModuleNameFromProfile(configurationBuilder.getDescription());
+            for (String databaseName : configurationBuilder.getDatabases()) {
+                mongoSubsystemServiceInjectedValue.getValue().removeModuleNameFromJndi(databaseJNDIName(configurationBuilder.getJNDIName(), databaseName));
+            }
             mongoInteraction.close();
         } catch (Throwable throwable) {
             ROOT_LOGGER.driverFailedToStop(throwable);
         }
+        tenantDatabases = null;
+        if (nearCache != null) {
+            changeListeners.remove(nearCache);
+            nearCache = null;
+        }
+        transactionSupport = null;
+        deadlineSupport = null;
         client = null;
+        database = null;
+        databases.clear();
     }
 
     @Override
@@ -123,6 +308,189 @@ public class MongoClientConnectionsService implements Service<MongoClientConnect
         return database;
     }
 
+    /**
+     * Get one of the databases defined for the profile.
+     *
+     * @param databaseName is either the profile database or one of the additional profile databases.
+     * @return MongoDatabase
+     */
+    public Object /* MongoDatabase */ getDatabase(String databaseName) {
+        Object result = databases.get(databaseName);
+        if (result == null) {
+            throw new IllegalArgumentException("database " + databaseName + " is not defined by profile " + configurationBuilder.getDescription());
+        }
+        return result;
+    }
+
+    /**
+     * Get the database of a tenant, when tenant routing is enabled for the profile.
+     *
+     * @param databaseName is the tenant database name.
+     * @return MongoDatabase from the profile tenant database cache
+     */
+    public Object /* MongoDatabase */ getTenantDatabase(String databaseName) {
+        final MongoTenantDatabases tenants = tenantDatabases;
+        if (tenants == null) {
+            throw new IllegalStateException("tenant routing is not enabled for profile " + configurationBuilder.getDescription());
+        }
+        return tenants.get(databaseName);
+    }
+
+    /**
+     * @return number of tenant databases in the profile tenant database cache.
+     */
+    public int getTenantDatabaseCount() {
+        final MongoTenantDatabases tenants = tenantDatabases;
+        return tenants != null ? tenants.size() : 0;
+    }
+
+    /**
+     * @return true if tenant routing is enabled for the profile.
+     */
+    public boolean isTenantRouting() {
+        return configurationBuilder.getTenantCacheSize() > 0;
+    }
+
+    /**
+     * @return JNDI name that an additional profile database is bound to.
+     */
+    public static String databaseJNDIName(String jndiName, String databaseName) {
+        return jndiName + "/" + databaseName;
+    }
+
+    private void startWatchers() {
+        final Path dataDir = dataDirectory();
+        for (ConfigurationBuilder.WatchConfiguration watch : configurationBuilder.getWatches()) {
+            final Object watchDatabase = watch.getDatabase() != null ? getDatabase(watch.getDatabase()) : database;
+            if (watchDatabase == null) {
+                throw new IllegalArgumentException("watch " + watch.getName() + " of profile " + configurationBuilder.getDescription() + " requires a database");
+            }
+            // one checkpoint file per profile + watch declaration
+            final Path checkpointFile = dataDir.resolve(configurationBuilder.getDescription() + "-" + watch.getName() + ".resume-token");
+            try {
+                watchers.add(new MongoChangeStreamWatcher(configurationBuilder.getDescription(), watch, watchDatabase, changeListeners, checkpointFile));
+            } catch (ReflectiveOperationException e) {
+                MongoLogger.ROOT_LOGGER.changeStreamsNotSupported(watch.getName(), configurationBuilder.getDescription(),
+                        configurationBuilder.getModuleName(), e.toString());
+            }
+        }
+        if (!watchers.isEmpty()) {
+            watchExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "MongoDB change stream " + configurationBuilder.getDescription());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            for (MongoChangeStreamWatcher watcher : watchers) {
+                watcher.start(watchExecutor);
+            }
+        }
+    }
+
+    private void stopWatchers() {
+        for (MongoChangeStreamWatcher watcher : watchers) {
+            watcher.stop();
+        }
+        if (watchExecutor != null) {
+            watchExecutor.shutdownNow();
+            try {
+                watchExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            watchExecutor = null;
+        }
+        for (MongoChangeStreamWatcher watcher : watchers) {
+            watcher.checkpoint(true);
+        }
+        watchers.clear();
+    }
+
+    /**
+     * Register a listener for the changes read by the profile watch declarations.
+     */
+    public void addChangeListener(MongoChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(MongoChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * @return true if the profile declares at least one watch
+     */
+    public boolean hasWatches() {
+        return !configurationBuilder.getWatches().isEmpty();
+    }
+
+    /**
+     * @return MongoWriteBatcher or null if write batching is not enabled for the profile.
+     */
+    public MongoWriteBatcher getWriteBatcher() {
+        return writeBatcher;
+    }
+
+    /**
+     * @return MongoHedgedReader or null if hedged reads are not enabled for the profile.
+     */
+    public MongoHedgedReader getHedgedReader() {
+        return hedgedReader;
+    }
+
+    /**
+     * Get the near cache view of a collection, when the near cache is enabled for the profile.
+     *
+     * @param databaseName is either the profile database or one of the additional profile databases, empty string or
+     *                     null means the profile database.
+     * @param collectionName is the collection name.
+     * @return MongoCachedCollection
+     */
+    public MongoCachedCollection getCachedCollection(String databaseName, String collectionName) {
+        final MongoNearCache cache = nearCache;
+        if (cache == null) {
+            throw new IllegalStateException("near cache is not enabled for profile " + configurationBuilder.getDescription());
+        }
+        if (databaseName == null || databaseName.isEmpty()) {
+            if (database == null) {
+                throw new IllegalArgumentException("profile " + configurationBuilder.getDescription() + " doesn't specify a database");
+            }
+            return cache.collection(database, collectionName);
+        }
+        return cache.collection(getDatabase(databaseName), collectionName);
+    }
+
+    public boolean isNearCache() {
+        return configurationBuilder.getNearCacheSize() > 0;
+    }
+
+    public long getNearCacheHitCount() {
+        final MongoNearCache cache = nearCache;
+        return cache != null ? cache.getHitCount() : 0;
+    }
+
+    public long getNearCacheMissCount() {
+        final MongoNearCache cache = nearCache;
+        return cache != null ? cache.getMissCount() : 0;
+    }
+
+    /**
+     * @return MongoOutbox or null if the outbox is not enabled for the profile.
+     */
+    public MongoOutbox getOutbox() {
+        return outbox;
+    }
+
+    public IndexPolicy getIndexPolicy() {
+        return configurationBuilder.getIndexPolicy();
+    }
+
+    public MongoStatistics getStatistics() {
+        return mongoInteraction.getStatistics();
+    }
+
     private Class getMongoClientClass() {
         return mongoInteraction.getMongoClientClass();
     }
@@ -140,6 +508,15 @@ public class MongoClientConnectionsService implements Service<MongoClientConnect
         if ( database != null && getMongoDatabaseClass().isAssignableFrom( clazz)) {
             return (T) database;
         }
+        if ( writeBatcher != null && MongoWriteBatcher.class.isAssignableFrom( clazz)) {
+            return (T) writeBatcher;
+        }
+        if ( hedgedReader != null && MongoHedgedReader.class.isAssignableFrom( clazz)) {
+            return (T) hedgedReader;
+        }
+        if ( outbox != null && MongoOutbox.class.isAssignableFrom( clazz)) {
+            return (T) outbox;
+        }
         throw ROOT_LOGGER.unassignable(clazz);
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+
+import org.jboss.tm.TransactionTimeoutConfiguration;
+
+/**
+ * MongoDeadline holds the deadline of the current EE invocation (e.g. HTTP request), so that the remaining time can be
+ * passed to the MongoDB server as <code>maxTimeMS</code>, instead of letting the server run queries that the client
+ * already gave up on.
+ *
+ * The deadline is set on the invocation thread by {@link #set} (the optional
+ * <code>org.wildfly.extension.nosql.jaxrs.RequestDeadlineFilter</code> does that for JAX-RS requests) and must be
+ * cleared with {@link #clear} at the end of the invocation.  Without a deadline, the time left before the JTA
+ * transaction timeout (e.g. EJB @TransactionTimeout) is used.
+ */
+public final class MongoDeadline {
+
+    private static final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
+    private MongoDeadline() {
+    }
+
+    /**
+     * Set the deadline of the current invocation to now + timeout.
+     */
+    public static void set(long timeout, TimeUnit unit) {
+        deadline.set(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Clear the deadline of the current invocation.
+     */
+    public static void clear() {
+        deadline.remove();
+    }
+
+    /**
+     * @return the deadline of the current invocation in nano time, or null, to propagate it to another thread.
+     */
+    static Long current() {
+        return deadline.get();
+    }
+
+    /**
+     * Restore a deadline obtained by {@link #current}, null clears the deadline.
+     */
+    static void restore(Long nanos) {
+        if (nanos == null) {
+            deadline.remove();
+        } else {
+            deadline.set(nanos);
+        }
+    }
+
+    /**
+     * @return milliseconds left before the current invocation deadline, or -1 if there is no deadline.
+     *         Zero is never returned, an expired deadline returns 1 so that the server fails the operation right away.
+     */
+    public static long remainingMillis(TransactionManager transactionManager) {
+        final Long nanos = deadline.get();
+        if (nanos != null) {
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos - System.nanoTime()));
+        }
+        if (transactionManager instanceof TransactionTimeoutConfiguration) {
+            try {
+                final int txstatus = transactionManager.getStatus();
+                if (txstatus == Status.STATUS_ACTIVE || txstatus == Status.STATUS_MARKED_ROLLBACK) {
+                    final long left = ((TransactionTimeoutConfiguration) transactionManager).getTimeLeftBeforeTransactionTimeout(false);
+                    if (left > 0) {
+                        return left;
+                    }
+                }
+            } catch (RollbackException timedOut) {
+                return 1;
+            } catch (SystemException ignore) {
+                // no transaction deadline
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.jboss.security.SecurityContext;
+import org.jboss.security.SecurityContextAssociation;
+import org.wildfly.nosql.common.MethodHandleBuilder;
+import org.wildfly.nosql.common.NoSQLConstants;
+
+/**
+ * MongoHedgedReader runs latency critical, read only queries with hedging.  When the first attempt hasn't answered
+ * within the <code>hedge-percentile</code> latency of the previous first attempts, a second attempt is sent with the
+ * <code>hedge-read-preference</code> (by default secondaryPreferred), so that it is likely served by another replica
+ * set member.  Whichever attempt answers first is returned and the other attempt is cancelled.
+ *
+ * At most <code>hedge-max-rate</code> percent of the reads (per second) are hedged, to bound the extra load, and reads
+ * are not hedged until enough latencies are recorded to compute the hedge delay, until then they run on the caller
+ * thread.  The hedge delay is computed from the
+ * latencies of the last minute or two, so that it follows latency changes.
+ *
+ * Attempts run on the hedging threads with the caller classloader, invocation deadline and security context.  Reads
+ * invoked within a JTA transaction are not hedged and run on the caller thread, as the transaction (and the 1pc
+ * ClientSession bound to it) can't be used from another thread.
+ *
+ * Queries must be idempotent reads, as both attempts may run to completion.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyMongoDB") MongoHedgedReader reader;</code>
+ * <code>Document order = reader.read("orders", (MongoCollection&lt;Document&gt; orders) -&gt; orders.find(eq("_id", id)).first());</code>
+ */
+public class MongoHedgedReader {
+
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final String READPREFERENCECLASS = "com.mongodb.ReadPreference";
+    private static final int MIN_SAMPLES = 100;
+    private static final int MAX_THREADS = 64;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long LATENCY_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String description;
+    private final int percentile;
+    private final int maxRate;
+    private final Object /* MongoDatabase */ database;
+    private final Object /* ReadPreference */ hedgeReadPreference;
+    private final TransactionManager transactionManager;
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle withReadPreferenceMethod;
+    // collection name to { first attempt collection, hedge collection }
+    private final Map<String, Object[]> collections = new ConcurrentHashMap<>();
+
+    // first attempt latencies of the current and previous latency window
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+    private volatile LatencyHistogram previousLatency = new LatencyHistogram();
+    private final AtomicLong latencyWindowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedgedReads = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong windowReads = new AtomicLong();
+    private final AtomicLong windowHedges = new AtomicLong();
+
+    private volatile ThreadPoolExecutor executor;
+
+    MongoHedgedReader(ConfigurationBuilder configurationBuilder, Object database, Object hedgeReadPreference, TransactionManager transactionManager) {
+        this.description = configurationBuilder.getDescription();
+        this.percentile = configurationBuilder.getHedgePercentile();
+        this.maxRate = configurationBuilder.getHedgeMaxRate();
+        this.database = database;
+        this.hedgeReadPreference = hedgeReadPreference;
+        this.transactionManager = transactionManager;
+
+        MethodHandleBuilder methodHandleBuilder = new MethodHandleBuilder();
+        methodHandleBuilder.classLoader(ModuleIdentifier.fromString(configurationBuilder.getModuleName()));
+        Class readPreferenceClass = methodHandleBuilder.className(READPREFERENCECLASS).getTargetClass();
+        methodHandleBuilder.className(NoSQLConstants.MONGODATABASECLASS);
+        getCollectionMethod = methodHandleBuilder.method("getCollection", String.class);
+        methodHandleBuilder.className(MONGOCOLLECTIONCLASS);
+        withReadPreferenceMethod = methodHandleBuilder.method("withReadPreference", readPreferenceClass);
+    }
+
+    void start() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(0, MAX_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), runnable -> {
+            Thread thread = new Thread(runnable, "MongoDB hedged read " + description + " " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void stop() {
+        final ThreadPoolExecutor current = executor;
+        executor = null;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the query against the collection, hedged with a second attempt if the first attempt is slow.
+     *
+     * @param collectionName collection to read from
+     * @param query read only query, that is passed the <code>MongoCollection&lt;Document&gt;</code> to use
+     * @return the result of the first attempt that answered
+     */
+    public <C, T> T read(String collectionName, Function<C, T> query) {
+        final ThreadPoolExecutor currentExecutor = executor;
+        if (currentExecutor == null) {
+            throw new IllegalStateException("MongoDB profile " + description + " is stopped");
+        }
+        final Object[] collection = collection(collectionName);
+        reads.incrementAndGet();
+        if (inTransaction()) {
+            // the transaction is bound to this thread, read without hedging
+            return query.apply((C) collection[0]);
+        }
+        rollWindow();
+        windowReads.incrementAndGet();
+        final long hedgeDelay = getHedgeDelay();
+        if (hedgeDelay == 0) {
+            // not enough latencies are recorded to hedge yet, read on this thread
+            final long start = System.nanoTime();
+            final T result = query.apply((C) collection[0]);
+            recordLatency(System.nanoTime() - start);
+            return result;
+        }
+
+        final ExecutorCompletionService<T> completionService = new ExecutorCompletionService<>(currentExecutor);
+        final InvocationContext context = new InvocationContext();
+        final long readStart = System.nanoTime();
+        final Future<T> first;
+        try {
+            first = completionService.submit(new Attempt<>(query, (C) collection[0], context, true));
+        } catch (RejectedExecutionException e) {
+            // all hedging threads are busy, read without hedging
+            return query.apply((C) collection[0]);
+        }
+        Future<T> hedge = null;
+        try {
+            Future<T> done = completionService.poll(hedgeDelay, TimeUnit.MICROSECONDS);
+            if (done == null && acquireHedge()) {
+                try {
+                    hedge = completionService.submit(new Attempt<>(query, (C) collection[1], context, false));
+                    hedgedReads.incrementAndGet();
+                } catch (RejectedExecutionException ignore) {
+                    // wait for the first attempt
+                }
+            }
+            if (done == null) {
+                done = completionService.take();
+            }
+            try {
+                T result = done.get();
+                if (done == hedge) {
+                    hedgeWins.incrementAndGet();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (hedge == null) {
+                    throw e;
+                }
+                // one attempt failed, use the answer of the other attempt
+                return completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while reading from " + collectionName, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("could not read from " + collectionName, e.getCause());
+        } finally {
+            if (!first.isDone()) {
+                // the first attempt lost, record how long it ran at least, to not bias the hedge delay low
+                recordLatency(System.nanoTime() - readStart);
+            }
+            first.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    public long getHedgedReadCount() {
+        return hedgedReads.get();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * @return current hedge delay in microseconds, zero until enough latencies are recorded
+     */
+    public long getHedgeDelay() {
+        // the previous window is complete, the current window is used until the previous window has enough samples
+        final LatencyHistogram previous = previousLatency;
+        if (previous.getCount() >= MIN_SAMPLES) {
+            return previous.getPercentile(percentile);
+        }
+        final LatencyHistogram current = latency;
+        return current.getCount() >= MIN_SAMPLES ? current.getPercentile(percentile) : 0;
+    }
+
+    private void recordLatency(long nanos) {
+        final long now = System.nanoTime();
+        final long start = latencyWindowStart.get();
+        if (now - start > LATENCY_WINDOW_NANOS && latencyWindowStart.compareAndSet(start, now)) {
+            previousLatency = latency;
+            latency = new LatencyHistogram();
+        }
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private boolean inTransaction() {
+        try {
+            return transactionManager != null && transactionManager.getTransaction() != null;
+        } catch (SystemException e) {
+            throw new RuntimeException("could not get the transaction of the current thread", e);
+        }
+    }
+
+    private Object[] collection(String collectionName) {
+        Object[] result = collections.get(collectionName);
+        if (result == null) {
+            try {
+                Object collection = getCollectionMethod.invoke(database, collectionName);
+                result = new Object[]{collection, withReadPreferenceMethod.invoke(collection, hedgeReadPreference)};
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not get collection " + collectionName + " from profile " + description, throwable);
+            }
+            collections.put(collectionName, result);
+        }
+        return result;
+    }
+
+    private void rollWindow() {
+        final long now = System.nanoTime();
+        final long start = windowStart.get();
+        if (now - start > RATE_WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            windowReads.set(0);
+            windowHedges.set(0);
+        }
+    }
+
+    private boolean acquireHedge() {
+        if ((windowHedges.get() + 1) * 100 > windowReads.get() * maxRate) {
+            return false;
+        }
+        windowHedges.incrementAndGet();
+        return true;
+    }
+
+    // the caller thread context that attempts run with
+    private static final class InvocationContext {
+        private final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        private final Long deadline = MongoDeadline.current();
+        private final SecurityContext securityContext = SecurityContextAssociation.getSecurityContext();
+    }
+
+    private class Attempt<C, T> implements Callable<T> {
+        private final Function<C, T> query;
+        private final C collection;
+        private final InvocationContext context;
+        private final boolean first;
+
+        Attempt(Function<C, T> query, C collection, InvocationContext context, boolean first) {
+            this.query = query;
+            this.collection = collection;
+            this.context = context;
+            this.first = first;
+        }
+
+        @Override
+        public T call() {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previous = thread.getContextClassLoader();
+            final SecurityContext previousSecurityContext = SecurityContextAssociation.getSecurityContext();
+            // run the query with the application classloader (for application codecs), deadline and security context
+            thread.setContextClassLoader(context.classLoader);
+            MongoDeadline.restore(context.deadline);
+            SecurityContextAssociation.setSecurityContext(context.securityContext);
+            try {
+                final long start = System.nanoTime();
+                final T result = query.apply(collection);
+                if (first) {
+                    // the hedge delay is derived from the first attempt latencies only
+                    recordLatency(System.nanoTime() - start);
+                }
+                return result;
+            } finally {
+                SecurityContextAssociation.setSecurityContext(previousSecurityContext);
+                MongoDeadline.clear();
+                thread.setContextClassLoader(previous);
+            }
+        }
+    }
+}
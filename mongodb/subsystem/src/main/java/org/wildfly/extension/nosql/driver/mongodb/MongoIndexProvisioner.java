@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MongoIndexProvisioner creates or verifies the {@link Index} declarations of a deployment, against one MongoDB database.
+ *
+ * Indexes are created with <code>background(true)</code>, so that building an index on an existing collection doesn't
+ * block the reads and writes of the database (servers before MongoDB 4.2) while the deployment starts.
+ */
+public class MongoIndexProvisioner {
+
+    private static final String MONGODATABASECLASS = "com.mongodb.client.MongoDatabase";
+    private static final String DOCUMENTCLASS = "org.bson.Document";
+    private static final String BSONCLASS = "org.bson.conversions.Bson";
+    private static final String INDEXOPTIONSCLASS = "com.mongodb.client.model.IndexOptions";
+
+    private final Object /* MongoDatabase */ database;
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle listIndexesMethod;
+    private final MethodHandle createIndexMethod;
+    private final MethodHandle documentCtor;
+    private final MethodHandle indexOptionsCtor;
+    private final MethodHandle indexNameMethod;
+    private final MethodHandle indexUniqueMethod;
+    private final MethodHandle indexSparseMethod;
+    private final MethodHandle indexExpireAfterMethod;
+    private final MethodHandle indexBackgroundMethod;
+
+    public MongoIndexProvisioner(Object database) {
+        this.database = database;
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        final ClassLoader classLoader = database.getClass().getClassLoader();
+        try {
+            Class mongoDatabaseClass = classLoader.loadClass(MONGODATABASECLASS);
+            Class indexOptionsClass = classLoader.loadClass(INDEXOPTIONSCLASS);
+            // MongoCollection<Document> getCollection(String collectionName)
+            getCollectionMethod = lookup.unreflect(mongoDatabaseClass.getMethod("getCollection", String.class));
+            Class mongoCollectionClass = getCollectionMethod.type().returnType();
+            // ListIndexesIterable<Document> listIndexes()
+            listIndexesMethod = lookup.unreflect(mongoCollectionClass.getMethod("listIndexes"));
+            // String createIndex(Bson keys, IndexOptions indexOptions)
+            createIndexMethod = lookup.unreflect(mongoCollectionClass.getMethod("createIndex", classLoader.loadClass(BSONCLASS), indexOptionsClass));
+            documentCtor = lookup.findConstructor(classLoader.loadClass(DOCUMENTCLASS), MethodType.methodType(void.class));
+            indexOptionsCtor = lookup.findConstructor(indexOptionsClass, MethodType.methodType(void.class));
+            indexNameMethod = lookup.unreflect(indexOptionsClass.getMethod("name", String.class));
+            indexUniqueMethod = lookup.unreflect(indexOptionsClass.getMethod("unique", boolean.class));
+            indexSparseMethod = lookup.unreflect(indexOptionsClass.getMethod("sparse", boolean.class));
+            indexExpireAfterMethod = lookup.unreflect(indexOptionsClass.getMethod("expireAfter", Long.class, TimeUnit.class));
+            indexBackgroundMethod = lookup.unreflect(indexOptionsClass.getMethod("background", boolean.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("could not setup MongoDB index support", e);
+        }
+    }
+
+    /**
+     * Create or verify the indexes of one collection.
+     *
+     * @return problems found (missing or mismatched indexes), indexes created with IndexPolicy.CREATE are not problems.
+     */
+    public List<String> provision(String collectionName, List<IndexDefinition> indexes, IndexPolicy policy) {
+        final List<String> problems = new ArrayList<>();
+        try {
+            final Object collection = getCollectionMethod.invoke(database, collectionName);
+            final List<Map> existingIndexes = new ArrayList<>();
+            for (Object existing : (Iterable) listIndexesMethod.invoke(collection)) {
+                existingIndexes.add((Map) existing);
+            }
+            for (IndexDefinition index : indexes) {
+                final Map existing = findByKeys(existingIndexes, index.getKeys());
+                if (existing == null) {
+                    if (IndexPolicy.CREATE.equals(policy)) {
+                        createIndexMethod.invoke(collection, keysDocument(index), indexOptions(index));
+                    } else {
+                        problems.add("missing index " + index);
+                    }
+                } else if (!matches(existing, index)) {
+                    problems.add("index " + index + " doesn't match existing index " + existing);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not provision indexes for collection " + collectionName, throwable);
+        }
+        return problems;
+    }
+
+    private Object keysDocument(IndexDefinition index) throws Throwable {
+        final Map keys = (Map) documentCtor.invoke();
+        keys.putAll(index.getKeys());
+        return keys;
+    }
+
+    private Object indexOptions(IndexDefinition index) throws Throwable {
+        final Object options = indexOptionsCtor.invoke();
+        indexBackgroundMethod.invoke(options, true);
+        if (!index.getName().isEmpty()) {
+            indexNameMethod.invoke(options, index.getName());
+        }
+        indexUniqueMethod.invoke(options, index.isUnique());
+        indexSparseMethod.invoke(options, index.isSparse());
+        if (index.getExpireAfterSeconds() >= 0) {
+            indexExpireAfterMethod.invoke(options, Long.valueOf(index.getExpireAfterSeconds()), TimeUnit.SECONDS);
+        }
+        return options;
+    }
+
+    private static Map findByKeys(List<Map> existingIndexes, Map<String, Object> keys) {
+        for (Map existing : existingIndexes) {
+            final Map existingKeys = (Map) existing.get("key");
+            if (existingKeys != null && sameKeys(existingKeys, keys)) {
+                return existing;
+            }
+        }
+        return null;
+    }
+
+    // key order is significant for compound indexes
+    private static boolean sameKeys(Map existingKeys, Map<String, Object> keys) {
+        if (existingKeys.size() != keys.size()) {
+            return false;
+        }
+        final Iterator<Map.Entry> existing = existingKeys.entrySet().iterator();
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            final Map.Entry existingKey = existing.next();
+            if (!key.getKey().equals(existingKey.getKey()) || !sameKeyType(existingKey.getValue(), key.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameKeyType(Object existing, Object expected) {
+        if (existing instanceof Number && expected instanceof Number) {
+            return ((Number) existing).intValue() == ((Number) expected).intValue();
+        }
+        return expected.equals(existing);
+    }
+
+    private static boolean matches(Map existing, IndexDefinition index) {
+        return (index.getName().isEmpty() || index.getName().equals(existing.get("name"))) &&
+                index.isUnique() == Boolean.TRUE.equals(existing.get("unique")) &&
+                index.isSparse() == Boolean.TRUE.equals(existing.get("sparse")) &&
+                index.getExpireAfterSeconds() == (existing.get("expireAfterSeconds") instanceof Number ?
+                        ((Number) existing.get("expireAfterSeconds")).longValue() : -1);
+    }
+
+    /**
+     * IndexDefinition is an {@link Index} declaration read from the deployment annotation index.
+     */
+    public static final class IndexDefinition {
+        private final String source;
+        private final String profile;
+        private final String database;  // empty means the profile database
+        private final String collection;
+        private final Map<String, Object> keys;
+        private final String name;
+        private final boolean unique;
+        private final boolean sparse;
+        private final long expireAfterSeconds;
+
+        public IndexDefinition(String source, String profile, String database, String collection, String[] keys, String name,
+                               boolean unique, boolean sparse, long expireAfterSeconds) {
+            this.source = source;
+            this.profile = profile;
+            this.database = database;
+            this.collection = collection;
+            this.keys = Collections.unmodifiableMap(parseKeys(keys));
+            this.name = name;
+            this.unique = unique;
+            this.sparse = sparse;
+            this.expireAfterSeconds = expireAfterSeconds;
+        }
+
+        private static Map<String, Object> parseKeys(String[] keys) {
+            final Map<String, Object> result = new LinkedHashMap<>();
+            for (String key : keys) {
+                final int separator = key.lastIndexOf(':');
+                final String field = separator > 0 ? key.substring(0, separator).trim() : key.trim();
+                final String type = separator > 0 ? key.substring(separator + 1).trim() : "1";
+                if ("1".equals(type) || "-1".equals(type)) {
+                    result.put(field, Integer.valueOf(type));
+                } else {
+                    result.put(field, type);
+                }
+            }
+            if (result.isEmpty()) {
+                throw new IllegalArgumentException("no index keys specified");
+            }
+            return result;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getProfile() {
+            return profile;
+        }
+
+        public String getDatabase() {
+            return database;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public Map<String, Object> getKeys() {
+            return keys;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnique() {
+            return unique;
+        }
+
+        public boolean isSparse() {
+            return sparse;
+        }
+
+        public long getExpireAfterSeconds() {
+            return expireAfterSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return collection + keys + (name.isEmpty() ? "" : " " + name) + (unique ? " unique" : "") + (sparse ? " sparse" : "") +
+                    (expireAfterSeconds >= 0 ? " expireAfterSeconds=" + expireAfterSeconds : "") + " declared by " + source;
+        }
+    }
+}
@@ -39,6 +39,8 @@ import org.wildfly.nosql.common.NoSQLConstants;
  */
 public class MongoInteraction {
 
+    private static final String READPREFERENCECLASS = "com.mongodb.ReadPreference";
+
     private final ArrayList serverAddressArrayList = new ArrayList(); // List<ServerAddress>
     private final ConfigurationBuilder configurationBuilder;
     private Object clientInstance;
@@ -61,6 +63,7 @@ public class MongoInteraction {
     private final MethodHandle writeConcernValueOfMethod;
     private final MethodHandle readConcernCtorMethod;
     private final MethodHandle readConcernLevelFromStringMethod;
+    private final MethodHandle readPreferenceValueOfMethod;
 
     private final MethodHandle serverAddressHostCtor;
     private final MethodHandle serverAddressHostPortCtor;
@@ -73,6 +76,7 @@ public class MongoInteraction {
     private final MethodHandle mongoCredentialPlainCreateCredential;
     private final MethodHandle mongoCredentialScramSha1CreateCredential;
     private volatile SubjectFactory subjectFactory;
+    private final MongoStatistics statistics;
 
     public MongoInteraction(ConfigurationBuilder configurationBuilder) {
         this.configurationBuilder = configurationBuilder;
@@ -84,6 +88,7 @@ public class MongoInteraction {
         Class mongoClientOptionsClass = methodHandleBuilder.className(NoSQLConstants.MONGOCLIENTOPTIONSCLASS).getTargetClass();
         // save MongoClient class  so getter method can return it
         mongoClientClass = methodHandleBuilder.className(NoSQLConstants.MONGOCLIENTCLASS).getTargetClass();
+        statistics = new MongoStatistics(configurationBuilder.getDescription(), mongoClientClass.getClassLoader());
         closeMethod = methodHandleBuilder.method("close");
         getDatabaseMethod = methodHandleBuilder.declaredMethod("getDatabase", String.class);
         mongoClientCtorMethod = methodHandleBuilder.declaredConstructor(List.class, mongoClientOptionsClass);
@@ -99,6 +104,10 @@ public class MongoInteraction {
         Class mongoReadConcernClass = methodHandleBuilder.className(NoSQLConstants.MONGOREADCONCERNCLASS).getTargetClass();
         readConcernCtorMethod = methodHandleBuilder.declaredConstructor(mongoReadConcernLevelClass);
 
+        Class mongoReadPreferenceClass = methodHandleBuilder.className(READPREFERENCECLASS).getTargetClass();
+        // public static ReadPreference valueOf(final String name)
+        readPreferenceValueOfMethod = methodHandleBuilder.staticMethod("valueOf", MethodType.methodType(mongoReadPreferenceClass, String.class));
+
         methodHandleBuilder.className(NoSQLConstants.MONGOBUILDERCLASS);
         builderCtorMethod = methodHandleBuilder.constructor(MethodType.methodType(void.class));
         descriptionMethod = methodHandleBuilder.declaredMethod("description", String.class);
@@ -151,6 +160,17 @@ public class MongoInteraction {
         return getDatabase(configurationBuilder.getDatabase());
     }
 
+    /**
+     * @return ReadPreference for the name (Ex: secondaryPreferred)
+     */
+    public Object /* ReadPreference */ readPreference(String name) throws Throwable {
+        return readPreferenceValueOfMethod.invoke(name);
+    }
+
+    public MongoStatistics getStatistics() {
+        return statistics;
+    }
+
     public void close() throws Throwable {
         underlyingClose();
     }
@@ -178,6 +198,7 @@ public class MongoInteraction {
             // public Builder requiredReplicaSetName(final String requiredReplicaSetName)
             replicaSetMethod.invoke(builder, configurationBuilder.getReplicaSet());
         }
+        statistics.register(builder);
         // MongoClientOptions mongoClientOptions = builder.build();
         // Object mongoClientOptions = buildMethod.invokeExact(builder);
         Object mongoClientOptions = buildMethod.invoke(builder);
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import static org.jboss.logging.Logger.Level.INFO;
+import static org.jboss.logging.Logger.Level.WARN;
+
+import java.nio.file.Path;
+
+import org.jboss.logging.BasicLogger;
+import org.jboss.logging.Logger;
+import org.jboss.logging.annotations.Cause;
+import org.jboss.logging.annotations.LogMessage;
+import org.jboss.logging.annotations.Message;
+import org.jboss.logging.annotations.MessageLogger;
+
+/**
+ * MongoLogger holds the messages of the MongoDB subsystem, message ids 100-199.
+ */
+@MessageLogger(projectCode = "WFLYNOSQL", length = 4)
+public interface MongoLogger extends BasicLogger {
+    /**
+     * Default root level logger with the package name for the category.
+     */
+    MongoLogger ROOT_LOGGER = Logger.getMessageLogger(MongoLogger.class, "org.wildfly.nosql");
+
+    /**
+     * Logs a warning message indicating that a periodic write batch flush failed.
+     *
+     * @param description the write batcher description.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 100, value = "Write batch flush of %s failed")
+    void batchFlushFailed(String description, @Cause Throwable cause);
+    /**
+     * Logs a warning message indicating that a change stream failed and will be resumed.
+     *
+     * @param watch the watch name.
+     * @param profile the profile name.
+     * @param retryDelay the delay in milliseconds before the change stream is resumed.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 101, value = "Change stream %s of profile %s failed, will resume in %d ms")
+    void changeStreamFailed(String watch, String profile, long retryDelay, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that a change listener failed.
+     *
+     * @param event the change event.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 102, value = "Change listener failed for %s")
+    void changeListenerFailed(Object event, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that a change could not be dispatched to the change listeners.
+     *
+     * @param watch the watch name.
+     * @param profile the profile name.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 103, value = "Could not dispatch change from change stream %s of profile %s")
+    void changeDispatchFailed(String watch, String profile, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that the change stream resume token could not be checkpointed.
+     *
+     * @param watch the watch name.
+     * @param profile the profile name.
+     * @param checkpointFile the checkpoint file.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 104, value = "Could not checkpoint change stream %s of profile %s to %s")
+    void changeStreamCheckpointFailed(String watch, String profile, Path checkpointFile, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that the change stream checkpoint could not be read.
+     *
+     * @param checkpointFile the checkpoint file.
+     * @param watch the watch name.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 105, value = "Could not read change stream checkpoint %s, change stream %s will start from the current time")
+    void changeStreamCheckpointUnreadable(Path checkpointFile, String watch, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that the change stream checkpoint is invalid and is ignored.
+     *
+     * @param checkpointFile the checkpoint file.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 106, value = "Ignoring invalid change stream checkpoint %s")
+    void changeStreamCheckpointInvalid(Path checkpointFile, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that a watch is ignored because the driver does not support change streams.
+     *
+     * @param watch the watch name.
+     * @param profile the profile name.
+     * @param module the MongoDB driver module name.
+     * @param reason the reason.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 107, value = "Ignoring watch %s of profile %s, MongoDB driver module %s does not support change streams (%s)")
+    void changeStreamsNotSupported(String watch, String profile, String module, String reason);
+
+    /**
+     * Logs a warning message indicating an index problem of a deployment, with index-policy that doesn't fail the deployment.
+     *
+     * @param deployment the deployment name.
+     * @param profile the profile name.
+     * @param problem the index problem.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 108, value = "Deployment %s MongoDB profile %s: %s")
+    void indexProblem(String deployment, String profile, String problem);
+
+    /**
+     * Logs a warning message indicating that the outbox checkpoint is invalid and the journal is replayed from the start.
+     *
+     * @param checkpointFile the checkpoint file.
+     * @param profile the profile name.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 109, value = "Ignoring invalid outbox checkpoint %s, the outbox journal of %s is replayed from the start")
+    void outboxCheckpointInvalid(Path checkpointFile, String profile);
+
+    /**
+     * Logs an informational message indicating the number of outbox writes that are replayed.
+     *
+     * @param count the number of outbox writes.
+     * @param profile the profile name.
+     */
+    @LogMessage(level = INFO)
+    @Message(id = 110, value = "Replaying %d outbox writes of profile %s")
+    void outboxReplaying(long count, String profile);
+
+    /**
+     * Logs a warning message indicating that an outbox write failed and is retried.
+     *
+     * @param profile the profile name.
+     * @param retryDelay the delay in milliseconds before the write is retried.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 111, value = "Outbox write of profile %s failed, retrying in %d milliseconds")
+    void outboxWriteFailed(String profile, long retryDelay, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that an outbox write that can't be read is dropped.
+     *
+     * @param collection the collection name.
+     * @param profile the profile name.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 112, value = "Dropping malformed outbox write to collection %s of profile %s")
+    void outboxWriteMalformed(String collection, String profile, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that an outbox write is dropped after a permanent write error.
+     *
+     * @param collection the collection name.
+     * @param profile the profile name.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 113, value = "Dropping outbox write to collection %s of profile %s")
+    void outboxWriteDropped(String collection, String profile, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that the outbox checkpoint could not be written.
+     *
+     * @param profile the profile name.
+     * @param checkpointFile the checkpoint file.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 114, value = "Could not checkpoint outbox of profile %s to %s")
+    void outboxCheckpointFailed(String profile, Path checkpointFile, @Cause Throwable cause);
+
+    /**
+     * Logs a warning message indicating that a drained outbox segment could not be deleted.
+     *
+     * @param segmentFile the segment file.
+     * @param cause the cause of the error.
+     */
+    @LogMessage(level = WARN)
+    @Message(id = 115, value = "Could not delete drained outbox segment %s")
+    void outboxSegmentDeleteFailed(Path segmentFile, @Cause Throwable cause);
+}
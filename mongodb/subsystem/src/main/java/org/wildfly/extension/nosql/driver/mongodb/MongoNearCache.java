@@ -0,0 +1,338 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * MongoNearCache holds the {@link MongoCachedCollection} views of a profile and invalidates them when the collection is
+ * written to through the profile databases (which are proxied) or when a profile watch reads a change of the collection.
+ *
+ * Collections are identified by their namespace (database.collection).  A write invalidates all cached documents of the
+ * collection, since the documents that a write filter selects are only known by the server.
+ *
+ * With transaction=1pc, reads within a JTA transaction bypass the near cache (they may see uncommitted writes), and
+ * writes within a JTA transaction invalidate the collection again when the JTA transaction completes, so that documents
+ * cached by concurrent readers before the commit are not kept.
+ */
+class MongoNearCache implements MongoChangeListener {
+
+    private static final String MONGODATABASECLASS = "com.mongodb.client.MongoDatabase";
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final String MONGOITERABLECLASS = "com.mongodb.client.MongoIterable";
+    private static final String BSONCLASS = "org.bson.conversions.Bson";
+    private static final String DOCUMENTCLASS = "org.bson.Document";
+    private static final String RAWBSONDOCUMENTCLASS = "org.bson.RawBsonDocument";
+    private static final String BYTEBUFCLASS = "org.bson.ByteBuf";
+    private static final String ID = "_id";
+    private static final String INVALIDATION_RESOURCE = "_nosqlMONGONEARCACHE_";
+
+    // MongoCollection methods that change documents
+    private static final Set<String> WRITE_METHODS = new HashSet<>(Arrays.asList(
+            "insertOne", "insertMany", "replaceOne", "updateOne", "updateMany", "deleteOne", "deleteMany",
+            "findOneAndDelete", "findOneAndReplace", "findOneAndUpdate", "bulkWrite", "drop", "renameCollection"));
+
+    private final String profileDatabase;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentMap<String, MongoCachedCollection> collections = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // only set for transaction=1pc profiles
+    private final TransactionManager transactionManager;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private final Class mongoDatabaseClass;
+    private final Class mongoCollectionClass;
+    private final Class rawBsonDocumentClass;
+    private final MethodHandle getNameMethod;
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle findMethod;
+    private final MethodHandle firstMethod;
+    private final MethodHandle documentCtor;
+    private final MethodHandle rawBsonDocumentCtor;
+    private final MethodHandle getByteBufferMethod;
+    private final MethodHandle asNIOMethod;
+
+    MongoNearCache(ConfigurationBuilder configurationBuilder, ClassLoader classLoader, TransactionManager transactionManager,
+                   TransactionSynchronizationRegistry transactionSynchronizationRegistry) throws ReflectiveOperationException {
+        this.transactionManager = transactionManager;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.profileDatabase = configurationBuilder.getDatabase();
+        this.maxSize = configurationBuilder.getNearCacheSize();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(configurationBuilder.getNearCacheTtl());
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        mongoDatabaseClass = classLoader.loadClass(MONGODATABASECLASS);
+        mongoCollectionClass = classLoader.loadClass(MONGOCOLLECTIONCLASS);
+        rawBsonDocumentClass = classLoader.loadClass(RAWBSONDOCUMENTCLASS);
+        Class bsonClass = classLoader.loadClass(BSONCLASS);
+        Class documentClass = classLoader.loadClass(DOCUMENTCLASS);
+        getNameMethod = lookup.unreflect(mongoDatabaseClass.getMethod("getName"));
+        getCollectionMethod = lookup.unreflect(mongoDatabaseClass.getMethod("getCollection", String.class, Class.class));
+        findMethod = lookup.unreflect(mongoCollectionClass.getMethod("find", bsonClass));
+        firstMethod = lookup.unreflect(classLoader.loadClass(MONGOITERABLECLASS).getMethod("first"));
+        documentCtor = lookup.findConstructor(documentClass, MethodType.methodType(void.class, String.class, Object.class));
+        rawBsonDocumentCtor = lookup.findConstructor(rawBsonDocumentClass, MethodType.methodType(void.class, byte[].class));
+        getByteBufferMethod = lookup.unreflect(rawBsonDocumentClass.getMethod("getByteBuffer"));
+        asNIOMethod = lookup.unreflect(classLoader.loadClass(BYTEBUFCLASS).getMethod("asNIO"));
+    }
+
+    /**
+     * @return near cache view of the collection in the database
+     */
+    MongoCachedCollection collection(Object database, String collectionName) {
+        final String namespace = namespace(database, collectionName);
+        MongoCachedCollection result = collections.get(namespace);
+        if (result == null) {
+            try {
+                result = new MongoCachedCollection(collectionName,
+                        getCollectionMethod.invoke(database, collectionName, rawBsonDocumentClass), this, maxSize);
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not get collection " + collectionName + " for the near cache", throwable);
+            }
+            MongoCachedCollection previous = collections.putIfAbsent(namespace, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return MongoDatabase proxy that invalidates the near cache of the collections that are written to
+     */
+    Object /* MongoDatabase */ wrap(Object database) {
+        return Proxy.newProxyInstance(mongoDatabaseClass.getClassLoader(), new Class[] {mongoDatabaseClass},
+                new DatabaseInvalidation(database, databaseName(database)));
+    }
+
+    @Override
+    public void onChange(MongoChangeEvent event) {
+        invalidate((event.getDatabase() != null ? event.getDatabase() : profileDatabase) + "." + event.getCollection());
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    long getTtlNanos() {
+        return ttlNanos;
+    }
+
+    /**
+     * @return true if the profile databases are enlisted into JTA transactions and a JTA transaction is active.
+     */
+    boolean inTransaction() {
+        if (transactionManager == null) {
+            return false;
+        }
+        try {
+            final int txstatus = transactionManager.getStatus();
+            return txstatus == Status.STATUS_ACTIVE || txstatus == Status.STATUS_MARKED_ROLLBACK;
+        } catch (SystemException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Invalidate again when the active JTA transaction completes, once per JTA transaction and key.
+     */
+    private void invalidateAfterCompletion(String key, final Runnable invalidation) {
+        if (!inTransaction() || transactionSynchronizationRegistry.getResource(INVALIDATION_RESOURCE + key) != null) {
+            return;
+        }
+        transactionSynchronizationRegistry.putResource(INVALIDATION_RESOURCE + key, Boolean.TRUE);
+        transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                invalidation.run();
+            }
+        });
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    Object /* RawBsonDocument */ find(Object collection, Object id) {
+        try {
+            return firstMethod.invoke(findMethod.invoke(collection, documentCtor.invoke(ID, id)));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not find document " + id, throwable);
+        }
+    }
+
+    Object /* RawBsonDocument */ rawDocument(byte[] bytes) {
+        try {
+            return rawBsonDocumentCtor.invoke(bytes);
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    ByteBuffer byteBuffer(Object rawDocument) {
+        try {
+            return (ByteBuffer) asNIOMethod.invoke(getByteBufferMethod.invoke(rawDocument));
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    private void invalidate(String namespace) {
+        final MongoCachedCollection collection = collections.get(namespace);
+        if (collection != null) {
+            collection.invalidateAll();
+        }
+    }
+
+    private void invalidateDatabase(String databaseName) {
+        for (Map.Entry<String, MongoCachedCollection> entry : collections.entrySet()) {
+            if (entry.getKey().startsWith(databaseName + ".")) {
+                entry.getValue().invalidateAll();
+            }
+        }
+    }
+
+    private String namespace(Object database, String collectionName) {
+        return databaseName(database) + "." + collectionName;
+    }
+
+    private String databaseName(Object database) {
+        try {
+            return (String) getNameMethod.invoke(database);
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    private static Object invoke(Object underlying, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(underlying, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private class DatabaseInvalidation implements InvocationHandler {
+        private final Object underlying;
+        private final String databaseName;
+
+        DatabaseInvalidation(Object underlying, String databaseName) {
+            this.underlying = underlying;
+            this.databaseName = databaseName;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+            }
+            if (method.getName().equals("drop")) {
+                invalidateDatabase(databaseName);
+                invalidateAfterCompletion(databaseName, () -> invalidateDatabase(databaseName));
+            }
+            final Object result = MongoNearCache.invoke(underlying, method, args);
+            if (method.getName().equals("getCollection") && mongoCollectionClass.isInstance(result)) {
+                return Proxy.newProxyInstance(mongoCollectionClass.getClassLoader(), new Class[] {mongoCollectionClass},
+                        new CollectionInvalidation(result, databaseName + "." + args[0]));
+            }
+            if (mongoDatabaseClass.isInstance(result)) {
+                // e.g. withWriteConcern
+                return Proxy.newProxyInstance(mongoDatabaseClass.getClassLoader(), new Class[] {mongoDatabaseClass},
+                        new DatabaseInvalidation(result, databaseName));
+            }
+            return result;
+        }
+    }
+
+    private class CollectionInvalidation implements InvocationHandler {
+        private final Object underlying;
+        private final String namespace;
+
+        CollectionInvalidation(Object underlying, String namespace) {
+            this.underlying = underlying;
+            this.namespace = namespace;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+            }
+            if (!WRITE_METHODS.contains(method.getName())) {
+                final Object result = MongoNearCache.invoke(underlying, method, args);
+                if (mongoCollectionClass.isInstance(result)) {
+                    // e.g. withDocumentClass, withWriteConcern
+                    return Proxy.newProxyInstance(mongoCollectionClass.getClassLoader(), new Class[] {mongoCollectionClass},
+                            new CollectionInvalidation(result, namespace));
+                }
+                return result;
+            }
+            // invalidate before and after the write, so that a concurrent read-through doesn't cache the old document
+            invalidate(namespace);
+            invalidateAfterCompletion(namespace, () -> invalidate(namespace));
+            try {
+                return MongoNearCache.invoke(underlying, method, args);
+            } finally {
+                invalidate(namespace);
+            }
+        }
+    }
+}
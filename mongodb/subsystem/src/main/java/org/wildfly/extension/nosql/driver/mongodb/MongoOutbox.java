@@ -0,0 +1,617 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import static org.wildfly.extension.nosql.driver.mongodb.MongoLogger.ROOT_LOGGER;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.wildfly.nosql.common.MethodHandleBuilder;
+import org.wildfly.nosql.common.NoSQLConstants;
+
+/**
+ * MongoOutbox is a write-behind outbox for fire-and-forget document writes, that keeps request latency independent of
+ * the MongoDB primary availability (e.g. during a fail over).
+ *
+ * {@link #insert} appends the document to a local journal of memory-mapped segment files (<code>outbox-segment-size</code>
+ * bytes each) and returns right away.  A background drainer replays the journal in order, as ordered bulk writes of
+ * <code>replaceOne({_id: id}, document, upsert)</code>, so that replaying a write again after a failure is idempotent
+ * (the document <code>_id</code> is the idempotency key, an ObjectId is assigned if the document doesn't have one).
+ * The drained position is checkpointed and fully drained segments are deleted, the journal left by a previous run is
+ * replayed when the profile starts.
+ *
+ * Failed bulk writes are retried with a growing delay, writes that fail with a write error (e.g. duplicate key on a
+ * unique index) are logged and dropped.  Writes are acknowledged once in the page cache, they survive a server process
+ * failure but not a host failure that happens before the segment is forced to disk.  The appended segments are forced
+ * every second by a separate thread, outside of the append lock, so neither the producers nor the drainer wait for it.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyMongoDB") MongoOutbox outbox;</code>
+ * <code>outbox.insert("events", new Document("type", "click"));</code>
+ */
+public class MongoOutbox {
+
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final String BSONCLASS = "org.bson.conversions.Bson";
+    private static final String DOCUMENTCLASS = "org.bson.Document";
+    private static final String OBJECTIDCLASS = "org.bson.types.ObjectId";
+    private static final String REPLACEONEMODELCLASS = "com.mongodb.client.model.ReplaceOneModel";
+    private static final String UPDATEOPTIONSCLASS = "com.mongodb.client.model.UpdateOptions";
+    private static final String BULKWRITEOPTIONSCLASS = "com.mongodb.client.model.BulkWriteOptions";
+    private static final String BULKWRITEEXCEPTIONCLASS = "com.mongodb.MongoBulkWriteException";
+    private static final String BULKWRITEERRORCLASS = "com.mongodb.bulk.BulkWriteError";
+    private static final String ID = "_id";
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "outbox.checkpoint";
+    // record: int length (written last), long append time, short collection name length, collection name, document json
+    private static final int LENGTH_SIZE = 4;
+    private static final int RECORD_HEADER = 8 + 2;
+    private static final int END_OF_SEGMENT = -1;
+    private static final long IDLE_WAIT = 100;
+    private static final long FORCE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    private static final long MIN_RETRY_DELAY = 100;
+    private static final long MAX_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private final String description;
+    private final int segmentSize;
+    private final int batchSize;
+    private final Path directory;
+    private final Object /* MongoDatabase */ database;
+    private final Object /* BulkWriteOptions */ bulkWriteOptions;
+    private final Object /* UpdateOptions */ upsertOptions;
+    private final Class documentClass;
+    private final Class bulkWriteExceptionClass;
+
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle bulkWriteMethod;
+    private final MethodHandle replaceOneModelCtor;
+    private final MethodHandle documentCtor;
+    private final MethodHandle documentParseMethod;
+    private final MethodHandle toJsonMethod;
+    private final MethodHandle objectIdCtor;
+    private final MethodHandle getWriteErrorsMethod;
+    private final MethodHandle getIndexMethod;
+    private final MethodHandle getMessageMethod;
+
+    // segment number to mapped segment, guarded by this
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    // append position, guarded by this
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private int writePosition;
+    private boolean running;
+    // segments before this one are forced to disk, guarded by this
+    private long forcedSegment;
+    // drained position, only used by the drainer thread (and start/stop)
+    private long drainSegment;
+    private int drainPosition;
+
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private volatile long oldestPendingTime;
+    private volatile Thread drainer;
+    private volatile ScheduledExecutorService forcer;
+
+    MongoOutbox(ConfigurationBuilder configurationBuilder, Object database, Path directory) {
+        this.description = configurationBuilder.getDescription();
+        this.segmentSize = configurationBuilder.getOutboxSegmentSize();
+        this.batchSize = configurationBuilder.getOutboxBatchSize();
+        this.directory = directory;
+        this.database = database;
+
+        MethodHandleBuilder methodHandleBuilder = new MethodHandleBuilder();
+        methodHandleBuilder.classLoader(ModuleIdentifier.fromString(configurationBuilder.getModuleName()));
+        Class bsonClass = methodHandleBuilder.className(BSONCLASS).getTargetClass();
+        Class updateOptionsClass = methodHandleBuilder.className(UPDATEOPTIONSCLASS).getTargetClass();
+        MethodHandle updateOptionsCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        MethodHandle upsertMethod = methodHandleBuilder.method("upsert", boolean.class);
+        Class bulkWriteOptionsClass = methodHandleBuilder.className(BULKWRITEOPTIONSCLASS).getTargetClass();
+        MethodHandle bulkWriteOptionsCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        MethodHandle orderedMethod = methodHandleBuilder.method("ordered", boolean.class);
+        documentClass = methodHandleBuilder.className(DOCUMENTCLASS).getTargetClass();
+        documentCtor = methodHandleBuilder.declaredConstructor(String.class, Object.class);
+        documentParseMethod = methodHandleBuilder.staticMethod("parse", MethodType.methodType(documentClass, String.class));
+        toJsonMethod = methodHandleBuilder.method("toJson");
+        methodHandleBuilder.className(OBJECTIDCLASS);
+        objectIdCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        methodHandleBuilder.className(REPLACEONEMODELCLASS);
+        replaceOneModelCtor = methodHandleBuilder.declaredConstructor(bsonClass, Object.class, updateOptionsClass);
+        methodHandleBuilder.className(NoSQLConstants.MONGODATABASECLASS);
+        getCollectionMethod = methodHandleBuilder.method("getCollection", String.class, Class.class);
+        methodHandleBuilder.className(MONGOCOLLECTIONCLASS);
+        bulkWriteMethod = methodHandleBuilder.method("bulkWrite", List.class, bulkWriteOptionsClass);
+        bulkWriteExceptionClass = methodHandleBuilder.className(BULKWRITEEXCEPTIONCLASS).getTargetClass();
+        getWriteErrorsMethod = methodHandleBuilder.method("getWriteErrors");
+        methodHandleBuilder.className(BULKWRITEERRORCLASS);
+        getIndexMethod = methodHandleBuilder.method("getIndex");
+        getMessageMethod = methodHandleBuilder.method("getMessage");
+        try {
+            upsertOptions = upsertMethod.invoke(updateOptionsCtor.invoke(), true);
+            bulkWriteOptions = orderedMethod.invoke(bulkWriteOptionsCtor.invoke(), true);
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not setup outbox for " + description, throwable);
+        }
+    }
+
+    /**
+     * Append a document write to the outbox journal, the document is written to the collection by the drainer.
+     *
+     * @param collectionName is the collection in the profile database
+     * @param document is the <code>org.bson.Document</code> to insert or replace (by _id), an ObjectId _id is
+     *                 added to the document if it doesn't have one.
+     */
+    public void insert(String collectionName, Object document) {
+        Objects.requireNonNull(collectionName, "collectionName");
+        Objects.requireNonNull(document, "document");
+        if (!documentClass.isInstance(document)) {
+            throw new IllegalArgumentException("outbox documents must be " + DOCUMENTCLASS + " instances, not " + document.getClass().getName());
+        }
+        final byte[] name = collectionName.getBytes(StandardCharsets.UTF_8);
+        final byte[] json;
+        try {
+            if (!((Map) document).containsKey(ID)) {
+                ((Map) document).put(ID, objectIdCtor.invoke());
+            }
+            json = ((String) toJsonMethod.invoke(document)).getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not serialize outbox document for collection " + collectionName, throwable);
+        }
+        final int length = RECORD_HEADER + name.length + json.length;
+        // keep room for the end of segment marker
+        if (name.length > Short.MAX_VALUE || LENGTH_SIZE + length + LENGTH_SIZE > segmentSize) {
+            throw new IllegalArgumentException("document of " + json.length + " bytes doesn't fit in outbox segments of " + segmentSize + " bytes, profile " + description);
+        }
+        synchronized (this) {
+            if (!running) {
+                throw new IllegalStateException("outbox for " + description + " is not started");
+            }
+            if (writePosition + LENGTH_SIZE + length + LENGTH_SIZE > writeBuffer.capacity()) {
+                writeBuffer.putInt(writePosition, END_OF_SEGMENT);
+                newWriteSegment(writeSegment + 1);
+            }
+            final ByteBuffer record = writeBuffer.duplicate();
+            record.position(writePosition + LENGTH_SIZE);
+            record.putLong(System.currentTimeMillis());
+            record.putShort((short) name.length);
+            record.put(name);
+            record.put(json);
+            // the record is complete once the length is written
+            writeBuffer.putInt(writePosition, length);
+            writePosition += LENGTH_SIZE + length;
+            depth.incrementAndGet();
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return number of journaled writes that are not written to MongoDB yet.
+     */
+    public long getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return milliseconds since the oldest journaled write, that is not written to MongoDB yet, was appended.
+     */
+    public long getLag() {
+        final long oldest = oldestPendingTime;
+        return oldest > 0 && depth.get() > 0 ? Math.max(0, System.currentTimeMillis() - oldest) : 0;
+    }
+
+    /**
+     * @return number of journaled writes that were dropped because of a write error.
+     */
+    public long getFailedWriteCount() {
+        return failedWrites.get();
+    }
+
+    void start() {
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new RuntimeException("could not open outbox journal " + directory + " for " + description, e);
+        }
+        synchronized (this) {
+            running = true;
+        }
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "MongoDB outbox " + description);
+        thread.setDaemon(true);
+        drainer = thread;
+        thread.start();
+        forcer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MongoDB outbox sync " + description);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        forcer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                force();
+            }
+        }, FORCE_INTERVAL, FORCE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        final Thread thread = drainer;
+        drainer = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(MAX_RETRY_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final ScheduledExecutorService current = forcer;
+        forcer = null;
+        if (current != null) {
+            current.shutdown();
+            try {
+                current.awaitTermination(FORCE_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // the journal is replayed from the checkpoint when the profile starts again
+        force();
+        synchronized (this) {
+            segments.clear();
+            writeBuffer = null;
+        }
+    }
+
+    // force the segments appended to since the last force, outside of the lock so that appends are not blocked by the msync
+    private void force() {
+        final List<MappedByteBuffer> buffers;
+        synchronized (this) {
+            if (writeBuffer == null) {
+                return;
+            }
+            buffers = new ArrayList<>(segments.subMap(forcedSegment, true, writeSegment, false).values());
+            buffers.add(writeBuffer);
+            forcedSegment = writeSegment;
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        final TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                final String fileName = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException ignore) {
+                    // not a segment
+                }
+            }
+        }
+        drainSegment = -1;
+        drainPosition = 0;
+        final Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointFile)) {
+            final String[] checkpoint = new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim().split(" ");
+            try {
+                drainSegment = Long.parseLong(checkpoint[0]);
+                drainPosition = Integer.parseInt(checkpoint[1]);
+            } catch (RuntimeException e) {
+                ROOT_LOGGER.outboxCheckpointInvalid(checkpointFile, description);
+                drainSegment = -1;
+            }
+        }
+        long recovered = 0;
+        synchronized (this) {
+            for (Map.Entry<Long, Path> entry : files.entrySet()) {
+                if (entry.getKey() < drainSegment) {
+                    Files.deleteIfExists(entry.getValue());
+                } else {
+                    segments.put(entry.getKey(), map(entry.getValue(), -1));
+                }
+            }
+            // always append to a new segment, the end of a previous segment may be incomplete
+            final long last = Math.max(files.isEmpty() ? -1 : files.lastKey(), drainSegment);
+            newWriteSegment(last + 1);
+            if (!segments.containsKey(drainSegment)) {
+                drainSegment = segments.firstKey();
+                drainPosition = 0;
+            }
+        }
+        // count the writes that were not drained by the previous run
+        synchronized (this) {
+            for (Map.Entry<Long, MappedByteBuffer> entry : segments.tailMap(drainSegment, true).entrySet()) {
+                final MappedByteBuffer buffer = entry.getValue();
+                int position = entry.getKey() == drainSegment ? drainPosition : 0;
+                int length;
+                while (position + LENGTH_SIZE <= buffer.capacity() && (length = buffer.getInt(position)) > 0) {
+                    if (recovered == 0) {
+                        oldestPendingTime = buffer.getLong(position + LENGTH_SIZE);
+                    }
+                    recovered++;
+                    position += LENGTH_SIZE + length;
+                }
+            }
+        }
+        depth.set(recovered);
+        if (recovered > 0) {
+            ROOT_LOGGER.outboxReplaying(recovered, description);
+        }
+    }
+
+    private void drain() {
+        long retryDelay = 0;
+        while (drainer == Thread.currentThread()) {
+            final List<Record> batch = readBatch();
+            if (batch.isEmpty()) {
+                synchronized (this) {
+                    if (!running) {
+                        return;
+                    }
+                    if (drainSegment == writeSegment && drainPosition >= writePosition) {
+                        try {
+                            wait(IDLE_WAIT);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                continue;
+            }
+            oldestPendingTime = batch.get(0).time;
+            try {
+                write(batch);
+                retryDelay = 0;
+            } catch (Throwable throwable) {
+                retryDelay = Math.min(MAX_RETRY_DELAY, Math.max(MIN_RETRY_DELAY, retryDelay * 2));
+                ROOT_LOGGER.outboxWriteFailed(description, retryDelay, throwable);
+                try {
+                    Thread.sleep(retryDelay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // write consecutive records of the same collection as one ordered bulk write, so the journal order is kept
+    private void write(List<Record> batch) throws Throwable {
+        int start = 0;
+        while (start < batch.size()) {
+            final String collectionName = batch.get(start).collectionName;
+            int end = start;
+            int malformed = -1;
+            final List models = new ArrayList();
+            while (end < batch.size() && batch.get(end).collectionName.equals(collectionName)) {
+                try {
+                    final Object document = documentParseMethod.invoke(new String(batch.get(end).json, StandardCharsets.UTF_8));
+                    final Object filter = documentCtor.invoke(ID, ((Map) document).get(ID));
+                    models.add(replaceOneModelCtor.invoke(filter, document, upsertOptions));
+                } catch (Throwable throwable) {
+                    // a record that can't be parsed never succeeds, write the records before it and skip it
+                    malformed = end;
+                    failedWrites.incrementAndGet();
+                    ROOT_LOGGER.outboxWriteMalformed(collectionName, description, throwable);
+                    break;
+                }
+                end++;
+            }
+            if (models.isEmpty()) {
+                start = end + 1;
+                continue;
+            }
+            try {
+                final Object collection = getCollectionMethod.invoke(database, collectionName, documentClass);
+                bulkWriteMethod.invoke(collection, models, bulkWriteOptions);
+            } catch (Throwable throwable) {
+                final int failed = firstWriteError(throwable);
+                if (failed < 0) {
+                    // retried, the records before this bulk write are done
+                    if (start > 0) {
+                        commit(batch.get(start - 1), start);
+                    }
+                    throw throwable;
+                }
+                // the write error is permanent, the writes before it are done and the writes after it are retried
+                failedWrites.incrementAndGet();
+                ROOT_LOGGER.outboxWriteDropped(collectionName, description, throwable);
+                commit(batch.get(start + failed), start + failed + 1);
+                return;
+            }
+            start = malformed < 0 ? end : end + 1;
+        }
+        commit(batch.get(batch.size() - 1), batch.size());
+    }
+
+    // index of the first failed write in an ordered bulk write or -1 if there are no write errors
+    private int firstWriteError(Throwable throwable) {
+        if (!bulkWriteExceptionClass.isInstance(throwable)) {
+            return -1;
+        }
+        int result = -1;
+        try {
+            for (Object writeError : (List) getWriteErrorsMethod.invoke(throwable)) {
+                final int index = (int) getIndexMethod.invoke(writeError);
+                ROOT_LOGGER.tracef("outbox write error %s", getMessageMethod.invoke(writeError));
+                result = result < 0 ? index : Math.min(result, index);
+            }
+        } catch (Throwable ignore) {
+            return -1;
+        }
+        return result;
+    }
+
+    private void commit(Record last, int count) {
+        drainSegment = last.segment;
+        drainPosition = last.end;
+        depth.addAndGet(-count);
+        checkpoint();
+        deleteDrainedSegments();
+    }
+
+    private void checkpoint() {
+        final Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        try {
+            final Path temp = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            Files.write(temp, (drainSegment + " " + drainPosition).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // the writes after the last checkpoint are replayed again, which is idempotent
+            ROOT_LOGGER.outboxCheckpointFailed(description, checkpointFile, e);
+        }
+    }
+
+    private void deleteDrainedSegments() {
+        synchronized (this) {
+            while (!segments.isEmpty() && segments.firstKey() < drainSegment) {
+                final long segment = segments.pollFirstEntry().getKey();
+                try {
+                    Files.deleteIfExists(segmentFile(segment));
+                } catch (IOException e) {
+                    ROOT_LOGGER.outboxSegmentDeleteFailed(segmentFile(segment), e);
+                }
+            }
+        }
+    }
+
+    // read up to batchSize records after the drained position
+    private List<Record> readBatch() {
+        final List<Record> batch = new ArrayList<>();
+        long segment = drainSegment;
+        int position = drainPosition;
+        while (batch.size() < batchSize) {
+            final MappedByteBuffer buffer;
+            synchronized (this) {
+                if (segment == writeSegment && position >= writePosition) {
+                    break;
+                }
+                buffer = segments.get(segment);
+            }
+            final int length = position + LENGTH_SIZE <= buffer.capacity() ? buffer.getInt(position) : END_OF_SEGMENT;
+            if (length <= 0) {
+                // end of segment (zero if the previous run stopped while the segment was appended to)
+                final Long next;
+                synchronized (this) {
+                    next = segments.higherKey(segment);
+                }
+                if (next == null) {
+                    break;
+                }
+                if (!batch.isEmpty()) {
+                    // the next batch starts in the next segment
+                    break;
+                }
+                segment = next;
+                position = 0;
+                drainSegment = segment;
+                drainPosition = position;
+                continue;
+            }
+            final ByteBuffer record = buffer.duplicate();
+            record.position(position + LENGTH_SIZE);
+            final long time = record.getLong();
+            final byte[] name = new byte[record.getShort()];
+            record.get(name);
+            final byte[] json = new byte[length - RECORD_HEADER - name.length];
+            record.get(json);
+            position += LENGTH_SIZE + length;
+            batch.add(new Record(new String(name, StandardCharsets.UTF_8), json, time, segment, position));
+        }
+        return batch;
+    }
+
+    // guarded by this
+    private void newWriteSegment(long segment) {
+        try {
+            writeBuffer = map(segmentFile(segment), segmentSize);
+        } catch (IOException e) {
+            throw new RuntimeException("could not create outbox segment " + segmentFile(segment) + " for " + description, e);
+        }
+        writeSegment = segment;
+        writePosition = 0;
+        segments.put(segment, writeBuffer);
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            if (size > 0) {
+                randomAccessFile.setLength(size);
+            }
+            // the mapping stays valid after the channel is closed
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+        }
+    }
+
+    private static final class Record {
+        private final String collectionName;
+        private final byte[] json;
+        private final long time;
+        private final long segment;
+        private final int end;  // position after the record
+
+        Record(String collectionName, byte[] json, long time, long segment, int end) {
+            this.collectionName = collectionName;
+            this.json = json;
+            this.time = time;
+            this.segment = segment;
+            this.end = end;
+        }
+    }
+}
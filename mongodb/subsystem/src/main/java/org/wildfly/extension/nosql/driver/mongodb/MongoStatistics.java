@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MongoStatistics collects the per profile command, connection pool and server monitor statistics, by registering
+ * a <code>CommandListener</code>, <code>ConnectionPoolListener</code> and <code>ServerMonitorListener</code> on the
+ * <code>MongoClientOptions.Builder</code> of the profile.
+ *
+ * The listeners are dynamic proxies, so that the driver classes are not statically referenced.  Listeners that the
+ * MongoDB driver doesn't support (pool + server monitor listeners need driver 3.5 or later) are skipped.  The event
+ * accessors are resolved once, when the statistics are created.
+ */
+public class MongoStatistics {
+
+    private static final String COMMANDLISTENERCLASS = "com.mongodb.event.CommandListener";
+    private static final String CONNECTIONPOOLLISTENERCLASS = "com.mongodb.event.ConnectionPoolListener";
+    private static final String SERVERMONITORLISTENERCLASS = "com.mongodb.event.ServerMonitorListener";
+    private static final String COMMANDSUCCEEDEDEVENTCLASS = "com.mongodb.event.CommandSucceededEvent";
+    private static final String COMMANDFAILEDEVENTCLASS = "com.mongodb.event.CommandFailedEvent";
+    private static final String SERVERHEARTBEATSUCCEEDEDEVENTCLASS = "com.mongodb.event.ServerHeartbeatSucceededEvent";
+
+    private final String profileName;
+    private final Map<String, LatencyHistogram> commandLatency = new ConcurrentHashMap<>();
+    private final AtomicLong commandFailures = new AtomicLong();
+    private final AtomicInteger poolCheckedOut = new AtomicInteger();
+    private final LatencyHistogram poolWaitTime = new LatencyHistogram();
+    private final AtomicLong poolCheckOutFailures = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsClosed = new AtomicLong();
+    private final LatencyHistogram heartbeatRoundTripTime = new LatencyHistogram();
+    private final AtomicLong heartbeatFailures = new AtomicLong();
+    // nano time that the current thread started waiting for a pooled connection
+    private final ThreadLocal<Long> checkOutStarted = new ThreadLocal<>();
+    // driver 3.10+ send both the deprecated and replacement connection events, only count the replacement events then
+    private volatile boolean connectionCreatedEvents;
+    private volatile boolean connectionClosedEvents;
+    // event accessors, null if the driver doesn't have the event class
+    private final MethodHandle succeededCommandNameMethod;
+    private final MethodHandle succeededElapsedTimeMethod;
+    private final MethodHandle failedCommandNameMethod;
+    private final MethodHandle failedElapsedTimeMethod;
+    private final MethodHandle heartbeatElapsedTimeMethod;
+
+    /**
+     * @param classLoader is the MongoDB driver classloader
+     */
+    public MongoStatistics(String profileName, ClassLoader classLoader) {
+        this.profileName = profileName;
+        succeededCommandNameMethod = accessor(classLoader, COMMANDSUCCEEDEDEVENTCLASS, "getCommandName", MethodType.methodType(String.class));
+        succeededElapsedTimeMethod = accessor(classLoader, COMMANDSUCCEEDEDEVENTCLASS, "getElapsedTime", MethodType.methodType(long.class, TimeUnit.class));
+        failedCommandNameMethod = accessor(classLoader, COMMANDFAILEDEVENTCLASS, "getCommandName", MethodType.methodType(String.class));
+        failedElapsedTimeMethod = accessor(classLoader, COMMANDFAILEDEVENTCLASS, "getElapsedTime", MethodType.methodType(long.class, TimeUnit.class));
+        heartbeatElapsedTimeMethod = accessor(classLoader, SERVERHEARTBEATSUCCEEDEDEVENTCLASS, "getElapsedTime", MethodType.methodType(long.class, TimeUnit.class));
+    }
+
+    private MethodHandle accessor(ClassLoader classLoader, String eventClassName, String name, MethodType type) {
+        try {
+            final Class eventClass = classLoader.loadClass(eventClassName);
+            // the event argument is passed as an Object by the listener proxies
+            return MethodHandles.publicLookup().findVirtual(eventClass, name, type)
+                    .asType(type.insertParameterTypes(0, Object.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            ROOT_LOGGER.tracef("MongoDB driver doesn't support %s.%s, the statistics that use it are not collected for profile %s", eventClassName, name, profileName);
+            return null;
+        }
+    }
+
+    /**
+     * Register the statistics listeners on the MongoClientOptions.Builder.
+     */
+    void register(Object /* MongoClientOptions.Builder */ builder) {
+        addListener(builder, "addCommandListener", COMMANDLISTENERCLASS, new CommandListenerHandler());
+        addListener(builder, "addConnectionPoolListener", CONNECTIONPOOLLISTENERCLASS, new ConnectionPoolListenerHandler());
+        addListener(builder, "addServerMonitorListener", SERVERMONITORLISTENERCLASS, new ServerMonitorListenerHandler());
+    }
+
+    private void addListener(Object builder, String addMethodName, String listenerClassName, InvocationHandler handler) {
+        try {
+            final Class listenerClass = builder.getClass().getClassLoader().loadClass(listenerClassName);
+            final Method addMethod = builder.getClass().getMethod(addMethodName, listenerClass);
+            addMethod.invoke(builder, Proxy.newProxyInstance(listenerClass.getClassLoader(), new Class[]{listenerClass}, handler));
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            ROOT_LOGGER.tracef("MongoDB driver doesn't support %s, %s statistics are not collected for profile %s", addMethodName, listenerClassName, profileName);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("could not register " + listenerClassName + " for profile " + profileName, e);
+        }
+    }
+
+    /**
+     * @return command name to command latency histogram
+     */
+    public Map<String, LatencyHistogram> getCommandLatency() {
+        return Collections.unmodifiableMap(commandLatency);
+    }
+
+    public long getCommandFailures() {
+        return commandFailures.get();
+    }
+
+    public int getPoolCheckedOut() {
+        return poolCheckedOut.get();
+    }
+
+    public LatencyHistogram getPoolWaitTime() {
+        return poolWaitTime;
+    }
+
+    public long getPoolCheckOutFailures() {
+        return poolCheckOutFailures.get();
+    }
+
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    public long getConnectionsClosed() {
+        return connectionsClosed.get();
+    }
+
+    public LatencyHistogram getHeartbeatRoundTripTime() {
+        return heartbeatRoundTripTime;
+    }
+
+    public long getHeartbeatFailures() {
+        return heartbeatFailures.get();
+    }
+
+    private LatencyHistogram commandHistogram(String commandName) {
+        LatencyHistogram histogram = commandLatency.get(commandName);
+        if (histogram == null) {
+            histogram = commandLatency.computeIfAbsent(commandName, name -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    private void checkOutStarted() {
+        if (checkOutStarted.get() == null) {
+            checkOutStarted.set(System.nanoTime());
+        }
+    }
+
+    private void checkOutEnded(boolean success) {
+        final Long started = checkOutStarted.get();
+        if (started != null) {
+            checkOutStarted.remove();
+            if (success) {
+                poolWaitTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private abstract class ListenerHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                return getClass().getSimpleName() + " for " + profileName;
+            }
+            try {
+                event(method.getName(), args[0]);
+            } catch (Throwable throwable) {
+                // statistics must never break MongoDB operations
+                ROOT_LOGGER.tracef(throwable, "could not handle MongoDB %s event for profile %s", method.getName(), profileName);
+            }
+            return null;
+        }
+
+        abstract void event(String name, Object event) throws Throwable;
+    }
+
+    private class CommandListenerHandler extends ListenerHandler {
+        @Override
+        void event(String name, Object event) throws Throwable {
+            if ("commandSucceeded".equals(name) && succeededCommandNameMethod != null) {
+                final String commandName = (String) succeededCommandNameMethod.invokeExact(event);
+                final long elapsed = (long) succeededElapsedTimeMethod.invokeExact(event, TimeUnit.NANOSECONDS);
+                commandHistogram(commandName).record(elapsed, TimeUnit.NANOSECONDS);
+            } else if ("commandFailed".equals(name) && failedCommandNameMethod != null) {
+                final String commandName = (String) failedCommandNameMethod.invokeExact(event);
+                final long elapsed = (long) failedElapsedTimeMethod.invokeExact(event, TimeUnit.NANOSECONDS);
+                commandHistogram(commandName).record(elapsed, TimeUnit.NANOSECONDS);
+                commandFailures.incrementAndGet();
+            }
+        }
+    }
+
+    private class ConnectionPoolListenerHandler extends ListenerHandler {
+        @Override
+        void event(String name, Object event) {
+            switch (name) {
+                case "waitQueueEntered":            // driver 3.5 - 3.9
+                case "connectionCheckOutStarted":   // driver 3.10+
+                    checkOutStarted();
+                    break;
+                case "connectionCheckedOut":
+                    poolCheckedOut.incrementAndGet();
+                    checkOutEnded(true);
+                    break;
+                case "connectionCheckOutFailed":
+                    poolCheckOutFailures.incrementAndGet();
+                    checkOutEnded(false);
+                    break;
+                case "waitQueueExited":
+                    // driver 3.5 - 3.9 send waitQueueExited before connectionCheckedOut
+                    checkOutEnded(true);
+                    break;
+                case "connectionCheckedIn":
+                    poolCheckedOut.decrementAndGet();
+                    break;
+                case "connectionCreated":
+                    connectionCreatedEvents = true;
+                    connectionsCreated.incrementAndGet();
+                    break;
+                case "connectionAdded":
+                    if (!connectionCreatedEvents) {
+                        connectionsCreated.incrementAndGet();
+                    }
+                    break;
+                case "connectionClosed":
+                    connectionClosedEvents = true;
+                    connectionsClosed.incrementAndGet();
+                    break;
+                case "connectionRemoved":
+                    if (!connectionClosedEvents) {
+                        connectionsClosed.incrementAndGet();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private class ServerMonitorListenerHandler extends ListenerHandler {
+        @Override
+        void event(String name, Object event) throws Throwable {
+            if ("serverHeartbeatSucceeded".equals(name) && heartbeatElapsedTimeMethod != null) {
+                heartbeatRoundTripTime.record((long) heartbeatElapsedTimeMethod.invokeExact(event, TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+            } else if ("serverHeartbeatFailed".equals(name)) {
+                heartbeatFailures.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * MongoTenantDatabases is the bounded, least recently used cache of the tenant <code>MongoDatabase</code> instances of
+ * a profile that enables tenant routing.
+ *
+ * All tenant databases are views on the single profile <code>MongoClient</code>, so the number of connections doesn't
+ * grow with the number of tenants.  Evicting a database only drops the view (and its codec/concern settings), a later
+ * request for the tenant creates a new one.
+ */
+class MongoTenantDatabases {
+
+    private final MongoInteraction mongoInteraction;
+    private final UnaryOperator<Object> wrapper;
+    private final Map<String, Object /* MongoDatabase */> databases;
+
+    MongoTenantDatabases(final int maxSize, MongoInteraction mongoInteraction, UnaryOperator<Object> wrapper) {
+        this.mongoInteraction = mongoInteraction;
+        this.wrapper = wrapper;
+        this.databases = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    Object /* MongoDatabase */ get(String databaseName) {
+        Object result;
+        synchronized (databases) {
+            result = databases.get(databaseName);
+        }
+        if (result == null) {
+            // creating the database view is cheap, so a concurrent request for the same tenant may create it twice
+            try {
+                result = wrapper.apply(mongoInteraction.getDatabase(databaseName));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not use tenant database " + databaseName, throwable);
+            }
+            synchronized (databases) {
+                databases.put(databaseName, result);
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        synchronized (databases) {
+            return databases.size();
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb;
+
+import static org.wildfly.extension.nosql.driver.mongodb.MongoLogger.ROOT_LOGGER;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.modules.ModuleIdentifier;
+import org.wildfly.nosql.common.MethodHandleBuilder;
+import org.wildfly.nosql.common.NoSQLConstants;
+
+/**
+ * MongoWriteBatcher coalesces single document inserts/upserts from many application threads into
+ * <code>MongoCollection.bulkWrite</code> calls, so that N writes cost one server round trip.
+ *
+ * Writes are queued and flushed when <code>write-batch-size</code> writes are pending, or at least every
+ * <code>write-batch-linger</code> milliseconds.  At most <code>write-batch-capacity</code> writes are pending, further
+ * writes are rejected.  Each write gets its own CompletionStage, that completes when the bulk write containing it
+ * completes.  CompletionStages are completed on a separate thread pool, so that dependent stages don't hold up the
+ * batcher thread.
+ *
+ * Ordering (<code>write-batch-ordered</code>) only applies to writes against the same collection, in ordered mode, the
+ * writes that follow a failed write in the same bulk write are not executed and fail as well.
+ *
+ * Ex:
+ * <code>@Inject @Named("MyMongoDB") MongoWriteBatcher batcher;</code>
+ * <code>batcher.insert("events", new Document("type", "click")).thenRun(...);</code>
+ */
+public class MongoWriteBatcher {
+
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final String BSONCLASS = "org.bson.conversions.Bson";
+    private static final String INSERTONEMODELCLASS = "com.mongodb.client.model.InsertOneModel";
+    private static final String REPLACEONEMODELCLASS = "com.mongodb.client.model.ReplaceOneModel";
+    private static final String UPDATEOPTIONSCLASS = "com.mongodb.client.model.UpdateOptions";
+    private static final String BULKWRITEOPTIONSCLASS = "com.mongodb.client.model.BulkWriteOptions";
+    private static final String BULKWRITEEXCEPTIONCLASS = "com.mongodb.MongoBulkWriteException";
+    private static final String BULKWRITEERRORCLASS = "com.mongodb.bulk.BulkWriteError";
+
+    private final ConcurrentLinkedQueue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    // enqueue checks running again after queueing, stop fails the writes that were queued after the final flush
+    private volatile boolean running;
+
+    private final String description;
+    private final int batchSize;
+    private final int capacity;
+    private final long lingerMillis;
+    private final boolean ordered;
+    private final Object /* MongoDatabase */ database;
+    private final Object /* BulkWriteOptions */ bulkWriteOptions;
+    private final Object /* UpdateOptions */ upsertOptions;
+    private final Class bulkWriteExceptionClass;
+
+    private final MethodHandle getCollectionMethod;
+    private final MethodHandle bulkWriteMethod;
+    private final MethodHandle insertOneModelCtor;
+    private final MethodHandle replaceOneModelCtor;
+    private final MethodHandle getWriteErrorsMethod;
+    private final MethodHandle getIndexMethod;
+    private final MethodHandle getMessageMethod;
+
+    private volatile ScheduledExecutorService executor;
+    private volatile ExecutorService completionExecutor;
+
+    private final Runnable sizeFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush(false);
+        }
+    };
+
+    private final Runnable lingerFlush = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush(true);
+            } catch (Throwable throwable) {
+                // an exception would cancel the periodic linger flush
+                ROOT_LOGGER.batchFlushFailed(description, throwable);
+            }
+        }
+    };
+
+    MongoWriteBatcher(ConfigurationBuilder configurationBuilder, Object database) {
+        this.description = configurationBuilder.getDescription();
+        this.batchSize = configurationBuilder.getWriteBatchSize();
+        this.lingerMillis = configurationBuilder.getWriteBatchLinger();
+        this.ordered = configurationBuilder.isWriteBatchOrdered();
+        this.capacity = configurationBuilder.getWriteBatchCapacity();
+        this.database = database;
+
+        MethodHandleBuilder methodHandleBuilder = new MethodHandleBuilder();
+        methodHandleBuilder.classLoader(ModuleIdentifier.fromString(configurationBuilder.getModuleName()));
+        Class bsonClass = methodHandleBuilder.className(BSONCLASS).getTargetClass();
+        Class updateOptionsClass = methodHandleBuilder.className(UPDATEOPTIONSCLASS).getTargetClass();
+        MethodHandle updateOptionsCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        MethodHandle upsertMethod = methodHandleBuilder.method("upsert", boolean.class);
+        Class bulkWriteOptionsClass = methodHandleBuilder.className(BULKWRITEOPTIONSCLASS).getTargetClass();
+        MethodHandle bulkWriteOptionsCtor = methodHandleBuilder.constructor(MethodType.methodType(void.class));
+        MethodHandle orderedMethod = methodHandleBuilder.method("ordered", boolean.class);
+        methodHandleBuilder.className(INSERTONEMODELCLASS);
+        insertOneModelCtor = methodHandleBuilder.declaredConstructor(Object.class);
+        methodHandleBuilder.className(REPLACEONEMODELCLASS);
+        replaceOneModelCtor = methodHandleBuilder.declaredConstructor(bsonClass, Object.class, updateOptionsClass);
+        methodHandleBuilder.className(NoSQLConstants.MONGODATABASECLASS);
+        getCollectionMethod = methodHandleBuilder.method("getCollection", String.class, Class.class);
+        methodHandleBuilder.className(MONGOCOLLECTIONCLASS);
+        bulkWriteMethod = methodHandleBuilder.method("bulkWrite", List.class, bulkWriteOptionsClass);
+        bulkWriteExceptionClass = methodHandleBuilder.className(BULKWRITEEXCEPTIONCLASS).getTargetClass();
+        getWriteErrorsMethod = methodHandleBuilder.method("getWriteErrors");
+        methodHandleBuilder.className(BULKWRITEERRORCLASS);
+        getIndexMethod = methodHandleBuilder.method("getIndex");
+        getMessageMethod = methodHandleBuilder.method("getMessage");
+        try {
+            upsertOptions = upsertMethod.invoke(updateOptionsCtor.invoke(), true);
+            bulkWriteOptions = orderedMethod.invoke(bulkWriteOptionsCtor.invoke(), ordered);
+        } catch (Throwable throwable) {
+            throw new RuntimeException("could not setup write batching for " + description, throwable);
+        }
+    }
+
+    /**
+     * Queue a document insert.
+     *
+     * @param collectionName is the collection in the profile database
+     * @param document is the document to insert, the collection is obtained for the document class
+     * @return CompletionStage that completes when the write is acknowledged
+     */
+    public CompletionStage<Void> insert(String collectionName, Object document) {
+        Objects.requireNonNull(document, "document");
+        return enqueue(new PendingWrite(collectionName, document.getClass(), document, null));
+    }
+
+    /**
+     * Queue a document replacement, that inserts the document if the filter doesn't match.
+     *
+     * @param collectionName is the collection in the profile database
+     * @param filter is the <code>Bson</code> filter that selects the document to replace
+     * @param document is the replacement document, the collection is obtained for the document class
+     * @return CompletionStage that completes when the write is acknowledged
+     */
+    public CompletionStage<Void> upsert(String collectionName, Object filter, Object document) {
+        Objects.requireNonNull(filter, "filter");
+        Objects.requireNonNull(document, "document");
+        return enqueue(new PendingWrite(collectionName, document.getClass(), document, filter));
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    public long getFailedWriteCount() {
+        return failedWrites.get();
+    }
+
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    void start() {
+        final ThreadPoolExecutor completions = new ThreadPoolExecutor(
+                Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "MongoDB write batcher completion " + description + " " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        completions.allowCoreThreadTimeOut(true);
+        completionExecutor = completions;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MongoDB write batcher " + description);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(lingerFlush, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    void stop() {
+        running = false;
+        final ScheduledExecutorService current = executor;
+        executor = null;
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(lingerMillis + TimeUnit.SECONDS.toMillis(30), TimeUnit.MILLISECONDS)) {
+                current.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // write whatever was queued before the batcher was stopped
+        flush(true);
+        // a write queued concurrently with the final flush is rejected, either here or by enqueue
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            queued.decrementAndGet();
+            write.result.completeExceptionally(notStarted());
+        }
+        final ExecutorService completions = completionExecutor;
+        completionExecutor = null;
+        if (completions != null) {
+            // already submitted completions still run
+            completions.shutdown();
+        }
+    }
+
+    private CompletionStage<Void> enqueue(PendingWrite write) {
+        if (!running) {
+            write.result.completeExceptionally(notStarted());
+            return write.result;
+        }
+        final int pending = queued.incrementAndGet();
+        if (pending > capacity) {
+            queued.decrementAndGet();
+            write.result.completeExceptionally(new RejectedExecutionException("write batcher for " + description + " is full, " + capacity + " writes are pending"));
+            return write.result;
+        }
+        queue.add(write);
+        if (!running) {
+            // stopped concurrently, if the write is still queued it may have missed the final flush
+            if (queue.remove(write)) {
+                queued.decrementAndGet();
+                write.result.completeExceptionally(notStarted());
+            }
+            return write.result;
+        }
+        final ScheduledExecutorService current = executor;
+        if (pending >= batchSize && current != null && flushRequested.compareAndSet(false, true)) {
+            try {
+                current.execute(sizeFlush);
+            } catch (RejectedExecutionException ignore) {
+                // stopping, the final flush will write the queued writes
+            }
+        }
+        return write.result;
+    }
+
+    private RejectedExecutionException notStarted() {
+        return new RejectedExecutionException("write batcher for " + description + " is not started");
+    }
+
+    private void flush(boolean all) {
+        flushRequested.set(false);
+        do {
+            final List<PendingWrite> batch = new ArrayList<>(batchSize);
+            PendingWrite write;
+            while (batch.size() < batchSize && (write = queue.poll()) != null) {
+                batch.add(write);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            queued.addAndGet(-batch.size());
+            write(batch);
+        } while (all || queued.get() >= batchSize);
+    }
+
+    private void write(List<PendingWrite> batch) {
+        // one bulk write per collection + document class, in order of arrival
+        final Map<GroupKey, List<PendingWrite>> groups = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            GroupKey key = new GroupKey(write.collectionName, write.documentClass);
+            List<PendingWrite> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(write);
+        }
+        for (Map.Entry<GroupKey, List<PendingWrite>> entry : groups.entrySet()) {
+            bulkWrite(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void bulkWrite(GroupKey key, List<PendingWrite> group) {
+        batches.incrementAndGet();
+        writes.addAndGet(group.size());
+        try {
+            final Object collection = getCollectionMethod.invoke(database, key.collectionName, key.documentClass);
+            final List models = new ArrayList(group.size());
+            for (PendingWrite write : group) {
+                models.add(write.filter == null ?
+                        insertOneModelCtor.invoke(write.document) :
+                        replaceOneModelCtor.invoke(write.filter, write.document, upsertOptions));
+            }
+            bulkWriteMethod.invoke(collection, models, bulkWriteOptions);
+            complete(group, new Throwable[group.size()]);
+        } catch (Throwable throwable) {
+            if (bulkWriteExceptionClass.isInstance(throwable)) {
+                complete(group, failWrites(key, group, throwable));
+            } else {
+                // the failure is returned by the CompletionStages and counted in write-batch-failed-writes
+                ROOT_LOGGER.tracef(throwable, "bulk write of %d documents to %s failed", group.size(), key.collectionName);
+                complete(group, failAll(group, throwable));
+            }
+        }
+    }
+
+    private Throwable[] failAll(List<PendingWrite> group, Throwable throwable) {
+        final Throwable[] failures = new Throwable[group.size()];
+        Arrays.fill(failures, throwable);
+        failedWrites.addAndGet(group.size());
+        return failures;
+    }
+
+    // map the bulk write errors back to the individual writes, by index, a null entry means the write succeeded
+    private Throwable[] failWrites(GroupKey key, List<PendingWrite> group, Throwable bulkWriteException) {
+        final Map<Integer, String> errors = new HashMap<>();
+        int firstError = group.size();
+        try {
+            for (Object writeError : (List) getWriteErrorsMethod.invoke(bulkWriteException)) {
+                int index = (int) getIndexMethod.invoke(writeError);
+                errors.put(index, (String) getMessageMethod.invoke(writeError));
+                firstError = Math.min(firstError, index);
+            }
+        } catch (Throwable throwable) {
+            ROOT_LOGGER.tracef(throwable, "could not read bulk write errors for %s", key.collectionName);
+            return failAll(group, bulkWriteException);
+        }
+        ROOT_LOGGER.tracef(bulkWriteException, "bulk write to %s had %d write errors in %d documents", key.collectionName, errors.size(), group.size());
+        final Throwable[] failures = new Throwable[group.size()];
+        for (int index = 0; index < group.size(); index++) {
+            if (errors.containsKey(index)) {
+                failedWrites.incrementAndGet();
+                failures[index] = new RuntimeException("write to collection " + key.collectionName + " failed: " + errors.get(index), bulkWriteException);
+            } else if (ordered && index > firstError) {
+                failedWrites.incrementAndGet();
+                failures[index] = new RuntimeException("write to collection " + key.collectionName + " was not executed, a previous write in the ordered batch failed", bulkWriteException);
+            } else if (errors.isEmpty()) {
+                // write concern error, the writes may or may not have been applied
+                failedWrites.incrementAndGet();
+                failures[index] = bulkWriteException;
+            }
+        }
+        return failures;
+    }
+
+    // complete the group on the completion executor, so that dependent stages don't run on the batcher thread
+    private void complete(final List<PendingWrite> group, final Throwable[] failures) {
+        final Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                for (int index = 0; index < group.size(); index++) {
+                    if (failures[index] == null) {
+                        group.get(index).result.complete(null);
+                    } else {
+                        group.get(index).result.completeExceptionally(failures[index]);
+                    }
+                }
+            }
+        };
+        final ExecutorService completions = completionExecutor;
+        if (completions != null) {
+            try {
+                completions.execute(completion);
+                return;
+            } catch (RejectedExecutionException ignore) {
+                // stopped, complete on this thread
+            }
+        }
+        completion.run();
+    }
+
+    private static final class PendingWrite {
+        private final String collectionName;
+        private final Class documentClass;
+        private final Object document;
+        private final Object /* Bson */ filter;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingWrite(String collectionName, Class documentClass, Object document, Object filter) {
+            this.collectionName = Objects.requireNonNull(collectionName, "collectionName");
+            this.documentClass = documentClass;
+            this.document = document;
+            this.filter = filter;
+        }
+    }
+
+    private static final class GroupKey {
+        private final String collectionName;
+        private final Class documentClass;
+
+        GroupKey(String collectionName, Class documentClass) {
+            this.collectionName = collectionName;
+            this.documentClass = documentClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey) o;
+            return collectionName.equals(other.collectionName) && documentClass.equals(other.documentClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * collectionName.hashCode() + documentClass.hashCode();
+        }
+    }
+}
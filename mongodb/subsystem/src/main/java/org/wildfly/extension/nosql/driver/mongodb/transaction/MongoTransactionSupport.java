@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb.transaction;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * MongoTransactionSupport binds a MongoDB <code>ClientSession</code> to the active JTA transaction, the first time that
+ * a profile <code>MongoDatabase</code>/<code>MongoCollection</code> is used in the JTA transaction.
+ *
+ * The ClientSession is kept in the TransactionSynchronizationRegistry and a {@link MongoXAResourceImpl} (LastResource)
+ * is enlisted, that starts the MongoDB transaction and commits/aborts it when the JTA transaction ends, so all writes
+ * in the JTA transaction are committed in one server round trip.
+ *
+ * Requires MongoDB driver 3.8 or later and a replica set.
+ */
+public class MongoTransactionSupport {
+
+    private static final String SESSION_RESOURCE = "_nosqlMONGOSESSION_";
+    private static final String CLIENTSESSIONCLASS = "com.mongodb.client.ClientSession";
+    private static final String MONGODATABASECLASS = "com.mongodb.client.MongoDatabase";
+    private static final String MONGOCOLLECTIONCLASS = "com.mongodb.client.MongoCollection";
+    private static final Method NO_SESSION_METHOD;
+
+    static {
+        try {
+            NO_SESSION_METHOD = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final TransactionManager transactionManager;
+    private final TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+    private final String profileName;
+    private final String jndiName;
+    private final Object /* MongoClient */ client;
+    private final Class clientSessionClass;
+    private final Class mongoDatabaseClass;
+    private final Class mongoCollectionClass;
+    private final MethodHandle startSessionMethod;
+    private final MethodHandle startTransactionMethod;
+    private final MethodHandle commitTransactionMethod;
+    private final MethodHandle abortTransactionMethod;
+    private final MethodHandle closeSessionMethod;
+    // method to the equivalent method that takes a ClientSession as first parameter, or NO_SESSION_METHOD
+    private final Map<Method, Method> sessionMethods = new ConcurrentHashMap<>();
+
+    /**
+     * @throws ReflectiveOperationException if the MongoDB driver doesn't support transactions
+     */
+    public MongoTransactionSupport(Object client, TransactionManager transactionManager, TransactionSynchronizationRegistry transactionSynchronizationRegistry,
+                                   String profileName, String jndiName) throws ReflectiveOperationException {
+        this.client = client;
+        this.transactionManager = transactionManager;
+        this.transactionSynchronizationRegistry = transactionSynchronizationRegistry;
+        this.profileName = profileName;
+        this.jndiName = jndiName;
+        final ClassLoader classLoader = client.getClass().getClassLoader();
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        clientSessionClass = classLoader.loadClass(CLIENTSESSIONCLASS);
+        mongoDatabaseClass = classLoader.loadClass(MONGODATABASECLASS);
+        mongoCollectionClass = classLoader.loadClass(MONGOCOLLECTIONCLASS);
+        startSessionMethod = lookup.unreflect(client.getClass().getMethod("startSession"));
+        startTransactionMethod = lookup.unreflect(clientSessionClass.getMethod("startTransaction"));
+        commitTransactionMethod = lookup.unreflect(clientSessionClass.getMethod("commitTransaction"));
+        abortTransactionMethod = lookup.unreflect(clientSessionClass.getMethod("abortTransaction"));
+        closeSessionMethod = lookup.unreflect(clientSessionClass.getMethod("close"));
+    }
+
+    /**
+     * @return MongoDatabase proxy that uses the JTA transaction ClientSession
+     */
+    public Object /* MongoDatabase */ wrap(Object database) {
+        return wrapResult(database);
+    }
+
+    Object wrapResult(Object result) {
+        if (result == null || Proxy.isProxyClass(result.getClass())) {
+            return result;
+        }
+        if (mongoCollectionClass.isInstance(result)) {
+            return Proxy.newProxyInstance(mongoCollectionClass.getClassLoader(), new Class[] {mongoCollectionClass}, new TransactionalProxy(result, this));
+        }
+        if (mongoDatabaseClass.isInstance(result)) {
+            return Proxy.newProxyInstance(mongoDatabaseClass.getClassLoader(), new Class[] {mongoDatabaseClass}, new TransactionalProxy(result, this));
+        }
+        return result;
+    }
+
+    /**
+     * @return ClientSession method overload that should be invoked instead of method, or null if there is none.
+     */
+    Method sessionMethod(Method method) {
+        Method result = sessionMethods.get(method);
+        if (result == null) {
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            final Class<?>[] sessionParameterTypes = new Class<?>[parameterTypes.length + 1];
+            sessionParameterTypes[0] = clientSessionClass;
+            System.arraycopy(parameterTypes, 0, sessionParameterTypes, 1, parameterTypes.length);
+            try {
+                result = method.getDeclaringClass().getMethod(method.getName(), sessionParameterTypes);
+            } catch (NoSuchMethodException e) {
+                result = NO_SESSION_METHOD;
+            }
+            sessionMethods.put(method, result);
+        }
+        return result != NO_SESSION_METHOD ? result : null;
+    }
+
+    /**
+     * @return ClientSession of the active JTA transaction or null if there is no active JTA transaction.
+     * @throws IllegalStateException if the JTA transaction is marked for rollback and no ClientSession is enlisted yet
+     */
+    Object /* ClientSession */ currentSession() throws SystemException {
+        final int txstatus = transactionManager.getStatus();
+        if (txstatus != Status.STATUS_ACTIVE && txstatus != Status.STATUS_MARKED_ROLLBACK) {
+            return null;
+        }
+        Object session = transactionSynchronizationRegistry.getResource(SESSION_RESOURCE + profileName);
+        if (session == null) {
+            if (txstatus == Status.STATUS_MARKED_ROLLBACK) {
+                // enlisting would fail, and running the operation outside of the transaction would not roll it back
+                throw new IllegalStateException("JTA transaction is marked for rollback, " + profileName + " operation is not started");
+            }
+            session = registerSessionWithJTATransaction();
+        }
+        return session;
+    }
+
+    private Object registerSessionWithJTATransaction() {
+        final SessionTransactionControl transactionControl = new SessionTransactionControl();
+        final MongoXAResourceImpl resource = new MongoXAResourceImpl(transactionControl, jndiName, null, null);
+        try {
+            // XAResource.start will start the ClientSession + MongoDB transaction
+            transactionManager.getTransaction().enlistResource(resource);
+        } catch (RollbackException e) {
+            throw new RuntimeException(e);
+        } catch (SystemException e) {
+            throw new RuntimeException(e);
+        }
+        transactionSynchronizationRegistry.putResource(SESSION_RESOURCE + profileName, transactionControl.session);
+        return transactionControl.session;
+    }
+
+    private class SessionTransactionControl implements TransactionControl {
+        private Object /* ClientSession */ session;
+
+        @Override
+        public Object beginTransaction() {
+            try {
+                session = startSessionMethod.invoke(client);
+                startTransactionMethod.invoke(session);
+                return session;
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not begin transaction for " + profileName, throwable);
+            }
+        }
+
+        @Override
+        public void success() {
+            try {
+                commitTransactionMethod.invoke(session);
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not commit transaction for " + profileName, throwable);
+            }
+        }
+
+        @Override
+        public void failure() {
+            try {
+                abortTransactionMethod.invoke(session);
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not abort transaction for " + profileName, throwable);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                closeSessionMethod.invoke(session);
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not close session for " + profileName, throwable);
+            }
+        }
+    }
+}
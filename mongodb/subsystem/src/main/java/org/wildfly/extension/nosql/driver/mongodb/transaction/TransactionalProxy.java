@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.driver.mongodb.transaction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * TransactionalProxy proxies a MongoDatabase or MongoCollection, so that operations invoked while a JTA transaction is
+ * active, are invoked with the ClientSession that is bound to the JTA transaction.
+ *
+ * Operations that don't have a ClientSession overload are invoked as is, returned MongoDatabase/MongoCollection
+ * instances (e.g. from getCollection or withWriteConcern) are also proxied.
+ */
+public class TransactionalProxy implements InvocationHandler {
+
+    private final Object underlying;
+    private final MongoTransactionSupport transactionSupport;
+
+    TransactionalProxy(Object underlying, MongoTransactionSupport transactionSupport) {
+        this.underlying = underlying;
+        this.transactionSupport = transactionSupport;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if (method.getName().equals("equals")) {
+                return proxy == args[0];
+            } else if (method.getName().equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return method.invoke(underlying, args);
+        }
+        try {
+            // operations without a ClientSession overload (getCollection, withWriteConcern, getName...) don't enlist
+            final Method sessionMethod = transactionSupport.sessionMethod(method);
+            if (sessionMethod != null) {
+                final Object session = transactionSupport.currentSession();
+                if (session != null) {
+                    final Object[] sessionArgs = new Object[args != null ? args.length + 1 : 1];
+                    sessionArgs[0] = session;
+                    if (args != null) {
+                        System.arraycopy(args, 0, sessionArgs, 1, args.length);
+                    }
+                    return transactionSupport.wrapResult(sessionMethod.invoke(underlying, sessionArgs));
+                }
+            }
+            return transactionSupport.wrapResult(method.invoke(underlying, args));
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
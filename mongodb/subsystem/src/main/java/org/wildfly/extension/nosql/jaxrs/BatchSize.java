@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.jaxrs;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Cursor batch size used by {@link MongoIterableWriter} when writing the <code>MongoIterable</code> returned by a
+ * JAX-RS resource method.  A request may override it with the <code>X-Batch-Size</code> request header.
+ *
+ * Ex:
+ * <code>@GET @Produces(MediaType.APPLICATION_JSON) @BatchSize(1000) public FindIterable&lt;RawBsonDocument&gt; orders()</code>
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface BatchSize {
+
+    /**
+     * @return number of documents fetched per cursor batch
+     */
+    int value();
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.jaxrs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * GridFSStreamingOutput streams a GridFS file to a JAX-RS response, honouring a single HTTP byte range request
+ * (<code>Range: bytes=first-last</code>, <code>bytes=first-</code> or <code>bytes=-suffix</code>).
+ *
+ * The file is read chunk by chunk into a pooled buffer and written to the response, so a download uses constant memory
+ * regardless of the file size, and the chunks before the range start are skipped instead of being read.  The chunks
+ * cursor is only opened when the entity is written, so nothing is left open for a HEAD request or an aborted response.
+ *
+ * Ex:
+ * <pre>
+ *    &#064;Inject &#064;Named("MyMongoDB") GridFSBucket bucket;
+ *
+ *    &#064;GET &#064;Path("{id}")
+ *    public Response media(&#064;PathParam("id") String id, &#064;HeaderParam("Range") String range) {
+ *        return GridFSStreamingOutput.response(bucket, new ObjectId(id), range);
+ *    }
+ * </pre>
+ */
+public class GridFSStreamingOutput implements StreamingOutput {
+
+    private static final String GRIDFSBUCKETCLASS = "com.mongodb.client.gridfs.GridFSBucket";
+    private static final String GRIDFSDOWNLOADSTREAMCLASS = "com.mongodb.client.gridfs.GridFSDownloadStream";
+    private static final String GRIDFSFILECLASS = "com.mongodb.client.gridfs.model.GridFSFile";
+    private static final String GRIDFSFINDITERABLECLASS = "com.mongodb.client.gridfs.GridFSFindIterable";
+    private static final String FILTERSCLASS = "com.mongodb.client.model.Filters";
+    private static final String BSONCLASS = "org.bson.conversions.Bson";
+    private static final String MONGOGRIDFSEXCEPTIONCLASS = "com.mongodb.MongoGridFSException";
+    private static final String BYTES_UNIT = "bytes";
+    // chunks fetched per cursor batch
+    private static final int CHUNK_BATCH_SIZE = 4;
+    // default GridFS chunk size (255KB)
+    private static final int BUFFER_SIZE = 255 * 1024;
+    private static final int BUFFER_POOL_SIZE = 32;
+
+    private static final BlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+    // MongoDB driver classloader to driver method handles
+    private static final Map<ClassLoader, GridFSSupport> gridFSSupport = new ConcurrentHashMap<>();
+
+    private final GridFSSupport support;
+    private final Object /* GridFSBucket */ bucket;
+    private final Object id;
+    private final long first;
+    private final long length;
+
+    private GridFSStreamingOutput(GridFSSupport support, Object bucket, Object id, long first, long length) {
+        this.support = support;
+        this.bucket = bucket;
+        this.id = id;
+        this.first = first;
+        this.length = length;
+    }
+
+    /**
+     * @param bucket     GridFSBucket to read the file from
+     * @param id         file id, either an <code>ObjectId</code> or a <code>BsonValue</code>
+     * @param rangeHeader value of the HTTP Range request header or null
+     * @return 200 (OK) response with the whole file, 206 (Partial Content) response with the requested range or
+     *         416 (Requested Range Not Satisfiable) response.
+     */
+    public static Response response(Object /* GridFSBucket */ bucket, Object id, String rangeHeader) {
+        final GridFSSupport support = support(bucket.getClass().getClassLoader());
+        // only the file document is read here, the chunks are read by write()
+        final Object file = support.findFile(bucket, id);
+        if (file == null) {
+            throw new WebApplicationException("no GridFS file with id " + id, Response.Status.NOT_FOUND);
+        }
+        final long fileLength = (Long) support.invoke(support.getLengthMethod, file);
+        final String contentType = (String) support.invoke(support.getContentTypeMethod, file);
+
+        long first = 0;
+        long last = fileLength - 1;
+        boolean partial = false;
+        if (rangeHeader != null && rangeHeader.startsWith(BYTES_UNIT + "=") && rangeHeader.indexOf(',') < 0) {
+            // multiple ranges are not supported, the whole file is returned for them
+            final String range = rangeHeader.substring(BYTES_UNIT.length() + 1).trim();
+            final int dash = range.indexOf('-');
+            try {
+                if (dash == 0) {
+                    // a zero suffix length (bytes=-0) is unsatisfiable
+                    final long suffix = Long.parseLong(range.substring(1));
+                    first = suffix > 0 ? Math.max(0, fileLength - suffix) : fileLength;
+                    partial = true;
+                } else if (dash > 0) {
+                    final long requestedFirst = Long.parseLong(range.substring(0, dash));
+                    final long requestedLast = dash < range.length() - 1 ? Long.parseLong(range.substring(dash + 1)) : Long.MAX_VALUE;
+                    // a range that ends before it starts is invalid, the whole file is returned for it (RFC 7233)
+                    if (requestedFirst <= requestedLast) {
+                        first = requestedFirst;
+                        last = Math.min(last, requestedLast);
+                        partial = true;
+                    }
+                }
+            } catch (NumberFormatException ignore) {
+                // invalid range values are ignored
+                first = 0;
+                last = fileLength - 1;
+                partial = false;
+            }
+            if (partial && first >= fileLength) {
+                return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header("Content-Range", BYTES_UNIT + " */" + fileLength)
+                        .build();
+            }
+        }
+        final long length = last - first + 1;
+        final Response.ResponseBuilder builder = partial ?
+                Response.status(Response.Status.PARTIAL_CONTENT)
+                        .header("Content-Range", BYTES_UNIT + " " + first + "-" + last + "/" + fileLength) :
+                Response.ok();
+        return builder.entity(new GridFSStreamingOutput(support, bucket, id, first, length))
+                .type(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM)
+                .header("Accept-Ranges", BYTES_UNIT)
+                .header(HttpHeaders.CONTENT_LENGTH, length)
+                .build();
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        final InputStream downloadStream = support.openDownloadStream(bucket, id);
+        byte[] buffer = bufferPool.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        try {
+            support.invoke(support.batchSizeMethod, downloadStream, CHUNK_BATCH_SIZE);
+            long skip = first;
+            while (skip > 0) {
+                final long skipped = downloadStream.skip(skip);
+                if (skipped <= 0) {
+                    throw new IOException("GridFS file is shorter than its length");
+                }
+                skip -= skipped;
+            }
+            long remaining = length;
+            while (remaining > 0) {
+                final int read = downloadStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("GridFS file is shorter than its length");
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            bufferPool.offer(buffer);
+            close(downloadStream);
+        }
+    }
+
+    private static void close(InputStream downloadStream) {
+        try {
+            downloadStream.close();
+        } catch (IOException ignore) {
+            // chunks cursor is closed
+        }
+    }
+
+    private static GridFSSupport support(ClassLoader classLoader) {
+        GridFSSupport result = gridFSSupport.get(classLoader);
+        if (result == null) {
+            result = new GridFSSupport(classLoader);
+            gridFSSupport.put(classLoader, result);
+        }
+        return result;
+    }
+
+    private static class GridFSSupport {
+        private final Method[] openDownloadStreamMethods;
+        private final MethodHandle findMethod;
+        private final MethodHandle firstMethod;
+        private final MethodHandle eqMethod;
+        private final MethodHandle batchSizeMethod;
+        private final MethodHandle getLengthMethod;
+        private final MethodHandle getContentTypeMethod;
+
+        GridFSSupport(ClassLoader classLoader) {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            try {
+                Class bucketClass = classLoader.loadClass(GRIDFSBUCKETCLASS);
+                Class downloadStreamClass = classLoader.loadClass(GRIDFSDOWNLOADSTREAMCLASS);
+                Class fileClass = classLoader.loadClass(GRIDFSFILECLASS);
+                // openDownloadStream(ObjectId id) and openDownloadStream(BsonValue id)
+                openDownloadStreamMethods = Arrays.stream(bucketClass.getMethods())
+                        .filter(method -> method.getName().equals("openDownloadStream") && method.getParameterCount() == 1)
+                        .toArray(Method[]::new);
+                Class bsonClass = classLoader.loadClass(BSONCLASS);
+                findMethod = lookup.unreflect(bucketClass.getMethod("find", bsonClass));
+                firstMethod = lookup.unreflect(classLoader.loadClass(GRIDFSFINDITERABLECLASS).getMethod("first"));
+                eqMethod = lookup.unreflect(classLoader.loadClass(FILTERSCLASS).getMethod("eq", String.class, Object.class));
+                batchSizeMethod = lookup.unreflect(downloadStreamClass.getMethod("batchSize", int.class));
+                getLengthMethod = lookup.unreflect(fileClass.getMethod("getLength"));
+                getContentTypeMethod = lookup.unreflect(fileClass.getMethod("getContentType"));
+            } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+                throw new RuntimeException("could not setup GridFS support", e);
+            }
+        }
+
+        // GridFSFile with the id or null
+        Object findFile(Object bucket, Object id) {
+            return invoke(firstMethod, invoke(findMethod, bucket, invoke(eqMethod, "_id", id)));
+        }
+
+        InputStream openDownloadStream(Object bucket, Object id) {
+            for (Method method : openDownloadStreamMethods) {
+                if (method.getParameterTypes()[0].isInstance(id)) {
+                    try {
+                        return (InputStream) method.invoke(bucket, id);
+                    } catch (InvocationTargetException e) {
+                        if (e.getCause().getClass().getName().equals(MONGOGRIDFSEXCEPTIONCLASS)) {
+                            // no file with the id
+                            throw new WebApplicationException(e.getCause(), Response.Status.NOT_FOUND);
+                        }
+                        if (e.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw new RuntimeException(e.getCause());
+                    } catch (IllegalAccessException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("GridFS file id " + id + " is not an ObjectId or BsonValue");
+        }
+
+        Object invoke(MethodHandle methodHandle, Object... args) {
+            try {
+                return methodHandle.invokeWithArguments(args);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+        }
+    }
+}
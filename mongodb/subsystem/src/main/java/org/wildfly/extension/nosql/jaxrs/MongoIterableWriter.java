@@ -0,0 +1,244 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.jaxrs;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * MongoIterableWriter is an optional JAX-RS provider that streams a <code>MongoIterable</code> (e.g. <code>FindIterable</code>,
+ * <code>AggregateIterable</code>) returned from a resource method to the response, as a JSON array.
+ *
+ * The cursor is iterated while the response is written, so the result set is never materialized.
+ * <code>RawBsonDocument</code> results are converted from their BSON bytes straight to the response writer (use
+ * <code>collection.find(RawBsonDocument.class)</code> or <code>collection.withDocumentClass(RawBsonDocument.class)</code>),
+ * other document classes are written with their <code>toJson()</code> method.
+ *
+ * The cursor batch size can be set per resource method with {@link BatchSize}, and per request with the
+ * <code>X-Batch-Size</code> request header, that overrides the resource method batch size.
+ *
+ * Applications enable the provider by returning it from <code>Application.getClasses()</code> or by listing it in the
+ * <code>resteasy.providers</code> context parameter.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class MongoIterableWriter implements MessageBodyWriter<Iterable<?>> {
+
+    private static final String MONGOITERABLECLASS = "com.mongodb.client.MongoIterable";
+    private static final String RAWBSONDOCUMENTCLASS = "org.bson.RawBsonDocument";
+    private static final String BSONBINARYREADERCLASS = "org.bson.BsonBinaryReader";
+    private static final String BSONREADERCLASS = "org.bson.BsonReader";
+    private static final String JSONWRITERCLASS = "org.bson.json.JsonWriter";
+    private static final int WRITER_BUFFER_SIZE = 8192;
+
+    /**
+     * Request header with the cursor batch size (a positive number of documents) for this request.
+     */
+    public static final String BATCH_SIZE_HEADER = "X-Batch-Size";
+
+    // MongoDB driver classloader to driver method handles
+    private final Map<ClassLoader, BsonSupport> bsonSupport = new ConcurrentHashMap<>();
+
+    @Context
+    private HttpHeaders headers;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Iterable.class.isAssignableFrom(type) && isMongoIterable(type);
+    }
+
+    @Override
+    public long getSize(Iterable<?> iterable, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Iterable<?> iterable, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+        final BsonSupport bson = bsonSupport(type.getClassLoader());
+        final int batchSize = batchSize(annotations);
+        if (batchSize > 0) {
+            iterable = bson.batchSize(iterable, batchSize);
+        }
+        // the response writer is the only buffer, that is reused for all documents
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(entityStream, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+        final Iterator<?> cursor = iterable.iterator();
+        try {
+            writer.write('[');
+            boolean first = true;
+            while (cursor.hasNext()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                bson.write(cursor.next(), writer);
+            }
+            writer.write(']');
+            writer.flush();
+        } finally {
+            if (cursor instanceof Closeable) {
+                ((Closeable) cursor).close();
+            }
+        }
+    }
+
+    private BsonSupport bsonSupport(ClassLoader classLoader) {
+        BsonSupport result = bsonSupport.get(classLoader);
+        if (result == null) {
+            result = bsonSupport.computeIfAbsent(classLoader, BsonSupport::new);
+        }
+        return result;
+    }
+
+    // batch size of the request header, or of the resource method, zero keeps the driver default
+    private int batchSize(Annotation[] annotations) {
+        final String header = headers != null ? headers.getHeaderString(BATCH_SIZE_HEADER) : null;
+        if (header != null) {
+            try {
+                final int result = Integer.parseInt(header.trim());
+                if (result > 0) {
+                    return result;
+                }
+            } catch (NumberFormatException ignore) {
+                // rejected below
+            }
+            throw new WebApplicationException(Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.TEXT_PLAIN_TYPE)
+                    .entity(BATCH_SIZE_HEADER + " must be a positive number of documents")
+                    .build());
+        }
+        if (annotations != null) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof BatchSize) {
+                    return ((BatchSize) annotation).value();
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isMongoIterable(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Class<?> implemented : current.getInterfaces()) {
+                if (MONGOITERABLECLASS.equals(implemented.getName()) || (!implemented.equals(Iterable.class) && isMongoIterable(implemented))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class BsonSupport {
+        private final Class rawBsonDocumentClass;
+        private final MethodHandle batchSizeMethod;
+        private final MethodHandle getByteBufferMethod;
+        private final MethodHandle asNIOMethod;
+        private final MethodHandle bsonBinaryReaderCtor;
+        private final MethodHandle jsonWriterCtor;
+        private final MethodHandle pipeMethod;
+        private final MethodHandle closeReaderMethod;
+        // document class to toJson() method, for non RawBsonDocument documents
+        private final Map<Class, MethodHandle> toJsonMethods = new ConcurrentHashMap<>();
+
+        BsonSupport(ClassLoader classLoader) {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            try {
+                Class mongoIterableClass = classLoader.loadClass(MONGOITERABLECLASS);
+                rawBsonDocumentClass = classLoader.loadClass(RAWBSONDOCUMENTCLASS);
+                Class bsonReaderClass = classLoader.loadClass(BSONREADERCLASS);
+                Class jsonWriterClass = classLoader.loadClass(JSONWRITERCLASS);
+                // MongoIterable<TResult> batchSize(int batchSize)
+                batchSizeMethod = lookup.unreflect(mongoIterableClass.getMethod("batchSize", int.class));
+                // ByteBuf getByteBuffer()
+                getByteBufferMethod = lookup.unreflect(rawBsonDocumentClass.getMethod("getByteBuffer"));
+                asNIOMethod = lookup.unreflect(getByteBufferMethod.type().returnType().getMethod("asNIO"));
+                bsonBinaryReaderCtor = lookup.findConstructor(classLoader.loadClass(BSONBINARYREADERCLASS), MethodType.methodType(void.class, ByteBuffer.class));
+                jsonWriterCtor = lookup.findConstructor(jsonWriterClass, MethodType.methodType(void.class, Writer.class));
+                // void pipe(BsonReader reader)
+                pipeMethod = lookup.unreflect(jsonWriterClass.getMethod("pipe", bsonReaderClass));
+                closeReaderMethod = lookup.unreflect(bsonReaderClass.getMethod("close"));
+            } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+                throw new RuntimeException("could not setup MongoDB JSON streaming support", e);
+            }
+        }
+
+        Iterable<?> batchSize(Iterable<?> iterable, int batchSize) {
+            try {
+                return (Iterable<?>) batchSizeMethod.invoke(iterable, batchSize);
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not set cursor batch size " + batchSize, throwable);
+            }
+        }
+
+        void write(Object document, Writer writer) throws IOException {
+            if (document == null) {
+                writer.write("null");
+                return;
+            }
+            try {
+                if (rawBsonDocumentClass.isInstance(document)) {
+                    // convert the document BSON bytes straight to the response writer
+                    Object reader = bsonBinaryReaderCtor.invoke((ByteBuffer) asNIOMethod.invoke(getByteBufferMethod.invoke(document)));
+                    try {
+                        pipeMethod.invoke(jsonWriterCtor.invoke(writer), reader);
+                    } finally {
+                        closeReaderMethod.invoke(reader);
+                    }
+                } else {
+                    writer.write((String) toJsonMethod(document.getClass()).invoke(document));
+                }
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new RuntimeException("could not write " + document.getClass().getName() + " as JSON", throwable);
+            }
+        }
+
+        private MethodHandle toJsonMethod(Class documentClass) throws NoSuchMethodException, IllegalAccessException {
+            MethodHandle result = toJsonMethods.get(documentClass);
+            if (result == null) {
+                result = MethodHandles.publicLookup().unreflect(documentClass.getMethod("toJson"));
+                toJsonMethods.put(documentClass, result);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.jaxrs;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.wildfly.extension.nosql.driver.mongodb.MongoDeadline;
+
+/**
+ * RequestDeadlineFilter is an optional JAX-RS filter that sets the {@link MongoDeadline} of the request from the
+ * <code>X-Request-Timeout</code> header (the request budget in milliseconds), so MongoDB profiles that specify an
+ * operation-timeout pass the time left in the request as <code>maxTimeMS</code>.  A header value that is not a positive
+ * number is rejected with <code>400 Bad Request</code>.
+ *
+ * The deadline is cleared by the response filter, and when the CDI request context is destroyed, for requests that fail
+ * with an exception that isn't mapped to a response.  Asynchronous resource methods (<code>@Suspended AsyncResponse</code>
+ * parameter or <code>CompletionStage</code> result) don't get a deadline, as they complete on other threads.
+ *
+ * Applications enable the filter by returning it from <code>Application.getClasses()</code> or by listing it in the
+ * <code>resteasy.providers</code> context parameter.
+ */
+@Provider
+public class RequestDeadlineFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        MongoDeadline.clear();
+        final String timeout = requestContext.getHeaderString(REQUEST_TIMEOUT_HEADER);
+        if (timeout == null) {
+            return;
+        }
+        long millis;
+        try {
+            millis = Long.parseLong(timeout.trim());
+        } catch (NumberFormatException e) {
+            millis = 0;
+        }
+        if (millis <= 0) {
+            requestContext.abortWith(Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.TEXT_PLAIN_TYPE)
+                    .entity(REQUEST_TIMEOUT_HEADER + " must be a positive number of milliseconds")
+                    .build());
+            return;
+        }
+        if (!isAsynchronous(resourceInfo.getResourceMethod())) {
+            MongoDeadline.set(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        MongoDeadline.clear();
+    }
+
+    private static boolean isAsynchronous(Method method) {
+        if (method == null) {
+            return false;
+        }
+        if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+            return true;
+        }
+        for (Annotation[] annotations : method.getParameterAnnotations()) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof Suspended) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
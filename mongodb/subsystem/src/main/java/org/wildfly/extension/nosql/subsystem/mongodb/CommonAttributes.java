@@ -23,6 +23,7 @@ package org.wildfly.extension.nosql.subsystem.mongodb;
  */
 public interface CommonAttributes {
     String DATABASE = "database";
+    String DATABASES = "databases";
     String ADMIN_DATABASE = "adminDatabase";
     String OUTBOUND_SOCKET_BINDING_REF = "outbound-socket-binding-ref";
     String HOST_DEF = "host";
@@ -38,4 +39,45 @@ public interface CommonAttributes {
     String AUTH_TYPE = "auth-type";
     String SSL = "ssl";
     String REPLICA_SET = "replicaSet";
+    String TRANSACTION = "transaction";
+    String INDEX_POLICY = "index-policy";
+    String WATCH = "watch";
+    String COLLECTION = "collection";
+    String FULL_DOCUMENT = "full-document";
+    String WRITE_BATCH_SIZE = "write-batch-size";
+    String WRITE_BATCH_LINGER = "write-batch-linger";
+    String WRITE_BATCH_ORDERED = "write-batch-ordered";
+    String WRITE_BATCH_CAPACITY = "write-batch-capacity";
+    String HEDGE_PERCENTILE = "hedge-percentile";
+    String HEDGE_MAX_RATE = "hedge-max-rate";
+    String HEDGE_READ_PREFERENCE = "hedge-read-preference";
+    String OPERATION_TIMEOUT = "operation-timeout";
+    String TENANT_CACHE_SIZE = "tenant-cache-size";
+    String OUTBOX_SEGMENT_SIZE = "outbox-segment-size";
+    String OUTBOX_BATCH_SIZE = "outbox-batch-size";
+    String NEAR_CACHE_SIZE = "near-cache-size";
+    String NEAR_CACHE_TTL = "near-cache-ttl";
+    // runtime metrics
+    String WRITE_BATCHES = "write-batches";
+    String WRITE_BATCH_WRITES = "write-batch-writes";
+    String WRITE_BATCH_FAILED_WRITES = "write-batch-failed-writes";
+    String WRITE_BATCH_QUEUE_SIZE = "write-batch-queue-size";
+    String COMMAND_LATENCY = "command-latency";
+    String COMMAND_FAILURES = "command-failures";
+    String POOL_CHECKED_OUT = "pool-checked-out";
+    String POOL_WAIT_TIME = "pool-wait-time";
+    String POOL_CHECK_OUT_FAILURES = "pool-check-out-failures";
+    String CONNECTIONS_CREATED = "connections-created";
+    String CONNECTIONS_CLOSED = "connections-closed";
+    String HEARTBEAT_ROUND_TRIP_TIME = "heartbeat-round-trip-time";
+    String HEARTBEAT_FAILURES = "heartbeat-failures";
+    String HEDGED_READS = "hedged-reads";
+    String HEDGE_WINS = "hedge-wins";
+    String HEDGE_DELAY = "hedge-delay";
+    String TENANT_DATABASES = "tenant-databases";
+    String OUTBOX_DEPTH = "outbox-depth";
+    String OUTBOX_LAG = "outbox-lag";
+    String OUTBOX_FAILED_WRITES = "outbox-failed-writes";
+    String NEAR_CACHE_HITS = "near-cache-hits";
+    String NEAR_CACHE_MISSES = "near-cache-misses";
 }
@@ -17,6 +17,7 @@
 package org.wildfly.extension.nosql.subsystem.mongodb;
 
 import static org.wildfly.extension.nosql.subsystem.mongodb.MongoDriverDefinition.OUTBOUND_SOCKET_BINDING_CAPABILITY_NAME;
+import static org.wildfly.nosql.common.NoSQLLogger.ROOT_LOGGER;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,8 +38,13 @@ import org.jboss.as.controller.PersistentResourceDefinition;
 import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
 import org.jboss.as.controller.SimpleAttributeDefinition;
 import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.client.helpers.MeasurementUnit;
 import org.jboss.as.controller.operations.validation.EnumValidator;
+import org.jboss.as.controller.operations.validation.IntRangeValidator;
+import org.jboss.as.controller.operations.validation.LongRangeValidator;
+import org.jboss.as.controller.operations.validation.ParameterValidator;
 import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.as.controller.registry.ManagementResourceRegistration;
 import org.jboss.as.controller.registry.Resource;
 import org.jboss.as.naming.ServiceBasedNamingStore;
 import org.jboss.as.naming.ValueManagedReferenceFactory;
@@ -46,6 +52,8 @@ import org.jboss.as.naming.deployment.ContextNames;
 import org.jboss.as.naming.service.BinderService;
 import org.jboss.as.network.OutboundSocketBinding;
 import org.jboss.as.security.service.SubjectFactoryService;
+import org.jboss.as.server.ServerEnvironment;
+import org.jboss.as.server.ServerEnvironmentService;
 import org.jboss.dmr.ModelNode;
 import org.jboss.dmr.ModelType;
 import org.jboss.dmr.Property;
@@ -59,9 +67,11 @@ import org.jboss.msc.value.ImmediateValue;
 import org.jboss.security.SubjectFactory;
 import org.wildfly.extension.nosql.driver.mongodb.AuthType;
 import org.wildfly.extension.nosql.driver.mongodb.ConfigurationBuilder;
+import org.wildfly.extension.nosql.driver.mongodb.IndexPolicy;
 import org.wildfly.extension.nosql.driver.mongodb.MongoClientConnectionsService;
 import org.wildfly.extension.nosql.driver.mongodb.ReadConcernType;
 import org.wildfly.extension.nosql.driver.mongodb.WriteConcernType;
+import org.wildfly.extension.nosql.driver.mongodb.transaction.TransactionEnlistmentType;
 import org.wildfly.nosql.common.ConnectionServiceAccess;
 
 /**
@@ -77,6 +87,7 @@ public class MongoDefinition extends PersistentResourceDefinition {
         List<PersistentResourceDefinition> children = new ArrayList<>();
         children.add(HostDefinition.INSTANCE);
         children.add(PropertiesDescription.INSTANCE);
+        children.add(WatchDefinition.INSTANCE);
         CHILDREN = Collections.unmodifiableList(children);
     }
 
@@ -98,6 +109,13 @@ public class MongoDefinition extends PersistentResourceDefinition {
                     .setAllowExpression(true)
                     .build();
 
+    // comma separated list of additional database names
+    protected static final SimpleAttributeDefinition DATABASES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.DATABASES, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(true)
+                    .build();
+
     protected static final SimpleAttributeDefinition ADMIN_DATABASE =
             new SimpleAttributeDefinitionBuilder(CommonAttributes.ADMIN_DATABASE, ModelType.STRING, true)
                     .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
@@ -136,18 +154,308 @@ public class MongoDefinition extends PersistentResourceDefinition {
                         .setAllowExpression(false)
                         .build();
 
+    protected static final SimpleAttributeDefinition TRANSACTION =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.TRANSACTION, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(false)
+                    .setValidator(new ParameterValidator() {
+                        @Override
+                        public void validateParameter(String parameterName, ModelNode value) throws OperationFailedException {
+                            if (value.isDefined()) {
+                                String str = value.asString();
+                                if (TransactionEnlistmentType.getFromStringValue(str) == null) {
+                                    throw ROOT_LOGGER.invalidParameter(CommonAttributes.TRANSACTION, str, TransactionEnlistmentType.allowedNames());
+                                }
+                            }
+                        }
+
+                        @Override
+                        public void validateResolvedParameter(String parameterName, ModelNode value) throws OperationFailedException {
+                            validateParameter(parameterName, value.resolve());
+                        }
+
+                    }
+                    )
+                    .build();
+
+    protected static final SimpleAttributeDefinition INDEX_POLICY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.INDEX_POLICY, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new EnumValidator<>(IndexPolicy.class, true, true))
+                    .setDefaultValue(new ModelNode(IndexPolicy.CREATE.toString()))
+                    .setAllowExpression(true)
+                    .build();
+
+    // write batching is enabled by specifying write-batch-size
+    protected static final SimpleAttributeDefinition WRITE_BATCH_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCH_LINGER =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_LINGER, ModelType.LONG, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(1, Long.MAX_VALUE, true, true))
+                    .setDefaultValue(new ModelNode(10L))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCH_ORDERED =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_ORDERED, ModelType.BOOLEAN, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode(false))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCH_CAPACITY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_CAPACITY, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(10000))
+                    .setAllowExpression(true)
+                    .build();
+
+    // hedged reads are enabled by specifying hedge-percentile
+    protected static final SimpleAttributeDefinition HEDGE_PERCENTILE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEDGE_PERCENTILE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, 99, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEDGE_MAX_RATE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEDGE_MAX_RATE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, 100, true, true))
+                    .setDefaultValue(new ModelNode(10))
+                    .setMeasurementUnit(MeasurementUnit.PERCENTAGE)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEDGE_READ_PREFERENCE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEDGE_READ_PREFERENCE, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setDefaultValue(new ModelNode("secondaryPreferred"))
+                    .setAllowExpression(true)
+                    .build();
+
+    // maxTime of cursor operations, also enables the propagation of the invocation deadline
+    protected static final SimpleAttributeDefinition OPERATION_TIMEOUT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.OPERATION_TIMEOUT, ModelType.LONG, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(1, Long.MAX_VALUE, true, true))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    // tenant routing is enabled by specifying tenant-cache-size
+    protected static final SimpleAttributeDefinition TENANT_CACHE_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.TENANT_CACHE_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    // the outbox is enabled by specifying outbox-segment-size
+    protected static final SimpleAttributeDefinition OUTBOX_SEGMENT_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.OUTBOX_SEGMENT_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(64 * 1024, true, true))
+                    .setMeasurementUnit(MeasurementUnit.BYTES)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition OUTBOX_BATCH_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.OUTBOX_BATCH_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setDefaultValue(new ModelNode(500))
+                    .setAllowExpression(true)
+                    .build();
+
+    // the near cache is enabled by specifying near-cache-size
+    protected static final SimpleAttributeDefinition NEAR_CACHE_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.NEAR_CACHE_SIZE, ModelType.INT, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new IntRangeValidator(1, true, true))
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition NEAR_CACHE_TTL =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.NEAR_CACHE_TTL, ModelType.LONG, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setValidator(new LongRangeValidator(1, Long.MAX_VALUE, true, true))
+                    .setDefaultValue(new ModelNode(60000L))
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCHES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCHES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCH_WRITES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_WRITES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCH_FAILED_WRITES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_FAILED_WRITES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition WRITE_BATCH_QUEUE_SIZE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.WRITE_BATCH_QUEUE_SIZE, ModelType.INT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition COMMAND_LATENCY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.COMMAND_LATENCY, ModelType.OBJECT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition COMMAND_FAILURES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.COMMAND_FAILURES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition POOL_CHECKED_OUT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.POOL_CHECKED_OUT, ModelType.INT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition POOL_WAIT_TIME =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.POOL_WAIT_TIME, ModelType.OBJECT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition POOL_CHECK_OUT_FAILURES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.POOL_CHECK_OUT_FAILURES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition CONNECTIONS_CREATED =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.CONNECTIONS_CREATED, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition CONNECTIONS_CLOSED =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.CONNECTIONS_CLOSED, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEARTBEAT_ROUND_TRIP_TIME =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEARTBEAT_ROUND_TRIP_TIME, ModelType.OBJECT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEARTBEAT_FAILURES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEARTBEAT_FAILURES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEDGED_READS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEDGED_READS, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEDGE_WINS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEDGE_WINS, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition HEDGE_DELAY =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.HEDGE_DELAY, ModelType.LONG, true)
+                    .setMeasurementUnit(MeasurementUnit.MICROSECONDS)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition TENANT_DATABASES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.TENANT_DATABASES, ModelType.INT, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition OUTBOX_DEPTH =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.OUTBOX_DEPTH, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
 
+    protected static final SimpleAttributeDefinition OUTBOX_LAG =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.OUTBOX_LAG, ModelType.LONG, true)
+                    .setMeasurementUnit(MeasurementUnit.MILLISECONDS)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition OUTBOX_FAILED_WRITES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.OUTBOX_FAILED_WRITES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition NEAR_CACHE_HITS =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.NEAR_CACHE_HITS, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
+
+    protected static final SimpleAttributeDefinition NEAR_CACHE_MISSES =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.NEAR_CACHE_MISSES, ModelType.LONG, true)
+                    .setStorageRuntime()
+                    .build();
 
     protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
             ID_NAME,
             JNDI_NAME,
             DATABASE,
+            DATABASES,
             ADMIN_DATABASE,
             MODULE,
             SECURITY_DOMAIN,
             AUTH_TYPE,
             SSL,
-            REPLICA_SET);
+            REPLICA_SET,
+            TRANSACTION,
+            INDEX_POLICY,
+            WRITE_BATCH_SIZE,
+            WRITE_BATCH_LINGER,
+            WRITE_BATCH_ORDERED,
+            WRITE_BATCH_CAPACITY,
+            HEDGE_PERCENTILE,
+            HEDGE_MAX_RATE,
+            HEDGE_READ_PREFERENCE,
+            OPERATION_TIMEOUT,
+            TENANT_CACHE_SIZE,
+            OUTBOX_SEGMENT_SIZE,
+            OUTBOX_BATCH_SIZE,
+            NEAR_CACHE_SIZE,
+            NEAR_CACHE_TTL);
+
+    // runtime only metrics, read from the running profile service
+    protected static List<SimpleAttributeDefinition> METRICS = Arrays.asList(
+            WRITE_BATCHES,
+            WRITE_BATCH_WRITES,
+            WRITE_BATCH_FAILED_WRITES,
+            WRITE_BATCH_QUEUE_SIZE,
+            COMMAND_LATENCY,
+            COMMAND_FAILURES,
+            POOL_CHECKED_OUT,
+            POOL_WAIT_TIME,
+            POOL_CHECK_OUT_FAILURES,
+            CONNECTIONS_CREATED,
+            CONNECTIONS_CLOSED,
+            HEARTBEAT_ROUND_TRIP_TIME,
+            HEARTBEAT_FAILURES,
+            HEDGED_READS,
+            HEDGE_WINS,
+            HEDGE_DELAY,
+            TENANT_DATABASES,
+            OUTBOX_DEPTH,
+            OUTBOX_LAG,
+            OUTBOX_FAILED_WRITES,
+            NEAR_CACHE_HITS,
+            NEAR_CACHE_MISSES);
 
     static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
 
@@ -165,6 +473,14 @@ public class MongoDefinition extends PersistentResourceDefinition {
         return ATTRIBUTES_MAP.values();
     }
 
+    @Override
+    public void registerAttributes(ManagementResourceRegistration resourceRegistration) {
+        super.registerAttributes(resourceRegistration);
+        for (SimpleAttributeDefinition metric : METRICS) {
+            resourceRegistration.registerMetric(metric, MongoMetricsHandler.INSTANCE);
+        }
+    }
+
     @Override
     public List<? extends PersistentResourceDefinition> getChildren() {
         return CHILDREN;
@@ -202,6 +518,13 @@ public class MongoDefinition extends PersistentResourceDefinition {
             if (profileEntry.hasDefined(CommonAttributes.DATABASE)) {
                 builder.setDatabase(profileEntry.get(CommonAttributes.DATABASE).asString());
             }
+            if (profileEntry.hasDefined(CommonAttributes.DATABASES)) {
+                for (String database : profileEntry.get(CommonAttributes.DATABASES).asString().split(",")) {
+                    if (database.trim().length() > 0) {
+                        builder.addDatabase(database.trim());
+                    }
+                }
+            }
             if (profileEntry.hasDefined(CommonAttributes.ADMIN_DATABASE)) {
                 builder.setAdminDatabase(profileEntry.get(CommonAttributes.ADMIN_DATABASE).asString());
             }
@@ -219,6 +542,44 @@ public class MongoDefinition extends PersistentResourceDefinition {
             if (profileEntry.hasDefined(CommonAttributes.REPLICA_SET)) {
                 builder.setReplicaSet(profileEntry.get(CommonAttributes.REPLICA_SET).asString());
             }
+            builder.setIndexPolicy(IndexPolicy.valueOf(INDEX_POLICY.resolveModelAttribute(context, profileEntry).asString()));
+            if (profileEntry.hasDefined(CommonAttributes.TRANSACTION)) {
+                builder.setTransactionEnlistment(TransactionEnlistmentType.getFromStringValue(profileEntry.get(CommonAttributes.TRANSACTION).asString()));
+            }
+            if (profileEntry.hasDefined(CommonAttributes.WRITE_BATCH_SIZE)) {
+                builder.setWriteBatchSize(WRITE_BATCH_SIZE.resolveModelAttribute(context, profileEntry).asInt());
+                builder.setWriteBatchLinger(WRITE_BATCH_LINGER.resolveModelAttribute(context, profileEntry).asLong());
+                builder.setWriteBatchOrdered(WRITE_BATCH_ORDERED.resolveModelAttribute(context, profileEntry).asBoolean());
+                builder.setWriteBatchCapacity(WRITE_BATCH_CAPACITY.resolveModelAttribute(context, profileEntry).asInt());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.HEDGE_PERCENTILE)) {
+                builder.setHedgePercentile(HEDGE_PERCENTILE.resolveModelAttribute(context, profileEntry).asInt());
+                builder.setHedgeMaxRate(HEDGE_MAX_RATE.resolveModelAttribute(context, profileEntry).asInt());
+                builder.setHedgeReadPreference(HEDGE_READ_PREFERENCE.resolveModelAttribute(context, profileEntry).asString());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.OPERATION_TIMEOUT)) {
+                builder.setOperationTimeout(OPERATION_TIMEOUT.resolveModelAttribute(context, profileEntry).asLong());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.TENANT_CACHE_SIZE)) {
+                builder.setTenantCacheSize(TENANT_CACHE_SIZE.resolveModelAttribute(context, profileEntry).asInt());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.OUTBOX_SEGMENT_SIZE)) {
+                builder.setOutboxSegmentSize(OUTBOX_SEGMENT_SIZE.resolveModelAttribute(context, profileEntry).asInt());
+                builder.setOutboxBatchSize(OUTBOX_BATCH_SIZE.resolveModelAttribute(context, profileEntry).asInt());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.NEAR_CACHE_SIZE)) {
+                builder.setNearCacheSize(NEAR_CACHE_SIZE.resolveModelAttribute(context, profileEntry).asInt());
+                builder.setNearCacheTtl(NEAR_CACHE_TTL.resolveModelAttribute(context, profileEntry).asLong());
+            }
+            if (profileEntry.hasDefined(CommonAttributes.WATCH)) {
+                for (Property watch : profileEntry.get(CommonAttributes.WATCH).asPropertyList()) {
+                    final ModelNode watchEntry = watch.getValue();
+                    builder.addWatch(watch.getName(),
+                            watchEntry.hasDefined(CommonAttributes.DATABASE) ? watchEntry.get(CommonAttributes.DATABASE).asString() : null,
+                            watchEntry.get(CommonAttributes.COLLECTION).asString(),
+                            watchEntry.hasDefined(CommonAttributes.FULL_DOCUMENT) ? watchEntry.get(CommonAttributes.FULL_DOCUMENT).asString() : null);
+                }
+            }
             if (profileEntry.hasDefined(CommonAttributes.HOST_DEF)) {
                 ModelNode hostModels = profileEntry.get(CommonAttributes.HOST_DEF);
                 for (ModelNode host : hostModels.asList()) {
@@ -252,27 +613,14 @@ public class MongoDefinition extends PersistentResourceDefinition {
             if (builder.getJNDIName() != null && builder.getJNDIName().length() > 0) {
                 final MongoClientConnectionsService mongoClientConnectionsService = new MongoClientConnectionsService(builder);
                 final ServiceName serviceName = ConnectionServiceAccess.serviceName(builder.getDescription());
-                final ContextNames.BindInfo bindingInfo = ContextNames.bindInfoFor(builder.getJNDIName());
-
-                final BinderService binderService = new BinderService(bindingInfo.getBindName());
-
-                context.getServiceTarget().addService(bindingInfo.getBinderServiceName(), binderService)
-                        .addDependency(MongoSubsystemService.serviceName())
-                        .addDependency(bindingInfo.getParentContextServiceName(), ServiceBasedNamingStore.class, binderService.getNamingStoreInjector())
-                        .addDependency(serviceName, MongoClientConnectionsService.class, new Injector<MongoClientConnectionsService>() {
-                            @Override
-                            public void inject(final MongoClientConnectionsService value) throws
-                                    InjectionException {
-                                binderService.getManagedObjectInjector().inject(new ValueManagedReferenceFactory(new ImmediateValue<>(value.getDatabase() != null ? value.getDatabase() : value.getClient())));
-                            }
-
-                            @Override
-                            public void uninject() {
-                                binderService.getNamingStoreInjector().uninject();
-                            }
-                        }).install();
+                bind(context, builder.getJNDIName(), serviceName, null);
+                // each additional database is bound under the profile jndi-name
+                for (final String database : builder.getDatabases()) {
+                    bind(context, MongoClientConnectionsService.databaseJNDIName(builder.getJNDIName(), database), serviceName, database);
+                }
                 final ServiceBuilder<MongoClientConnectionsService> serviceBuilder = context.getServiceTarget().addService(serviceName, mongoClientConnectionsService);
                 serviceBuilder.addDependency(MongoSubsystemService.serviceName(), new CastingInjector<>(mongoClientConnectionsService.getMongoSubsystemServiceInjectedValue(), MongoSubsystemService.class));
+                serviceBuilder.addDependency(ServerEnvironmentService.SERVICE_NAME, ServerEnvironment.class, mongoClientConnectionsService.getServerEnvironmentInjector());
                 // add service dependency on each separate hostname/port reference in standalone*.xml referenced from this driver profile definition.
                 for (final String outboundSocketBinding : outboundSocketBindings) {
                     final ServiceName outboundSocketBindingDependency = context.getCapabilityServiceName(OUTBOUND_SOCKET_BINDING_CAPABILITY_NAME, outboundSocketBinding, OutboundSocketBinding.class);
@@ -285,7 +633,29 @@ public class MongoDefinition extends PersistentResourceDefinition {
                 serviceBuilder.setInitialMode(ServiceController.Mode.ACTIVE).install();
             }
         }
-    }
-}
 
+        private void bind(OperationContext context, String jndiName, ServiceName serviceName, final String database) {
+            final ContextNames.BindInfo bindingInfo = ContextNames.bindInfoFor(jndiName);
+
+            final BinderService binderService = new BinderService(bindingInfo.getBindName());
+
+            context.getServiceTarget().addService(bindingInfo.getBinderServiceName(), binderService)
+                    .addDependency(MongoSubsystemService.serviceName())
+                    .addDependency(bindingInfo.getParentContextServiceName(), ServiceBasedNamingStore.class, binderService.getNamingStoreInjector())
+                    .addDependency(serviceName, MongoClientConnectionsService.class, new Injector<MongoClientConnectionsService>() {
+                        @Override
+                        public void inject(final MongoClientConnectionsService value) throws
+                                InjectionException {
+                            final Object bound = database != null ? value.getDatabase(database) :
+                                    (value.getDatabase() != null ? value.getDatabase() : value.getClient());
+                            binderService.getManagedObjectInjector().inject(new ValueManagedReferenceFactory(new ImmediateValue<>(bound)));
+                        }
 
+                        @Override
+                        public void uninject() {
+                            binderService.getNamingStoreInjector().uninject();
+                        }
+                    }).install();
+        }
+    }
+}
@@ -15,6 +15,9 @@
  */
 package org.wildfly.extension.nosql.subsystem.mongodb;
 
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
 import org.jboss.as.controller.AbstractBoottimeAddStepHandler;
 import org.jboss.as.controller.AttributeDefinition;
 import org.jboss.as.controller.OperationContext;
@@ -25,6 +28,8 @@ import org.wildfly.nosql.common.DriverScanDependencyProcessor;
 import org.jboss.as.server.AbstractDeploymentChainStep;
 import org.jboss.as.server.DeploymentProcessorTarget;
 import org.jboss.as.server.deployment.Phase;
+import org.jboss.as.txn.service.TransactionManagerService;
+import org.jboss.as.txn.service.TransactionSynchronizationRegistryService;
 import org.jboss.dmr.ModelNode;
 import org.jboss.msc.service.ServiceController;
 
@@ -56,10 +61,14 @@ public class MongoDriverSubsystemAdd extends AbstractBoottimeAddStepHandler {
             protected void execute(DeploymentProcessorTarget processorTarget) {
                 final int PARSE_MONGO_DRIVER                          = 0x4C03;
                 final int DEPENDENCIES_MONGO_DRIVER                   = 0x1F13;
+                final int PARSE_MONGO_INDEXES                         = 0x4C04;
+                final int INSTALL_MONGO_INDEXES                       = 0x20F3;
                 // TODO: use Phase.PARSE_MONGO_DRIVER
                 processorTarget.addDeploymentProcessor(MongoDriverExtension.SUBSYSTEM_NAME, Phase.PARSE, PARSE_MONGO_DRIVER, new DriverScanDependencyProcessor("mongodbsubsystem"));
                 // TODO: use Phase.DEPENDENCIES_MONGO_DRIVER
                 processorTarget.addDeploymentProcessor(MongoDriverExtension.SUBSYSTEM_NAME, Phase.DEPENDENCIES, DEPENDENCIES_MONGO_DRIVER, DriverDependencyProcessor.getInstance());
+                processorTarget.addDeploymentProcessor(MongoDriverExtension.SUBSYSTEM_NAME, Phase.PARSE, PARSE_MONGO_INDEXES, new MongoIndexScanProcessor());
+                processorTarget.addDeploymentProcessor(MongoDriverExtension.SUBSYSTEM_NAME, Phase.INSTALL, INSTALL_MONGO_INDEXES, new MongoIndexProcessor());
             }
         }, OperationContext.Stage.RUNTIME);
 
@@ -68,7 +77,10 @@ public class MongoDriverSubsystemAdd extends AbstractBoottimeAddStepHandler {
 
     private void startMongoDriverSubsysteService(OperationContext context) {
         MongoSubsystemService mongoSubsystemService = new MongoSubsystemService();
-        context.getServiceTarget().addService(MongoSubsystemService.serviceName(), mongoSubsystemService).setInitialMode(ServiceController.Mode.ACTIVE).install();
+        context.getServiceTarget().addService(MongoSubsystemService.serviceName(), mongoSubsystemService).setInitialMode(ServiceController.Mode.ACTIVE)
+        .addDependency(TransactionManagerService.SERVICE_NAME, TransactionManager.class, mongoSubsystemService.getTransactionManagerInjector())
+        .addDependency(TransactionSynchronizationRegistryService.SERVICE_NAME, TransactionSynchronizationRegistry.class, mongoSubsystemService.getTxSyncRegistryInjector())
+                .install();
     }
 
 
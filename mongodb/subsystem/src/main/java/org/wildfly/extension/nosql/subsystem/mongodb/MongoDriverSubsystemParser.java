@@ -40,12 +40,28 @@ final class MongoDriverSubsystemParser extends PersistentResourceXMLParser {
                                         MongoDefinition.ID_NAME,
                                         MongoDefinition.JNDI_NAME,
                                         MongoDefinition.DATABASE,
+                                        MongoDefinition.DATABASES,
                                         MongoDefinition.ADMIN_DATABASE,
                                         MongoDefinition.MODULE,
                                         MongoDefinition.SECURITY_DOMAIN,
                                         MongoDefinition.AUTH_TYPE,
                                         MongoDefinition.SSL,
-                                        MongoDefinition.REPLICA_SET
+                                        MongoDefinition.REPLICA_SET,
+                                        MongoDefinition.TRANSACTION,
+                                        MongoDefinition.INDEX_POLICY,
+                                        MongoDefinition.WRITE_BATCH_SIZE,
+                                        MongoDefinition.WRITE_BATCH_LINGER,
+                                        MongoDefinition.WRITE_BATCH_ORDERED,
+                                        MongoDefinition.WRITE_BATCH_CAPACITY,
+                                        MongoDefinition.HEDGE_PERCENTILE,
+                                        MongoDefinition.HEDGE_MAX_RATE,
+                                        MongoDefinition.HEDGE_READ_PREFERENCE,
+                                        MongoDefinition.OPERATION_TIMEOUT,
+                                        MongoDefinition.TENANT_CACHE_SIZE,
+                                        MongoDefinition.OUTBOX_SEGMENT_SIZE,
+                                        MongoDefinition.OUTBOX_BATCH_SIZE,
+                                        MongoDefinition.NEAR_CACHE_SIZE,
+                                        MongoDefinition.NEAR_CACHE_TTL
                                 )
                                 .addChild(builder(HostDefinition.INSTANCE)
                                         .addAttributes(
@@ -57,6 +73,13 @@ final class MongoDriverSubsystemParser extends PersistentResourceXMLParser {
                                                 AttributeParser.PROPERTIES_PARSER_UNWRAPPED,
                                                 AttributeMarshaller.PROPERTIES_MARSHALLER_UNWRAPPED)
                                 )
+                                .addChild(builder(WatchDefinition.INSTANCE)
+                                        .addAttributes(
+                                                WatchDefinition.COLLECTION,
+                                                WatchDefinition.DATABASE,
+                                                WatchDefinition.FULL_DOCUMENT
+                                        )
+                                )
                 )
                 .build();
     }
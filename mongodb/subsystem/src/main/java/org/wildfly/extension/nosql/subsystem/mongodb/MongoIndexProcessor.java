@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.mongodb;
+
+import static org.wildfly.extension.nosql.driver.mongodb.MongoLogger.ROOT_LOGGER;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.as.server.deployment.DeploymentPhaseContext;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.DeploymentUnitProcessor;
+import org.wildfly.extension.nosql.driver.mongodb.IndexPolicy;
+import org.wildfly.extension.nosql.driver.mongodb.MongoClientConnectionsService;
+import org.wildfly.extension.nosql.driver.mongodb.MongoIndexProvisioner;
+import org.wildfly.extension.nosql.driver.mongodb.MongoIndexProvisioner.IndexDefinition;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * MongoIndexProcessor creates or verifies the indexes collected by {@link MongoIndexScanProcessor}, with one task per
+ * collection running in parallel.  Missing or mismatched indexes are logged or fail the deployment, according to the
+ * profile index-policy.
+ */
+public class MongoIndexProcessor implements DeploymentUnitProcessor {
+
+    private static final int MAX_THREADS = 8;
+
+    @Override
+    public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
+        final DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
+        final List<IndexDefinition> indexes = deploymentUnit.getAttachmentList(MongoIndexScanProcessor.INDEXES);
+        if (indexes.isEmpty()) {
+            return;
+        }
+        // group the indexes per profile + database + collection
+        final Map<String, List<IndexDefinition>> collections = new LinkedHashMap<>();
+        for (IndexDefinition index : indexes) {
+            collections.computeIfAbsent(index.getProfile() + '/' + index.getDatabase() + '/' + index.getCollection(), key -> new ArrayList<>()).add(index);
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(collections.size(), MAX_THREADS), runnable -> {
+            Thread thread = new Thread(runnable, "MongoDB index provisioning " + deploymentUnit.getName() + " " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final List<String> failures = new ArrayList<>();
+        try {
+            final List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (final List<IndexDefinition> collectionIndexes : collections.values()) {
+                tasks.add(CompletableFuture.runAsync(() -> provision(deploymentUnit, collectionIndexes, failures), executor));
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[tasks.size()])).join();
+        } catch (CompletionException e) {
+            throw new DeploymentUnitProcessingException("could not provision MongoDB indexes for " + deploymentUnit.getName(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (!failures.isEmpty()) {
+            throw new DeploymentUnitProcessingException("MongoDB index-policy=" + IndexPolicy.FAIL + " failed deployment " + deploymentUnit.getName() + ": " + failures);
+        }
+    }
+
+    private void provision(DeploymentUnit deploymentUnit, List<IndexDefinition> collectionIndexes, List<String> failures) {
+        final IndexDefinition first = collectionIndexes.get(0);
+        final MongoClientConnectionsService service = (MongoClientConnectionsService) ConnectionServiceAccess.connection(first.getProfile());
+        final IndexPolicy policy = service.getIndexPolicy();
+        List<String> problems;
+        try {
+            final Object database = first.getDatabase().isEmpty() ? service.getDatabase() : service.getDatabase(first.getDatabase());
+            if (database == null) {
+                throw new IllegalStateException("profile doesn't specify a database");
+            }
+            problems = new MongoIndexProvisioner(database).provision(first.getCollection(), collectionIndexes, policy);
+        } catch (RuntimeException e) {
+            ROOT_LOGGER.tracef(e, "could not provision MongoDB indexes for %s", first.getCollection());
+            problems = new ArrayList<>();
+            problems.add("could not provision indexes for collection " + first.getCollection() + ": " + e);
+        }
+        for (String problem : problems) {
+            if (IndexPolicy.FAIL.equals(policy)) {
+                synchronized (failures) {
+                    failures.add(problem);
+                }
+            } else {
+                ROOT_LOGGER.indexProblem(deploymentUnit.getName(), first.getProfile(), problem);
+            }
+        }
+    }
+
+    @Override
+    public void undeploy(DeploymentUnit context) {
+    }
+}
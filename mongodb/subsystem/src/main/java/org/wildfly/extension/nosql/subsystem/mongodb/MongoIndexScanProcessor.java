@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.mongodb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.as.server.deployment.AttachmentKey;
+import org.jboss.as.server.deployment.AttachmentList;
+import org.jboss.as.server.deployment.Attachments;
+import org.jboss.as.server.deployment.DeploymentPhaseContext;
+import org.jboss.as.server.deployment.DeploymentUnit;
+import org.jboss.as.server.deployment.DeploymentUnitProcessingException;
+import org.jboss.as.server.deployment.DeploymentUnitProcessor;
+import org.jboss.as.server.deployment.annotation.CompositeIndex;
+import org.jboss.jandex.AnnotationInstance;
+import org.jboss.jandex.AnnotationValue;
+import org.jboss.jandex.ClassInfo;
+import org.jboss.jandex.DotName;
+import org.jboss.msc.service.ServiceController;
+import org.wildfly.extension.nosql.driver.mongodb.Index;
+import org.wildfly.extension.nosql.driver.mongodb.Indexes;
+import org.wildfly.extension.nosql.driver.mongodb.MongoIndexProvisioner.IndexDefinition;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * MongoIndexScanProcessor collects the {@link Index} declarations of a deployment and adds a deployment dependency on
+ * each referenced MongoDB profile, so that the indexes can be provisioned by {@link MongoIndexProcessor}.
+ */
+public class MongoIndexScanProcessor implements DeploymentUnitProcessor {
+
+    static final AttachmentKey<AttachmentList<IndexDefinition>> INDEXES = AttachmentKey.createList(IndexDefinition.class);
+
+    private static final DotName INDEX_ANNOTATION_NAME = DotName.createSimple(Index.class.getName());
+    private static final DotName INDEXES_ANNOTATION_NAME = DotName.createSimple(Indexes.class.getName());
+    private static final AttachmentKey<AttachmentList<Object>> PROFILE_CONNECTIONS = AttachmentKey.createList(Object.class);
+
+    @Override
+    public void deploy(DeploymentPhaseContext phaseContext) throws DeploymentUnitProcessingException {
+        final DeploymentUnit deploymentUnit = phaseContext.getDeploymentUnit();
+        final CompositeIndex index = deploymentUnit.getAttachment(Attachments.COMPOSITE_ANNOTATION_INDEX);
+        if (index == null) {
+            return;
+        }
+        final List<AnnotationInstance> annotations = new ArrayList<>(index.getAnnotations(INDEX_ANNOTATION_NAME));
+        for (AnnotationInstance outerAnnotation : index.getAnnotations(INDEXES_ANNOTATION_NAME)) {
+            for (AnnotationInstance annotation : outerAnnotation.value().asNestedArray()) {
+                annotations.add(annotation);
+            }
+        }
+        if (annotations.isEmpty()) {
+            return;
+        }
+        final MongoSubsystemService subsystemService = subsystemService(phaseContext);
+        final List<String> profiles = new ArrayList<>();
+        for (AnnotationInstance annotation : annotations) {
+            final String source = annotation.target() instanceof ClassInfo ? ((ClassInfo) annotation.target()).name().toString() : String.valueOf(annotation.target());
+            final String profile = annotation.value("profile").asString();
+            if (subsystemService == null || !subsystemService.profileNames().contains(profile)) {
+                throw new DeploymentUnitProcessingException("@Index declared by " + source + " references unknown MongoDB profile " + profile);
+            }
+            final IndexDefinition definition;
+            try {
+                definition = new IndexDefinition(source, profile,
+                        stringValue(annotation, "database"),
+                        annotation.value("collection").asString(),
+                        annotation.value("keys").asStringArray(),
+                        stringValue(annotation, "name"),
+                        annotation.value("unique") != null && annotation.value("unique").asBoolean(),
+                        annotation.value("sparse") != null && annotation.value("sparse").asBoolean(),
+                        annotation.value("expireAfterSeconds") != null ? annotation.value("expireAfterSeconds").asLong() : -1);
+            } catch (IllegalArgumentException e) {
+                throw new DeploymentUnitProcessingException("invalid @Index declared by " + source, e);
+            }
+            deploymentUnit.addToAttachmentList(INDEXES, definition);
+            if (!profiles.contains(profile)) {
+                profiles.add(profile);
+                // wait for the profile connection to be started before the index provisioning phase
+                phaseContext.addDependency(ConnectionServiceAccess.serviceName(profile), PROFILE_CONNECTIONS);
+            }
+        }
+    }
+
+    @Override
+    public void undeploy(DeploymentUnit context) {
+        context.removeAttachment(INDEXES);
+    }
+
+    private static String stringValue(AnnotationInstance annotation, String name) {
+        final AnnotationValue value = annotation.value(name);
+        return value != null ? value.asString() : "";
+    }
+
+    private static MongoSubsystemService subsystemService(DeploymentPhaseContext phaseContext) {
+        final ServiceController<?> controller = phaseContext.getServiceRegistry().getService(MongoSubsystemService.serviceName());
+        return controller != null ? (MongoSubsystemService) controller.getValue() : null;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.mongodb;
+
+import static org.jboss.as.controller.descriptions.ModelDescriptionConstants.NAME;
+
+import java.util.Map;
+
+import org.jboss.as.controller.AbstractRuntimeOnlyHandler;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PathAddress;
+import org.jboss.dmr.ModelNode;
+import org.jboss.msc.service.ServiceController;
+import org.wildfly.extension.nosql.driver.mongodb.LatencyHistogram;
+import org.wildfly.extension.nosql.driver.mongodb.MongoClientConnectionsService;
+import org.wildfly.extension.nosql.driver.mongodb.MongoHedgedReader;
+import org.wildfly.extension.nosql.driver.mongodb.MongoOutbox;
+import org.wildfly.extension.nosql.driver.mongodb.MongoStatistics;
+import org.wildfly.extension.nosql.driver.mongodb.MongoWriteBatcher;
+import org.wildfly.nosql.common.ConnectionServiceAccess;
+
+/**
+ * MongoMetricsHandler reads the runtime metrics of a MongoDB profile from the profile connection service.
+ * Metrics are undefined when the profile service is not running.
+ */
+class MongoMetricsHandler extends AbstractRuntimeOnlyHandler {
+
+    static final MongoMetricsHandler INSTANCE = new MongoMetricsHandler();
+
+    private MongoMetricsHandler() {
+    }
+
+    @Override
+    protected void executeRuntimeStep(OperationContext context, ModelNode operation) throws OperationFailedException {
+        final ModelNode model = context.readResource(PathAddress.EMPTY_ADDRESS).getModel();
+        if (!model.hasDefined(CommonAttributes.ID_NAME)) {
+            return;
+        }
+        final String profile = model.get(CommonAttributes.ID_NAME).asString();
+        final ServiceController<?> controller = context.getServiceRegistry(false).getService(ConnectionServiceAccess.serviceName(profile));
+        if (controller == null || controller.getState() != ServiceController.State.UP) {
+            return;
+        }
+        final MongoClientConnectionsService service = (MongoClientConnectionsService) controller.getValue();
+        final String metric = operation.require(NAME).asString();
+        final ModelNode result = context.getResult();
+
+        final MongoStatistics statistics = service.getStatistics();
+        if (CommonAttributes.COMMAND_LATENCY.equals(metric)) {
+            result.setEmptyObject();
+            for (Map.Entry<String, LatencyHistogram> command : statistics.getCommandLatency().entrySet()) {
+                result.get(command.getKey()).set(histogram(command.getValue()));
+            }
+        } else if (CommonAttributes.COMMAND_FAILURES.equals(metric)) {
+            result.set(statistics.getCommandFailures());
+        } else if (CommonAttributes.POOL_CHECKED_OUT.equals(metric)) {
+            result.set(statistics.getPoolCheckedOut());
+        } else if (CommonAttributes.POOL_WAIT_TIME.equals(metric)) {
+            result.set(histogram(statistics.getPoolWaitTime()));
+        } else if (CommonAttributes.POOL_CHECK_OUT_FAILURES.equals(metric)) {
+            result.set(statistics.getPoolCheckOutFailures());
+        } else if (CommonAttributes.CONNECTIONS_CREATED.equals(metric)) {
+            result.set(statistics.getConnectionsCreated());
+        } else if (CommonAttributes.CONNECTIONS_CLOSED.equals(metric)) {
+            result.set(statistics.getConnectionsClosed());
+        } else if (CommonAttributes.HEARTBEAT_ROUND_TRIP_TIME.equals(metric)) {
+            result.set(histogram(statistics.getHeartbeatRoundTripTime()));
+        } else if (CommonAttributes.HEARTBEAT_FAILURES.equals(metric)) {
+            result.set(statistics.getHeartbeatFailures());
+        }
+
+        if (CommonAttributes.TENANT_DATABASES.equals(metric)) {
+            result.set(service.getTenantDatabaseCount());
+        } else if (CommonAttributes.NEAR_CACHE_HITS.equals(metric)) {
+            result.set(service.getNearCacheHitCount());
+        } else if (CommonAttributes.NEAR_CACHE_MISSES.equals(metric)) {
+            result.set(service.getNearCacheMissCount());
+        }
+
+        final MongoOutbox outbox = service.getOutbox();
+        if (outbox != null) {
+            if (CommonAttributes.OUTBOX_DEPTH.equals(metric)) {
+                result.set(outbox.getDepth());
+            } else if (CommonAttributes.OUTBOX_LAG.equals(metric)) {
+                result.set(outbox.getLag());
+            } else if (CommonAttributes.OUTBOX_FAILED_WRITES.equals(metric)) {
+                result.set(outbox.getFailedWriteCount());
+            }
+        }
+
+        final MongoHedgedReader hedgedReader = service.getHedgedReader();
+        if (hedgedReader != null) {
+            if (CommonAttributes.HEDGED_READS.equals(metric)) {
+                result.set(hedgedReader.getHedgedReadCount());
+            } else if (CommonAttributes.HEDGE_WINS.equals(metric)) {
+                result.set(hedgedReader.getHedgeWinCount());
+            } else if (CommonAttributes.HEDGE_DELAY.equals(metric)) {
+                result.set(hedgedReader.getHedgeDelay());
+            }
+        }
+
+        final MongoWriteBatcher writeBatcher = service.getWriteBatcher();
+        if (writeBatcher != null) {
+            if (CommonAttributes.WRITE_BATCHES.equals(metric)) {
+                result.set(writeBatcher.getBatchCount());
+            } else if (CommonAttributes.WRITE_BATCH_WRITES.equals(metric)) {
+                result.set(writeBatcher.getWriteCount());
+            } else if (CommonAttributes.WRITE_BATCH_FAILED_WRITES.equals(metric)) {
+                result.set(writeBatcher.getFailedWriteCount());
+            } else if (CommonAttributes.WRITE_BATCH_QUEUE_SIZE.equals(metric)) {
+                result.set(writeBatcher.getQueueSize());
+            }
+        }
+    }
+
+    // latencies are in microseconds
+    private static ModelNode histogram(LatencyHistogram histogram) {
+        final ModelNode result = new ModelNode();
+        result.get("count").set(histogram.getCount());
+        result.get("mean").set(histogram.getMean());
+        result.get("p50").set(histogram.getPercentile(50));
+        result.get("p99").set(histogram.getPercentile(99));
+        result.get("max").set(histogram.getMax());
+        return result;
+    }
+}
@@ -20,12 +20,17 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.transaction.TransactionManager;
+import javax.transaction.TransactionSynchronizationRegistry;
+
 import org.wildfly.nosql.common.SubsystemService;
+import org.jboss.msc.inject.Injector;
 import org.jboss.msc.service.Service;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StartException;
 import org.jboss.msc.service.StopContext;
+import org.jboss.msc.value.InjectedValue;
 
 /**
  * MongoSubsystemService represents the runtime aspects of the MongoDB client driver subsystem
@@ -42,6 +47,9 @@ public class MongoSubsystemService implements Service<SubsystemService>, Subsyst
 
     private final Map<String, String> profileNameToModuleName = new ConcurrentHashMap<>();
 
+    private final InjectedValue<TransactionManager> txManager = new InjectedValue<>();
+    private final InjectedValue<TransactionSynchronizationRegistry> txSyncRegistry = new InjectedValue<>();
+
     public MongoSubsystemService() {
     }
 
@@ -49,6 +57,22 @@ public class MongoSubsystemService implements Service<SubsystemService>, Subsyst
         return SERVICENAME;
     }
 
+    public Injector<TransactionManager> getTransactionManagerInjector() {
+        return this.txManager;
+    }
+
+    public TransactionManager transactionManager() {
+        return txManager.getValue();
+    }
+
+    public Injector<TransactionSynchronizationRegistry> getTxSyncRegistryInjector() {
+        return this.txSyncRegistry;
+    }
+
+    public TransactionSynchronizationRegistry transactionSynchronizationRegistry() {
+        return txSyncRegistry.getValue();
+    }
+
     public void addModuleNameFromJndi(String jndiName, String module) {
         jndiNameToModuleName.put(jndiName, module);
     }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Red Hat, Inc, and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.extension.nosql.subsystem.mongodb;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.as.controller.AbstractAddStepHandler;
+import org.jboss.as.controller.AttributeDefinition;
+import org.jboss.as.controller.OperationContext;
+import org.jboss.as.controller.OperationFailedException;
+import org.jboss.as.controller.PersistentResourceDefinition;
+import org.jboss.as.controller.ReloadRequiredRemoveStepHandler;
+import org.jboss.as.controller.SimpleAttributeDefinition;
+import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
+import org.jboss.as.controller.operations.validation.StringLengthValidator;
+import org.jboss.as.controller.registry.AttributeAccess;
+import org.jboss.dmr.ModelNode;
+import org.jboss.dmr.ModelType;
+
+/**
+ * WatchDefinition represents a collection change stream, that is delivered to applications as CDI events.
+ */
+public class WatchDefinition extends PersistentResourceDefinition {
+
+    protected static final SimpleAttributeDefinition COLLECTION =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.COLLECTION, ModelType.STRING, false)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(true)
+                    .setValidator(new StringLengthValidator(1, Integer.MAX_VALUE, false, true))
+                    .build();
+
+    // one of the profile databases, the profile database is used if not specified
+    protected static final SimpleAttributeDefinition DATABASE =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.DATABASE, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(true)
+                    .build();
+
+    // FullDocument value (e.g. updateLookup)
+    protected static final SimpleAttributeDefinition FULL_DOCUMENT =
+            new SimpleAttributeDefinitionBuilder(CommonAttributes.FULL_DOCUMENT, ModelType.STRING, true)
+                    .setFlags(AttributeAccess.Flag.RESTART_ALL_SERVICES)
+                    .setAllowExpression(true)
+                    .build();
+
+    protected static List<SimpleAttributeDefinition> ATTRIBUTES = Arrays.asList(
+            COLLECTION,
+            DATABASE,
+            FULL_DOCUMENT);
+
+    static final Map<String, AttributeDefinition> ATTRIBUTES_MAP = new HashMap<>();
+
+    static {
+        for (SimpleAttributeDefinition attr : ATTRIBUTES) {
+            ATTRIBUTES_MAP.put(attr.getName(), attr);
+        }
+
+    }
+
+    static final WatchDefinition INSTANCE = new WatchDefinition();
+
+    @Override
+    public Collection<AttributeDefinition> getAttributes() {
+        return ATTRIBUTES_MAP.values();
+    }
+
+    private WatchDefinition() {
+        super(MongoDriverExtension.WATCH_PATH,
+                MongoDriverExtension.getResolver(CommonAttributes.WATCH),
+                WatchAdd.INSTANCE,
+                ReloadRequiredRemoveStepHandler.INSTANCE);
+    }
+
+    private static class WatchAdd extends AbstractAddStepHandler {
+        private static final WatchAdd INSTANCE = new WatchAdd();
+
+        private WatchAdd() {
+            super(ATTRIBUTES);
+        }
+
+        @Override
+        protected void performRuntime(OperationContext context, ModelNode operation, ModelNode model) throws OperationFailedException {
+        }
+    }
+
+}